@@ -0,0 +1,119 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained frame rate at large viewports, per renderer quality tier.
+ *
+ * The maze is a generated 60x60-cell level so the view is full at any size. The
+ * active frame is what the canvas backend draws every frame: clear, every visible
+ * cell, the minimap. The passive frame is what the panel repaints for a player
+ * step. Frames go into a VolatileImage, the kind of surface BufferStrategy back
+ * buffers are, when there is a display; run headless (or with -p surface=image) they
+ * go into a software image instead. Scores are frames per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameRateBenchmark {
+
+    private static final int CELL_SIZE = 50;
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    String viewport;
+
+    @Param({"fast", "balanced", "high"})
+    String quality;
+
+    @Param({"volatile", "image"})
+    String surface;
+
+    private MazeRenderer renderer;
+    private MiniMap miniMap;
+    private FrameSnapshot snapshot;
+    private GraphicsConfiguration config;
+    private Image target;
+    private int width;
+    private int height;
+    private Rectangle playerCell;
+
+    @Setup
+    public void setUp() {
+        int x = viewport.indexOf('x');
+        width = Integer.parseInt(viewport.substring(0, x));
+        height = Integer.parseInt(viewport.substring(x + 1));
+
+        MazeSimulation simulation = new MazeSimulation(1, new SplittableRandom(1));
+        simulation.useGenerator(new MazeGenerator(1, MazeGenerator.Algorithm.BACKTRACKER), 60, 60);
+        simulation.loadLevel(1);
+        Camera camera = new Camera(CELL_SIZE);
+        camera.follow(simulation.grid(), simulation.playerX(), simulation.playerY(), 0, width, height);
+        SpriteMotion motion = new SpriteMotion();
+        motion.update(simulation.entities(), 0);
+        snapshot = FrameSnapshot.capture(simulation, camera, motion, new Particles(), 0.75f);
+        miniMap = new MiniMap();
+        miniMap.update(simulation.grid(), null, simulation.playerX(), simulation.playerY());
+        renderer = new MazeRenderer();
+        renderer.setQuality(MazeRenderer.Quality.valueOf(quality.toUpperCase()));
+
+        if (surface.equals("volatile") && !GraphicsEnvironment.isHeadless()) {
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+            target = config.createCompatibleVolatileImage(width, height);
+        } else {
+            target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        playerCell = new Rectangle((snapshot.playerY - snapshot.originY) * snapshot.cellSize,
+                (snapshot.playerX - snapshot.originX) * snapshot.cellSize, snapshot.cellSize, snapshot.cellSize);
+        // The first frame builds the tile atlas; keep that out of the measurement.
+        activeFrame();
+    }
+
+    private Graphics2D graphics() {
+        if (target instanceof VolatileImage && ((VolatileImage) target).validate(config) == VolatileImage.IMAGE_INCOMPATIBLE) {
+            target = config.createCompatibleVolatileImage(width, height);
+        }
+        return (Graphics2D) target.getGraphics();
+    }
+
+    @Benchmark
+    public int activeFrame() {
+        Graphics2D g2d = graphics();
+        try {
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, width, height);
+            g2d.translate(snapshot.left, snapshot.top);
+            int painted = renderer.paint(g2d, snapshot, null, config);
+            g2d.translate(-snapshot.left, -snapshot.top);
+            miniMap.draw(g2d, snapshot, width);
+            return painted;
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    @Benchmark
+    public int passiveStepFrame() {
+        Graphics2D g2d = graphics();
+        try {
+            g2d.translate(snapshot.left, snapshot.top);
+            g2d.clip(playerCell);
+            return renderer.paint(g2d, snapshot, playerCell, config);
+        } finally {
+            g2d.dispose();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one tick of hazard timers on generated mazes, by maze size and density.
+ *
+ * Hazards run on the game loop's cadence (a beat of 18 ticks, as at 60 ticks per
+ * second); the player stands at the start, clear of them. With a timer wheel the
+ * score should follow the density, the number of timers due per tick, and stay
+ * flat as the maze grows from 101x101 to 1001x1001 tiles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HazardBenchmark {
+
+    private static final int TICKS_PER_BEAT = 18;
+
+    /** Maze cells per side; the grid is 2 * cells + 1 tiles across. */
+    @Param({"50", "500"})
+    int cells;
+
+    /** Hazard tiles per 100 maze cells. */
+    @Param({"0", "5", "20"})
+    int hazards;
+
+    private TerrainHazards timers;
+    private EntityTable table;
+    private int[] players;
+    private long tick;
+
+    @Setup
+    public void setUp() {
+        MazeGenerator.Level level = new MazeGenerator(42, MazeGenerator.Algorithm.BACKTRACKER, hazards)
+                .generate(1, cells, cells, 0);
+        table = new EntityTable(level.grid, 1);
+        players = new int[]{table.add(EntityTable.PLAYER, level.startX, level.startY, 2)};
+        timers = new TerrainHazards(TICKS_PER_BEAT);
+        timers.start(level.grid, 0);
+        // Run a few tides first so floods, receding and spreading are all in the mix.
+        for (tick = 1; tick <= 100L * TICKS_PER_BEAT; tick++) {
+            timers.advance(tick, table, players, null);
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        timers.advance(tick++, table, players, null);
+        return timers.pending();
+    }
+}
@@ -0,0 +1,74 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the procedural maze generators.
+ *
+ * generateLevel builds a complete level (carving, placement and the solvability
+ * check) of (2 * cells + 1)^2 tiles with each algorithm. streamChunk walks a
+ * 10000 x 10000 chunked maze one chunk further per call with a small chunk cache,
+ * so every call generates one CHUNK x CHUNK chunk: the cost of scrolling across
+ * the map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MazeGeneratorBenchmark {
+
+    @State(Scope.Thread)
+    public static class Levels {
+
+        /** Maze cells per side; the grid is 2 * cells + 1 tiles across. */
+        @Param({"50", "500"})
+        int cells;
+
+        @Param({"BACKTRACKER", "PRIM", "WILSON"})
+        String algorithm;
+
+        MazeGenerator generator;
+
+        @Setup
+        public void setUp() {
+            generator = new MazeGenerator(42, MazeGenerator.Algorithm.valueOf(algorithm));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Chunks {
+
+        private static final int SIZE = 10_000;
+
+        ChunkedMaze maze;
+        int x = 1;
+        int y = 1;
+
+        @Setup
+        public void setUp() {
+            maze = new ChunkedMaze(42, SIZE, SIZE, MazeGenerator.Algorithm.BACKTRACKER, 256);
+        }
+    }
+
+    @Benchmark
+    public MazeGenerator.Level generateLevel(Levels levels) {
+        return levels.generator.generate(1, levels.cells, levels.cells, 0);
+    }
+
+    @Benchmark
+    public boolean streamChunk(Chunks chunks) {
+        boolean open = chunks.maze.isWalkable(chunks.x, chunks.y);
+        chunks.y += ChunkedMaze.CHUNK;
+        if (chunks.y >= chunks.maze.cols()) {
+            chunks.y = 1;
+            chunks.x += ChunkedMaze.CHUNK;
+            if (chunks.x >= chunks.maze.rows()) {
+                chunks.x = 1;
+            }
+        }
+        return open;
+    }
+}
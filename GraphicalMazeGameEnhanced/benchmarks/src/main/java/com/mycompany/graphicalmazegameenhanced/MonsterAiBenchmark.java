@@ -0,0 +1,104 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tick cost of MonsterAi on a large maze.
+ *
+ * Builds a walled grid with random interior walls, spawns a mix of wandering,
+ * patrolling and pursuing monsters, and moves the player every tick (the worst
+ * case: the pursuit field is rebuilt each time). Sampled, so the report carries
+ * the tick-time percentiles that MonsterAiBudget checks.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MonsterAiBenchmark {
+
+    private static final int PATROL_POSTS = 8;
+
+    /** Tiles per side of the square grid. */
+    @Param({"200"})
+    int size;
+
+    @Param({"500"})
+    int monsters;
+
+    private final SplittableRandom random = new SplittableRandom(7);
+    private final MonsterAi ai = new MonsterAi();
+    private MazeGrid grid;
+    private EntityTable table;
+    private int playerX;
+    private int playerY;
+
+    @Setup
+    public void setUp() {
+        grid = new MazeGrid(size, size);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                grid.set(x, y, border || random.nextInt(100) < 25 ? MazeGrid.WALL : MazeGrid.FLOOR);
+            }
+        }
+
+        int[] posts = new int[PATROL_POSTS];
+        for (int i = 0; i < posts.length; i++) {
+            posts[i] = randomFloor();
+        }
+        table = new EntityTable(grid, monsters);
+        for (int i = 0; i < monsters; i++) {
+            int cell;
+            do {
+                cell = randomFloor();
+            } while (grid.isOccupied(cell));
+            int m = table.add(EntityTable.MONSTER, cell / size, cell % size, 2);
+            table.setMode(m, i % 3);
+            if (i % 3 == MonsterAi.PATROL) {
+                table.setPatrol(m, posts[i % posts.length]);
+            }
+        }
+
+        // Start the player inside the main open region, not a walled-off pocket.
+        FlowField reach = new FlowField(size * size);
+        int player;
+        int reachable;
+        do {
+            player = randomFloor();
+            reach.compute(grid, player);
+            reachable = 0;
+            for (int cell = 0; cell < size * size; cell++) {
+                if (reach.distance(cell) != FlowField.UNREACHABLE) {
+                    reachable++;
+                }
+            }
+        } while (reachable < size * size / 2);
+        playerX = player / size;
+        playerY = player % size;
+    }
+
+    private int randomFloor() {
+        int cell;
+        do {
+            cell = random.nextInt(size * size);
+        } while (!grid.isWalkable(cell));
+        return cell;
+    }
+
+    @Benchmark
+    public void tick() {
+        int d = random.nextInt(4);
+        int nx = playerX + (d == 0 ? -1 : d == 2 ? 1 : 0);
+        int ny = playerY + (d == 1 ? 1 : d == 3 ? -1 : 0);
+        if (grid.isWalkable(nx, ny) && !grid.isOccupied(nx, ny)) {
+            playerX = nx;
+            playerY = ny;
+        }
+        ai.step(grid, table, playerX, playerY, random);
+    }
+}
@@ -0,0 +1,36 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Performance gate: runs MonsterAiBenchmark and fails the build step when its p99
+ * tick time is over budget.
+ *
+ * Usage: java -cp target/benchmarks.jar com.mycompany.graphicalmazegameenhanced.MonsterAiBudget [budgetMicros]
+ */
+public final class MonsterAiBudget {
+
+    public static void main(String[] args) throws RunnerException {
+        double budgetMicros = args.length > 0 ? Double.parseDouble(args[0]) : 1000;
+        Options options = new OptionsBuilder()
+                .include(MonsterAiBenchmark.class.getSimpleName() + "\\.")
+                .build();
+        boolean withinBudget = true;
+        for (RunResult result : new Runner(options).run()) {
+            double p99 = result.getPrimaryResult().getStatistics().getPercentile(99);
+            boolean pass = p99 <= budgetMicros;
+            System.out.printf("%s %s: p99 %.1f us (budget %.0f us) %s%n", result.getParams().getBenchmark(),
+                    result.getParams().getParamsKeys().stream()
+                            .map(key -> key + "=" + result.getParams().getParam(key)).toList(),
+                    p99, budgetMicros, pass ? "PASS" : "FAIL: p99 over budget");
+            withinBudget &= pass;
+        }
+        if (!withinBudget) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save and load round-trips through the binary save format.
+ *
+ * save is what the save thread does for one slot: snapshot the simulation, encode,
+ * write and fsync a temporary file, then rename it over the slot. load is what
+ * loading a slot does: read, verify and decode, then restore the simulation.
+ * Numbers include the disk, so run on the drive the game saves to.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenceBenchmark {
+
+    /** Maze cells per side; the grid is 2 * cells + 1 tiles across. */
+    @Param({"15", "50", "250"})
+    int cells;
+
+    private MazeSimulation simulation;
+    private Path directory;
+    private Path saveFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        simulation = new MazeSimulation(1, new SplittableRandom(7));
+        simulation.useGenerator(new MazeGenerator(42, MazeGenerator.Algorithm.BACKTRACKER), cells, cells);
+        simulation.loadLevel(1);
+        directory = Files.createTempDirectory("maze-bench");
+        saveFile = directory.resolve("maze_save.dat");
+        SaveFile.write(saveFile, simulation.snapshot());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(saveFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        SaveFile.write(saveFile, simulation.snapshot());
+    }
+
+    @Benchmark
+    public MazeSimulation load() throws IOException {
+        simulation.restore(SaveFile.read(saveFile));
+        return simulation;
+    }
+}
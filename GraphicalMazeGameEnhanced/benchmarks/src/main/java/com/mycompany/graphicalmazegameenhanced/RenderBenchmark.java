@@ -0,0 +1,110 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one game-panel paint, per level theme.
+ *
+ * Paints the same view the panel shows into an offscreen image through
+ * {@link MazeRenderer}, both as a full repaint and as the single-cell dirty
+ * rectangle a player step produces, with and without fog of war. The animated
+ * variant paints a frame caught mid-step, with the player in a walk pose halfway
+ * between cells and sparks around the objective. Runs headless.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    private static final int CELL_SIZE = 50;
+
+    @Param({"1", "2", "3"})
+    int level;
+
+    @Param({"false", "true"})
+    boolean fog;
+
+    private MazeRenderer renderer;
+    private FrameSnapshot snapshot;
+    private FrameSnapshot animated;
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private Rectangle playerCell;
+
+    @Setup
+    public void setUp() {
+        MazeSimulation simulation = new MazeSimulation(1, new SplittableRandom(1));
+        simulation.loadLevel(level);
+        if (fog) {
+            simulation.setSightRadius(5);
+        }
+        snapshot = FrameSnapshot.capture(simulation, MazeSimulation.ROWS, MazeSimulation.COLS, 0.75f);
+        animated = captureMidStep(simulation);
+        renderer = new MazeRenderer();
+        image = new BufferedImage(snapshot.cols * CELL_SIZE, snapshot.rows * CELL_SIZE, BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+        playerCell = new Rectangle((snapshot.playerY - snapshot.originY) * CELL_SIZE,
+                (snapshot.playerX - snapshot.originX) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+        // The first paint builds the tile atlas; keep that out of the measurement.
+        renderer.paint(g2d, snapshot, null, null);
+    }
+
+    /** Steps the player once and captures the frame 60 ms into its slide, sparks included. */
+    private static FrameSnapshot captureMidStep(MazeSimulation simulation) {
+        SpriteMotion motion = new SpriteMotion();
+        Particles particles = new Particles();
+        motion.update(simulation.entities(), 0);
+        for (MazeSimulation.Input input : new MazeSimulation.Input[] {
+                MazeSimulation.Input.DOWN, MazeSimulation.Input.RIGHT, MazeSimulation.Input.UP, MazeSimulation.Input.LEFT}) {
+            int x = simulation.playerX();
+            int y = simulation.playerY();
+            simulation.step(input);
+            if (x != simulation.playerX() || y != simulation.playerY()) {
+                break;
+            }
+        }
+        motion.update(simulation.entities(), 60_000_000L);
+        MazeGrid grid = simulation.grid();
+        particles.advance(0.1);
+        for (int cell = 0; cell < grid.rows() * grid.cols(); cell++) {
+            if (MazeGrid.isObjective(grid.get(cell))) {
+                for (int i = 0; i < 6; i++) {
+                    particles.emit(cell / grid.cols(), cell % grid.cols());
+                }
+            }
+        }
+        Camera camera = new Camera(CELL_SIZE);
+        camera.follow(grid, simulation.playerX(), simulation.playerY(), 0,
+                MazeSimulation.COLS * CELL_SIZE, MazeSimulation.ROWS * CELL_SIZE);
+        return FrameSnapshot.capture(simulation, camera, motion, particles, 0.75f);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public int fullPaint() {
+        return renderer.paint(g2d, snapshot, null, null);
+    }
+
+    @Benchmark
+    public int animatedFullPaint() {
+        return renderer.paint(g2d, animated, null, null);
+    }
+
+    @Benchmark
+    public int dirtyCellPaint() {
+        return renderer.paint(g2d, snapshot, playerCell, null);
+    }
+}
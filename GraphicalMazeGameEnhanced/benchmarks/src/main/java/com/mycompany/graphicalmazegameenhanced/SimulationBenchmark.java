@@ -0,0 +1,110 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulation hot paths on generated mazes of increasing size.
+ *
+ * moveMonsters steps every monster once while the player wanders, so the pursuit
+ * field is rebuilt on most ticks, as in play. The query benchmarks time the
+ * per-cell checks the input and monster code call on every move, over a fixed
+ * set of random coordinates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    /** Maze cells per side; the grid is 2 * cells + 1 tiles across. */
+    @Param({"15", "50", "150"})
+    int cells;
+
+    /** Monsters requested from the generator; it may place fewer in small mazes. */
+    @Param({"10", "100", "1000"})
+    int monsters;
+
+    private MazeGrid grid;
+    private EntityTable table;
+    private final MonsterAi ai = new MonsterAi();
+    private final SplittableRandom random = new SplittableRandom(7);
+    private int playerX;
+    private int playerY;
+
+    private MazeSimulation simulation;
+    private final int[] queryX = new int[QUERIES];
+    private final int[] queryY = new int[QUERIES];
+
+    @Setup
+    public void setUp() {
+        MazeGenerator.Level level = new MazeGenerator(42, MazeGenerator.Algorithm.BACKTRACKER)
+                .generate(1, cells, cells, monsters);
+        grid = level.grid;
+        int objective = objectiveCell(grid);
+        table = new EntityTable(grid, level.spawns.length / 3);
+        for (int i = 0; i < level.spawns.length; i += 3) {
+            int m = table.add(EntityTable.MONSTER, level.spawns[i], level.spawns[i + 1], 2);
+            table.setMode(m, level.spawns[i + 2]);
+            if (level.spawns[i + 2] == MonsterAi.PATROL) {
+                table.setPatrol(m, objective);
+            }
+        }
+        playerX = level.startX;
+        playerY = level.startY;
+
+        simulation = new MazeSimulation(1, new SplittableRandom(7));
+        simulation.useGenerator(new MazeGenerator(42, MazeGenerator.Algorithm.BACKTRACKER), cells, cells);
+        simulation.loadLevel(1);
+        for (int i = 0; i < QUERIES; i++) {
+            queryX[i] = random.nextInt(simulation.rows());
+            queryY[i] = random.nextInt(simulation.cols());
+        }
+    }
+
+    private static int objectiveCell(MazeGrid grid) {
+        for (int x = 0; x < grid.rows(); x++) {
+            for (int y = 0; y < grid.cols(); y++) {
+                if (MazeGrid.isObjective(grid.get(x, y))) {
+                    return x * grid.cols() + y;
+                }
+            }
+        }
+        throw new IllegalStateException("Generated level has no objective");
+    }
+
+    @Benchmark
+    public void moveMonsters() {
+        int d = random.nextInt(4);
+        int nx = playerX + (d == 0 ? -1 : d == 2 ? 1 : 0);
+        int ny = playerY + (d == 1 ? 1 : d == 3 ? -1 : 0);
+        if (grid.isWalkable(nx, ny)) {
+            playerX = nx;
+            playerY = ny;
+        }
+        ai.step(grid, table, playerX, playerY, random);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void isValidMove(Blackhole blackhole) {
+        for (int i = 0; i < QUERIES; i++) {
+            blackhole.consume(simulation.isValidMove(queryX[i], queryY[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void isMonsterAt(Blackhole blackhole) {
+        for (int i = 0; i < QUERIES; i++) {
+            blackhole.consume(simulation.isMonsterAt(queryX[i], queryY[i]));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One background thread for loading assets off the critical path: tile atlases
+ * and upcoming levels. Tasks run in submission order at low priority; a task that
+ * fails only loses its prefetch, since whoever needs the asset loads it again.
+ */
+final class Assets {
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "maze-assets");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private Assets() {
+    }
+
+    static void load(Runnable task) {
+        LOADER.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Dropped prefetch; the asset is built on demand instead.
+            }
+        });
+    }
+}
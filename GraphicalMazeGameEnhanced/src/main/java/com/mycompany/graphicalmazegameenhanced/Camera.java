@@ -0,0 +1,134 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+/**
+ * Scrolling view onto a maze of any size.
+ *
+ * The camera eases toward the player with exponential smoothing, so scrolling is
+ * smooth at any frame rate, and jumps straight there on a new level or a long
+ * teleport. It is clamped to the maze edges; a maze smaller than the view is
+ * centred. Each {@link #follow} frames the window of tiles that touch the view,
+ * which is all a snapshot copies and all the renderer paints, so the cost of a
+ * frame follows the window size, not the maze size. Owned by the game loop thread.
+ */
+final class Camera {
+
+    /** Cell sizes in pixels, from most zoomed out to most zoomed in. */
+    static final int[] ZOOM_LEVELS = {20, 30, 40, 50, 64, 80};
+    // Fraction of the remaining distance covered per second is 1 - e^-FOLLOW_RATE.
+    private static final double FOLLOW_RATE = 10;
+
+    private int zoom;
+    private MazeGrid grid;
+    private double centreX;
+    private double centreY;
+    private int originX;
+    private int originY;
+    private int rows;
+    private int cols;
+    private int left;
+    private int top;
+
+    /** Starts at the zoom level closest to cellSize. */
+    Camera(int cellSize) {
+        for (int i = 1; i < ZOOM_LEVELS.length; i++) {
+            if (Math.abs(ZOOM_LEVELS[i] - cellSize) < Math.abs(ZOOM_LEVELS[zoom] - cellSize)) {
+                zoom = i;
+            }
+        }
+    }
+
+    int cellSize() {
+        return ZOOM_LEVELS[zoom];
+    }
+
+    /** Returns false when already at the closest zoom. */
+    boolean zoomIn() {
+        if (zoom == ZOOM_LEVELS.length - 1) {
+            return false;
+        }
+        zoom++;
+        return true;
+    }
+
+    /** Returns false when already at the widest zoom. */
+    boolean zoomOut() {
+        if (zoom == 0) {
+            return false;
+        }
+        zoom--;
+        return true;
+    }
+
+    /**
+     * Moves toward the centre of tile (x, y) for a frame that took seconds, then
+     * frames the window for a view of width x height pixels.
+     */
+    void follow(MazeGrid grid, int x, int y, double seconds, int width, int height) {
+        int cellSize = cellSize();
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        double targetX = x + 0.5;
+        double targetY = y + 0.5;
+        double farX = height / (double) cellSize;
+        double farY = width / (double) cellSize;
+        if (grid != this.grid || Math.abs(targetX - centreX) > farX || Math.abs(targetY - centreY) > farY) {
+            this.grid = grid;
+            centreX = targetX;
+            centreY = targetY;
+        } else {
+            double step = 1 - Math.exp(-FOLLOW_RATE * seconds);
+            centreX = settle(centreX + (targetX - centreX) * step, targetX, cellSize);
+            centreY = settle(centreY + (targetY - centreY) * step, targetY, cellSize);
+        }
+
+        int scrollY = scroll(centreX, grid.rows(), height, cellSize);
+        originX = Math.max(0, Math.floorDiv(scrollY, cellSize));
+        rows = Math.min(grid.rows() - 1, Math.floorDiv(scrollY + height - 1, cellSize)) - originX + 1;
+        top = originX * cellSize - scrollY;
+        int scrollX = scroll(centreY, grid.cols(), width, cellSize);
+        originY = Math.max(0, Math.floorDiv(scrollX, cellSize));
+        cols = Math.min(grid.cols() - 1, Math.floorDiv(scrollX + width - 1, cellSize)) - originY + 1;
+        left = originY * cellSize - scrollX;
+    }
+
+    /** Top-left tile of the framed window. */
+    int originX() {
+        return originX;
+    }
+
+    int originY() {
+        return originY;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int cols() {
+        return cols;
+    }
+
+    /** Pixel position of the window's top-left tile in the view; negative while scrolled mid-tile. */
+    int left() {
+        return left;
+    }
+
+    int top() {
+        return top;
+    }
+
+    /** Snaps to the target once within half a pixel, so a resting camera stops causing repaints. */
+    private static double settle(double position, double target, int cellSize) {
+        return Math.abs(target - position) * cellSize < 0.5 ? target : position;
+    }
+
+    /** First maze pixel shown along one axis: clamped to the edges, or negative to centre a small maze. */
+    private static int scroll(double centre, int tiles, int viewPixels, int cellSize) {
+        int mazePixels = tiles * cellSize;
+        if (mazePixels <= viewPixels) {
+            return -(viewPixels - mazePixels) / 2;
+        }
+        int start = (int) Math.round(centre * cellSize) - viewPixels / 2;
+        return Math.max(0, Math.min(start, mazePixels - viewPixels));
+    }
+}
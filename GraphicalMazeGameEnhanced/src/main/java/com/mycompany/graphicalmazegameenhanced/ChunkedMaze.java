@@ -0,0 +1,112 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A huge procedural maze generated lazily, one chunk at a time.
+ *
+ * The maze is cut into CHUNK x CHUNK tile chunks. Each chunk is an independent
+ * perfect maze carved from a seed derived from (seed, chunkX, chunkY), so any chunk
+ * can be rebuilt on demand without its neighbours. Every chunk opens one door in its
+ * top and left border; the door position is hashed from the border itself, and since
+ * each chunk is connected internally the whole maze stays connected. Only the most
+ * recently used chunks are kept, so a 10000 x 10000 maze never has to sit in memory.
+ *
+ * The game does not play on it: levels, -Dmaze.cells ones included, are generated
+ * whole by MazeGenerator, since placing the objective and exit needs the full maze.
+ * This is the streaming generator the benchmarks measure.
+ */
+final class ChunkedMaze {
+
+    static final int CHUNK = 64;
+    private static final int CHUNK_CELLS = CHUNK / 2;
+
+    private final long seed;
+    private final int chunksX;
+    private final int chunksY;
+    private final MazeGenerator.Algorithm algorithm;
+    private final Map<Long, MazeGrid> cache;
+    private long chunksGenerated;
+
+    /**
+     * @param rows requested height in tiles; rounded up to whole chunks plus a closing wall
+     * @param cols requested width in tiles, rounded the same way
+     * @param cachedChunks how many generated chunks to keep
+     */
+    ChunkedMaze(long seed, int rows, int cols, MazeGenerator.Algorithm algorithm, int cachedChunks) {
+        this.seed = seed;
+        this.chunksX = Math.max(1, (rows - 1 + CHUNK - 1) / CHUNK);
+        this.chunksY = Math.max(1, (cols - 1 + CHUNK - 1) / CHUNK);
+        this.algorithm = algorithm;
+        this.cache = new LinkedHashMap<Long, MazeGrid>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MazeGrid> eldest) {
+                return size() > cachedChunks;
+            }
+        };
+    }
+
+    int rows() {
+        return chunksX * CHUNK + 1;
+    }
+
+    int cols() {
+        return chunksY * CHUNK + 1;
+    }
+
+    /** Number of chunks carved so far, including ones rebuilt after eviction. */
+    long chunksGenerated() {
+        return chunksGenerated;
+    }
+
+    byte get(int x, int y) {
+        if (x < 0 || y < 0 || x >= chunksX * CHUNK || y >= chunksY * CHUNK) {
+            return MazeGrid.WALL;
+        }
+        return chunk(x / CHUNK, y / CHUNK).get(x % CHUNK, y % CHUNK);
+    }
+
+    boolean isWalkable(int x, int y) {
+        return !MazeGrid.isBlocking(get(x, y));
+    }
+
+    private MazeGrid chunk(int cx, int cy) {
+        long key = (long) cx * chunksY + cy;
+        MazeGrid chunk = cache.get(key);
+        if (chunk == null) {
+            chunk = generate(cx, cy);
+            cache.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private MazeGrid generate(int cx, int cy) {
+        MazeGrid chunk = new MazeGrid(CHUNK, CHUNK);
+        // Cells sit at odd local tiles, so row and column 0 are the borders shared with the chunk above and to the left.
+        MazeGenerator.fill(chunk, 0, 0, CHUNK, CHUNK, MazeGrid.WALL);
+        MazeGenerator.carve(chunk, 0, 0, CHUNK_CELLS, CHUNK_CELLS, algorithm,
+                new SplittableRandom(mix(seed, cx, cy, 0)));
+        if (cx > 0) {
+            chunk.set(0, door(cx, cy, 1), MazeGrid.FLOOR);
+        }
+        if (cy > 0) {
+            chunk.set(door(cx, cy, 2), 0, MazeGrid.FLOOR);
+        }
+        chunksGenerated++;
+        return chunk;
+    }
+
+    /** Odd offset of the door in this chunk's top (side 1) or left (side 2) border. */
+    private int door(int cx, int cy, int side) {
+        return (int) Math.floorMod(mix(seed, cx, cy, side), (long) CHUNK_CELLS) * 2 + 1;
+    }
+
+    private static long mix(long seed, int cx, int cy, int salt) {
+        long h = seed ^ ((long) cx << 32 | (cy & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L ^ salt * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
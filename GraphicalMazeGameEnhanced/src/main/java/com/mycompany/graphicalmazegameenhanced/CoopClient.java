@@ -0,0 +1,349 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Client side of a co-op session: a replica of the server's game plus prediction
+ * for the local player.
+ *
+ * State frames are read on a virtual thread and queued; {@link #poll()} applies
+ * them on the caller's thread, so the replica grid and entity table are only
+ * touched by the game loop. A keyframe rebuilds the replica, a delta patches it.
+ *
+ * {@link #send} moves the local player at once if the replica says the move is
+ * legal, and remembers the input until the server acknowledges it. Each frame
+ * then resets the player to the server's position and replays the inputs still in
+ * flight, so the player never waits a round trip to move and a rejected move
+ * (a monster in the way, a sealed exit) is corrected on the next frame.
+ */
+final class CoopClient implements Closeable {
+
+    private static final int MAX_PENDING = 64;
+    private static final MazeSimulation.Input[] INPUTS = MazeSimulation.Input.values();
+    private static final MazeSimulation.Status[] STATUSES = MazeSimulation.Status.values();
+
+    private final SocketChannel channel;
+    private final int slot;
+    private final int tickRate;
+    private final ConcurrentLinkedQueue<byte[]> frames = new ConcurrentLinkedQueue<>();
+    private final LatencyRecorder ackLatency = new LatencyRecorder(4096);
+    private volatile boolean connected = true;
+    private volatile long bytesReceived;
+    private volatile long framesReceived;
+    private MazeSimulation.Listener listener = text -> { };
+
+    // Replica of the server's game.
+    private MazeGrid grid;
+    private EntityTable entities;
+    private int[] rowOf = new int[0];
+    private int level;
+    private int theme;
+    private MazeSimulation.Status status = MazeSimulation.Status.PLAYING;
+    private boolean hasObjectiveItem;
+    private int self = -1;
+
+    // Inputs sent but not yet applied by the server, oldest first.
+    private final int[] pendingSequence = new int[MAX_PENDING];
+    private final byte[] pendingInput = new byte[MAX_PENDING];
+    private final long[] pendingSentAt = new long[MAX_PENDING];
+    private int pendingStart;
+    private int pendingCount;
+    private int nextSequence = 1;
+    private int serverX;
+    private int serverY;
+    private int serverFacing;
+    private long corrections;
+
+    private CoopClient(SocketChannel channel, int slot, int tickRate) {
+        this.channel = channel;
+        this.slot = slot;
+        this.tickRate = tickRate;
+    }
+
+    /** Joins (or starts) the named session; fails when the server rejects the client. */
+    static CoopClient connect(InetSocketAddress address, String session) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        try {
+            channel.socket().setTcpNoDelay(true);
+            CoopProtocol.Writer hello = new CoopProtocol.Writer(CoopProtocol.HELLO);
+            hello.out.writeInt(CoopProtocol.MAGIC);
+            hello.varint(CoopProtocol.VERSION);
+            hello.out.writeUTF(session);
+            CoopProtocol.writeFrame(channel, hello.finish());
+            byte[] reply = CoopProtocol.readFrame(channel);
+            if (reply == null) {
+                throw new IOException("Server closed the connection");
+            }
+            DataInputStream in = CoopProtocol.reader(reply);
+            byte type = in.readByte();
+            if (type == CoopProtocol.REJECT) {
+                throw new IOException(in.readUTF());
+            }
+            if (type != CoopProtocol.WELCOME) {
+                throw new IOException("Unexpected reply " + type);
+            }
+            CoopClient client = new CoopClient(channel, CoopProtocol.readVarint(in), CoopProtocol.readVarint(in));
+            Thread.ofVirtual().name("coop-client-read").start(client::readLoop);
+            return client;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readLoop() {
+        try {
+            byte[] frame;
+            while ((frame = CoopProtocol.readFrame(channel)) != null) {
+                frames.add(frame);
+                bytesReceived += frame.length + 4;
+                framesReceived++;
+            }
+        } catch (IOException e) {
+            // treated as a disconnect
+        }
+        connected = false;
+    }
+
+    void setListener(MazeSimulation.Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Sends a command to the server and predicts its effect on the local player. */
+    void send(MazeSimulation.Input input) throws IOException {
+        if (input == MazeSimulation.Input.NONE || !connected) {
+            return;
+        }
+        int sequence = nextSequence++;
+        CoopProtocol.Writer message = new CoopProtocol.Writer(CoopProtocol.INPUT).varint(sequence);
+        message.out.writeByte(input.ordinal());
+        CoopProtocol.writeFrame(channel, message.finish());
+        if (pendingCount == MAX_PENDING) {
+            // Too far ahead of the server to predict; the next frame corrects us.
+            pendingStart = (pendingStart + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+        int i = (pendingStart + pendingCount++) % MAX_PENDING;
+        pendingSequence[i] = sequence;
+        pendingInput[i] = (byte) input.ordinal();
+        pendingSentAt[i] = System.nanoTime();
+        if (isReady()) {
+            predict(input);
+        }
+    }
+
+    /** Applies every state frame received so far; returns how many there were. */
+    int poll() throws IOException {
+        int applied = 0;
+        byte[] frame;
+        while ((frame = frames.poll()) != null) {
+            DataInputStream in = CoopProtocol.reader(frame);
+            if (in.readByte() == CoopProtocol.STATE) {
+                applyState(in);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private void applyState(DataInputStream in) throws IOException {
+        int displayedX = isReady() ? entities.x(self) : -1;
+        int displayedY = isReady() ? entities.y(self) : -1;
+        CoopProtocol.readVarint(in); // server tick
+        status = STATUSES[CoopProtocol.readVarint(in)];
+        int flags = CoopProtocol.readVarint(in);
+        hasObjectiveItem = (flags & CoopProtocol.HAS_ITEM) != 0;
+        level = CoopProtocol.readVarint(in);
+        theme = CoopProtocol.readVarint(in);
+        boolean keyframe = (flags & CoopProtocol.KEYFRAME) != 0;
+        if (keyframe) {
+            readKeyframe(in);
+        } else {
+            readDelta(in);
+        }
+        int slots = CoopProtocol.readVarint(in);
+        int acknowledged = 0;
+        for (int s = 0; s < slots; s++) {
+            int id = CoopProtocol.readVarint(in);
+            int sequence = CoopProtocol.readVarint(in);
+            if (s == slot) {
+                self = id >= 0 && id < rowOf.length ? rowOf[id] : -1;
+                acknowledged = sequence;
+            }
+        }
+        if (keyframe) {
+            displayedX = -1; // a new replica, nothing to correct
+        }
+        if (keyframe && self >= 0) {
+            serverX = entities.x(self);
+            serverY = entities.y(self);
+            serverFacing = entities.facing(self);
+        }
+        int lines = CoopProtocol.readVarint(in);
+        for (int i = 0; i < lines; i++) {
+            listener.story(in.readUTF());
+        }
+        reconcile(acknowledged, displayedX, displayedY);
+    }
+
+    private void readKeyframe(DataInputStream in) throws IOException {
+        int rows = CoopProtocol.readVarint(in);
+        int cols = CoopProtocol.readVarint(in);
+        byte[] terrain = new byte[rows * cols];
+        in.readFully(terrain);
+        grid = MazeGrid.fromTerrain(rows, cols, terrain);
+        int live = CoopProtocol.readVarint(in);
+        entities = new EntityTable(grid, live);
+        Arrays.fill(rowOf, -1);
+        for (int i = 0; i < live; i++) {
+            int id = CoopProtocol.readVarint(in);
+            int kind = CoopProtocol.readVarint(in);
+            int row = entities.add(kind, CoopProtocol.readVarint(in), CoopProtocol.readVarint(in), CoopProtocol.readVarint(in));
+            if (id >= rowOf.length) {
+                int length = rowOf.length;
+                rowOf = Arrays.copyOf(rowOf, Math.max(id + 1, length * 2));
+                Arrays.fill(rowOf, length, rowOf.length, -1);
+            }
+            rowOf[id] = row;
+        }
+    }
+
+    private void readDelta(DataInputStream in) throws IOException {
+        int cells = CoopProtocol.readVarint(in);
+        for (int i = 0; i < cells; i++) {
+            int cell = CoopProtocol.readVarint(in);
+            grid.set(cell / grid.cols(), cell % grid.cols(), in.readByte());
+        }
+        int moved = CoopProtocol.readVarint(in);
+        for (int i = 0; i < moved; i++) {
+            int row = rowOf[CoopProtocol.readVarint(in)];
+            int x = CoopProtocol.readVarint(in);
+            int y = CoopProtocol.readVarint(in);
+            int facing = CoopProtocol.readVarint(in);
+            if (row == self) {
+                serverX = x;
+                serverY = y;
+                serverFacing = facing;
+            } else {
+                entities.move(row, x, y, facing);
+            }
+        }
+    }
+
+    /** Drops acknowledged inputs, then replays the rest from the server's position. */
+    private void reconcile(int acknowledged, int displayedX, int displayedY) {
+        long now = System.nanoTime();
+        while (pendingCount > 0 && pendingSequence[pendingStart] <= acknowledged) {
+            ackLatency.record(now - pendingSentAt[pendingStart]);
+            pendingStart = (pendingStart + 1) % MAX_PENDING;
+            pendingCount--;
+        }
+        if (self < 0) {
+            return;
+        }
+        entities.move(self, serverX, serverY, serverFacing);
+        for (int i = 0; i < pendingCount; i++) {
+            predict(INPUTS[pendingInput[(pendingStart + i) % MAX_PENDING]]);
+        }
+        if (displayedX >= 0 && (entities.x(self) != displayedX || entities.y(self) != displayedY)) {
+            corrections++;
+        }
+    }
+
+    /** Moves the local player as the server will, as far as the replica can tell. */
+    private void predict(MazeSimulation.Input input) {
+        int x = entities.x(self);
+        int y = entities.y(self);
+        int facing;
+        switch (input) {
+            case UP: x--; facing = 0; break;
+            case LEFT: y--; facing = 3; break;
+            case DOWN: x++; facing = 2; break;
+            case RIGHT: y++; facing = 1; break;
+            default: return;
+        }
+        if (grid.isWalkable(x, y) && grid.get(x, y) != MazeGrid.EXIT) {
+            entities.move(self, x, y, facing);
+        }
+    }
+
+    /** True once the first keyframe has placed the local player. */
+    boolean isReady() {
+        return grid != null && self >= 0;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    int tickRate() {
+        return tickRate;
+    }
+
+    MazeGrid grid() {
+        return grid;
+    }
+
+    EntityTable entities() {
+        return entities;
+    }
+
+    int level() {
+        return level;
+    }
+
+    int theme() {
+        return theme;
+    }
+
+    MazeSimulation.Status status() {
+        return status;
+    }
+
+    boolean hasObjectiveItem() {
+        return hasObjectiveItem;
+    }
+
+    /** Predicted position of the local player. */
+    int playerX() {
+        return entities.x(self);
+    }
+
+    int playerY() {
+        return entities.y(self);
+    }
+
+    /** Time from sending an input to the first frame that reflects it. */
+    LatencyRecorder ackLatency() {
+        return ackLatency;
+    }
+
+    /** Frames in which the server disagreed with the predicted position. */
+    long corrections() {
+        return corrections;
+    }
+
+    long bytesReceived() {
+        return bytesReceived;
+    }
+
+    long framesReceived() {
+        return framesReceived;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connected = false;
+        channel.close();
+    }
+}
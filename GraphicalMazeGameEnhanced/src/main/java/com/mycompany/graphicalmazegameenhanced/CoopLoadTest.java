@@ -0,0 +1,110 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test for the co-op server.
+ *
+ * Connects sessions x botsPerSession bots, each on its own virtual thread, that
+ * apply state frames and send a random move about eight times a second, like a
+ * player holding a key. Without a server address it starts one on a loopback port
+ * in this process. Reports the state frames and bytes the bots received, the
+ * input-to-acknowledgement latency over all bots, how often prediction was
+ * corrected, and the server's tick time when it runs in process.
+ *
+ * Usage: CoopLoadTest [sessions=200] [botsPerSession=2] [seconds=10] [host:port]
+ */
+public final class CoopLoadTest {
+
+    private static final long MOVE_NANOS = TimeUnit.MILLISECONDS.toNanos(125);
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final MazeSimulation.Input[] MOVES = {
+            MazeSimulation.Input.UP, MazeSimulation.Input.LEFT, MazeSimulation.Input.DOWN, MazeSimulation.Input.RIGHT};
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int botsPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        CoopServer server = null;
+        InetSocketAddress address;
+        if (args.length > 3) {
+            int colon = args[3].lastIndexOf(':');
+            address = new InetSocketAddress(args[3].substring(0, colon), Integer.parseInt(args[3].substring(colon + 1)));
+        } else {
+            server = new CoopServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), botsPerSession);
+            server.start();
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port());
+        }
+
+        List<CoopClient> bots = new ArrayList<>();
+        for (int s = 0; s < sessions; s++) {
+            for (int b = 0; b < botsPerSession; b++) {
+                bots.add(CoopClient.connect(address, "load-" + s));
+            }
+        }
+        System.out.printf("%d bots in %d sessions on %s%n", bots.size(), sessions, address);
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        AtomicLong sent = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < bots.size(); i++) {
+            CoopClient bot = bots.get(i);
+            SplittableRandom random = new SplittableRandom(i);
+            threads.add(Thread.ofVirtual().start(() -> play(bot, random, end, sent)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int liveSessions = server == null ? 0 : server.sessionCount();
+        long frames = 0;
+        long bytes = 0;
+        long corrections = 0;
+        int disconnected = 0;
+        LatencyRecorder latency = new LatencyRecorder(1 << 20);
+        for (CoopClient bot : bots) {
+            frames += bot.framesReceived();
+            bytes += bot.bytesReceived();
+            corrections += bot.corrections();
+            disconnected += bot.isConnected() ? 0 : 1;
+            bot.ackLatency().copyTo(latency);
+            bot.close();
+        }
+        System.out.printf("State frames: %.0f/s in total, %.1f/s per bot; %.1f KB/s in total, %.0f bytes per frame%n",
+                frames / (double) seconds, frames / (double) seconds / bots.size(),
+                bytes / 1024.0 / seconds, frames == 0 ? 0.0 : bytes / (double) frames);
+        System.out.printf("Inputs sent: %d; predictions corrected: %d; bots disconnected: %d%n", sent.get(), corrections, disconnected);
+        System.out.printf("Input acknowledged (%d inputs, all bots): p50 %.3f ms, p90 %.3f ms, p99 %.3f ms%n", latency.count(),
+                latency.percentile(50) / 1e6, latency.percentile(90) / 1e6, latency.percentile(99) / 1e6);
+        if (server != null) {
+            System.out.printf("Server: %d sessions, session tick %s%n", liveSessions, server.tickTimes().summary());
+            server.close();
+        }
+    }
+
+    private static void play(CoopClient bot, SplittableRandom random, long end, AtomicLong sent) {
+        long nextMove = System.nanoTime() + random.nextLong(MOVE_NANOS);
+        try {
+            while (System.nanoTime() < end && bot.isConnected()) {
+                bot.poll();
+                if (System.nanoTime() >= nextMove) {
+                    bot.send(MOVES[random.nextInt(MOVES.length)]);
+                    sent.incrementAndGet();
+                    nextMove += MOVE_NANOS;
+                }
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+        } catch (IOException e) {
+            System.err.println("Bot failed: " + e.getMessage());
+        }
+    }
+}
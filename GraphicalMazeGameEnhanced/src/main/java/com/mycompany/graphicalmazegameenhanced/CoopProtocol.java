@@ -0,0 +1,142 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Wire format shared by {@link CoopServer} and {@link CoopClient}.
+ *
+ * Every message is a frame: a 4-byte big-endian length, then a type byte and the
+ * payload. Integers in payloads are zigzag varints, so small coordinates and
+ * counts cost a byte and -1 (an empty slot) costs one too.
+ *
+ * Client to server: HELLO (magic, version, session name as UTF), then INPUT
+ * (sequence number, input ordinal) for every command. Server to client: WELCOME
+ * (player slot, tick rate) or REJECT (reason), then STATE frames:
+ *
+ * tick, status, flags (KEYFRAME, HAS_ITEM), level, theme; a keyframe carries rows,
+ * cols, the whole terrain and every live entity (id, kind, x, y, facing), a delta
+ * only the changed cells (index, tile) and moved entities (id, x, y, facing);
+ * then per player slot its entity id and the last input sequence applied; then
+ * the story lines produced since the previous frame.
+ */
+final class CoopProtocol {
+
+    static final int MAGIC = 0x4D5A4350; // "MZCP"
+    static final int VERSION = 1;
+    static final int MAX_FRAME = 16 << 20;
+    /** Largest frame a client sends: a HELLO with the longest session name writeUTF allows. */
+    static final int MAX_CLIENT_FRAME = 1 << 17;
+
+    static final byte HELLO = 1;
+    static final byte INPUT = 2;
+    static final byte WELCOME = 16;
+    static final byte REJECT = 17;
+    static final byte STATE = 18;
+
+    static final int KEYFRAME = 1;
+    static final int HAS_ITEM = 1 << 1;
+
+    private CoopProtocol() {
+    }
+
+    /** Builds one message in memory; {@link #finish()} returns it as a frame ready to write. */
+    static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        Writer(byte type) throws IOException {
+            out.writeInt(0);
+            out.writeByte(type);
+        }
+
+        Writer varint(int value) throws IOException {
+            writeVarint(out, value);
+            return this;
+        }
+
+        ByteBuffer finish() {
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            frame.putInt(0, frame.capacity() - 4);
+            return frame;
+        }
+    }
+
+    /** Opens a received frame (type byte first) for reading. */
+    static DataInputStream reader(byte[] frame) {
+        return new DataInputStream(new ByteArrayInputStream(frame));
+    }
+
+    /** Blocks until a whole frame has arrived; returns null at end of stream. */
+    static byte[] readFrame(ReadableByteChannel channel) throws IOException {
+        return readFrame(channel, MAX_FRAME);
+    }
+
+    /** As {@link #readFrame(ReadableByteChannel)}, refusing frames longer than maxLength. */
+    static byte[] readFrame(ReadableByteChannel channel, int maxLength) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (!readFully(channel, header)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length < 1 || length > maxLength) {
+            throw new IOException("Bad frame length " + length);
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        if (!readFully(channel, body)) {
+            throw new EOFException("Connection closed mid-frame");
+        }
+        return body.array();
+    }
+
+    static void writeFrame(WritableByteChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            out.write((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.write(zigzag);
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint in frame");
+    }
+}
@@ -0,0 +1,532 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Authoritative co-op server: hosts maze sessions that several players share.
+ *
+ * A client connects over TCP, names a session and gets a player slot in it; a
+ * session starts on its first join and ends when its last player leaves. Each
+ * session runs its MazeSimulation on its own virtual thread at a fixed tick rate,
+ * applying at most one queued input per player per tick, so monsters only ever
+ * move here. Every few ticks it broadcasts a state frame (see {@link CoopProtocol}):
+ * a keyframe when the level or the set of players changed, otherwise a delta with
+ * only the changed cells and moved entities. Terrain is only diffed when the grid
+ * reports a write, and the same delta bytes go to every client of the session.
+ *
+ * Connections are NIO socket channels in blocking mode, each served by a reader
+ * and a writer virtual thread, so hundreds of sessions cost parked virtual threads
+ * instead of platform threads or a selector loop. A client whose outbound queue
+ * fills up is dropped rather than allowed to stall its session. Inbound, each client
+ * has at most MAX_INPUTS inputs queued; one sending faster than the tick rate loses
+ * its oldest ones, as the client's own prediction buffer does, and frames longer
+ * than a HELLO close the connection. A won or lost game restarts at level 1 after a
+ * short pause.
+ *
+ * Usage: CoopServer [port=7777] [maxPlayersPerSession=4]
+ */
+public final class CoopServer implements Closeable {
+
+    static final int TICK_RATE = Integer.getInteger("maze.tickRate", 60);
+    /** State frames go out every this many ticks. */
+    static final int TICKS_PER_STATE = 3;
+    private static final int MONSTER_MOVE_MILLIS = 300;
+    private static final int RESTART_SECONDS = 3;
+    private static final int OUTBOX_FRAMES = 256;
+    /** Inputs queued per client; a tick applies one, so this is about a second of backlog. */
+    private static final int MAX_INPUTS = 64;
+    private static final MazeSimulation.Input[] INPUTS = MazeSimulation.Input.values();
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final ServerSocketChannel server;
+    private final int maxPlayers;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final LatencyRecorder tickTimes = new LatencyRecorder(1 << 16);
+    private volatile boolean running = true;
+
+    CoopServer(InetSocketAddress address, int maxPlayers) throws IOException {
+        this.server = ServerSocketChannel.open().bind(address);
+        this.maxPlayers = maxPlayers;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int maxPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        CoopServer server = new CoopServer(new InetSocketAddress(port), maxPlayers);
+        System.out.printf("Co-op server on port %d, %d players per session, %d Hz%n", server.port(), maxPlayers, TICK_RATE);
+        server.start();
+        while (true) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(10));
+            System.out.printf("%d sessions; session tick %s%n", server.sessionCount(), server.tickTimes().summary());
+        }
+    }
+
+    void start() {
+        Thread.ofPlatform().daemon().name("coop-accept").start(this::acceptLoop);
+    }
+
+    int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    /** Time spent in each session tick, across all sessions. */
+    LatencyRecorder tickTimes() {
+        return tickTimes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.socket().setTcpNoDelay(true);
+                Thread.ofVirtual().name("coop-client").start(() -> handshake(channel));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handshake(SocketChannel channel) {
+        try {
+            byte[] hello = CoopProtocol.readFrame(channel, CoopProtocol.MAX_CLIENT_FRAME);
+            if (hello == null) {
+                channel.close();
+                return;
+            }
+            DataInputStream in = CoopProtocol.reader(hello);
+            if (in.readByte() != CoopProtocol.HELLO || in.readInt() != CoopProtocol.MAGIC
+                    || CoopProtocol.readVarint(in) != CoopProtocol.VERSION) {
+                reject(channel, "Not a co-op client of this version");
+                return;
+            }
+            String name = in.readUTF();
+            Connection connection = new Connection(channel);
+            Session session;
+            do {
+                session = sessions.computeIfAbsent(name, Session::new);
+            } while (!session.offer(connection));
+        } catch (IOException e) {
+            closeQuietly(channel);
+        }
+    }
+
+    private static void reject(SocketChannel channel, String reason) throws IOException {
+        CoopProtocol.Writer message = new CoopProtocol.Writer(CoopProtocol.REJECT);
+        message.out.writeUTF(reason);
+        CoopProtocol.writeFrame(channel, message.finish());
+        channel.close();
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    /** One client: inputs arrive on a reader thread, frames leave through a writer thread. */
+    private static final class Connection {
+        final SocketChannel channel;
+        final BlockingQueue<Long> inputs = new ArrayBlockingQueue<>(MAX_INPUTS);
+        final BlockingQueue<ByteBuffer> outbox = new ArrayBlockingQueue<>(OUTBOX_FRAMES);
+        volatile boolean closed;
+        int slot = -1;
+        int lastSequence;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void start() {
+            Thread.ofVirtual().name("coop-read").start(this::readLoop);
+            Thread.ofVirtual().name("coop-write").start(this::writeLoop);
+        }
+
+        /** Queues a frame; a client too far behind to take it is disconnected. */
+        void send(ByteBuffer frame) {
+            if (!closed && !outbox.offer(frame.duplicate())) {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            outbox.clear();
+            outbox.offer(CLOSE);
+            closeQuietly(channel);
+        }
+
+        private void readLoop() {
+            try {
+                byte[] frame;
+                while ((frame = CoopProtocol.readFrame(channel, CoopProtocol.MAX_CLIENT_FRAME)) != null) {
+                    DataInputStream in = CoopProtocol.reader(frame);
+                    if (in.readByte() == CoopProtocol.INPUT) {
+                        long sequence = CoopProtocol.readVarint(in);
+                        int input = in.readUnsignedByte();
+                        if (input < INPUTS.length) {
+                            // Past the backlog the oldest input goes; its sequence is acknowledged by the next one applied.
+                            while (!inputs.offer(sequence << 8 | input)) {
+                                inputs.poll();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // treated as a disconnect
+            }
+            close();
+        }
+
+        private void writeLoop() {
+            try {
+                ByteBuffer frame;
+                while ((frame = outbox.take()) != CLOSE) {
+                    CoopProtocol.writeFrame(channel, frame);
+                }
+            } catch (IOException | InterruptedException e) {
+                close();
+            }
+        }
+    }
+
+    /** A shared game: its own simulation and tick thread, and the state last broadcast. */
+    private final class Session implements Runnable {
+        private final String name;
+        private final ConcurrentLinkedQueue<Connection> joining = new ConcurrentLinkedQueue<>();
+        private final List<Connection> connections = new ArrayList<>();
+        private final List<String> story = new ArrayList<>();
+        private final long tickNanos = 1_000_000_000L / TICK_RATE;
+        private MazeSimulation simulation;
+        private MazeSimulation.Input[] inputs = new MazeSimulation.Input[0];
+        private long ticks;
+        private long restartTick = -1;
+        private boolean closed;
+        private boolean keyframe;
+        // The state last broadcast, for deltas.
+        private MazeGrid sentGrid;
+        private long sentChanges;
+        private byte[] sentTerrain = new byte[0];
+        private byte[] terrain = new byte[0];
+        private int[] sentX = new int[0];
+        private int[] sentY = new int[0];
+        private int[] sentFacing = new int[0];
+
+        Session(String name) {
+            this.name = name;
+            Thread.ofVirtual().name("coop-session-" + name).start(this);
+        }
+
+        /** Hands a new client to the session thread; false when the session has just ended. */
+        synchronized boolean offer(Connection connection) {
+            if (closed) {
+                return false;
+            }
+            joining.add(connection);
+            return true;
+        }
+
+        /**
+         * Ticks until the last player leaves or the server closes. A tick that throws
+         * ends this session only: its clients are disconnected and the name is freed
+         * for a new session, while other sessions keep running.
+         */
+        @Override
+        public void run() {
+            try {
+                simulation = newGame();
+                long next = System.nanoTime();
+                while (running) {
+                    admit();
+                    dropClosed();
+                    if (connections.isEmpty() && tryClose()) {
+                        return;
+                    }
+                    if (!connections.isEmpty()) {
+                        long start = System.nanoTime();
+                        tick();
+                        if (keyframe || ticks % TICKS_PER_STATE == 0) {
+                            broadcast();
+                        }
+                        tickTimes.record(System.nanoTime() - start);
+                    }
+                    next += tickNanos;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    } else if (wait < -10 * tickNanos) {
+                        next = System.nanoTime();
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Session " + name + " failed: " + e);
+                abort();
+            }
+            connections.forEach(Connection::close);
+        }
+
+        private MazeSimulation newGame() {
+            int ticksPerMonsterMove = Math.round(MONSTER_MOVE_MILLIS * TICK_RATE / 1000f);
+            MazeSimulation game = new MazeSimulation(ticksPerMonsterMove, new SplittableRandom(name.hashCode() ^ System.nanoTime()));
+            game.setListener(story::add);
+            game.loadLevel(1);
+            game.removePlayer(0);
+            keyframe = true;
+            return game;
+        }
+
+        private synchronized boolean tryClose() {
+            if (!joining.isEmpty()) {
+                return false;
+            }
+            closed = true;
+            sessions.remove(name, this);
+            return true;
+        }
+
+        /** Closes the session whatever its state; clients still waiting to join are disconnected. */
+        private synchronized void abort() {
+            closed = true;
+            sessions.remove(name, this);
+            Connection connection;
+            while ((connection = joining.poll()) != null) {
+                closeQuietly(connection.channel);
+            }
+        }
+
+        private void admit() {
+            Connection connection;
+            while ((connection = joining.poll()) != null) {
+                if (connections.size() >= maxPlayers) {
+                    try {
+                        reject(connection.channel, "Session " + name + " is full");
+                    } catch (IOException e) {
+                        closeQuietly(connection.channel);
+                    }
+                    continue;
+                }
+                connection.slot = simulation.addPlayer();
+                connections.add(connection);
+                connection.start();
+                try {
+                    connection.send(new CoopProtocol.Writer(CoopProtocol.WELCOME)
+                            .varint(connection.slot).varint(TICK_RATE).finish());
+                } catch (IOException e) {
+                    connection.close();
+                }
+                story.add("Player " + (connection.slot + 1) + " joined " + name + ".\n");
+                keyframe = true;
+            }
+        }
+
+        private void dropClosed() {
+            for (int i = connections.size() - 1; i >= 0; i--) {
+                Connection connection = connections.get(i);
+                if (connection.closed) {
+                    connections.remove(i);
+                    simulation.removePlayer(connection.slot);
+                    story.add("Player " + (connection.slot + 1) + " left.\n");
+                    keyframe = true;
+                }
+            }
+        }
+
+        private void tick() {
+            ticks++;
+            if (restartTick >= 0) {
+                // Between games inputs are acknowledged and dropped, so none are left over for the next one.
+                for (Connection connection : connections) {
+                    Long input;
+                    while ((input = connection.inputs.poll()) != null) {
+                        connection.lastSequence = (int) (input >>> 8);
+                    }
+                }
+                if (ticks >= restartTick) {
+                    restart();
+                }
+                return;
+            }
+            if (inputs.length < simulation.playerSlots()) {
+                inputs = new MazeSimulation.Input[simulation.playerSlots()];
+            }
+            Arrays.fill(inputs, null);
+            for (Connection connection : connections) {
+                Long input = connection.inputs.poll();
+                if (input != null) {
+                    inputs[connection.slot] = INPUTS[(int) (input & 0xFF)];
+                    connection.lastSequence = (int) (input >>> 8);
+                }
+            }
+            if (simulation.step(inputs) != MazeSimulation.Status.PLAYING) {
+                story.add("A new game begins in " + RESTART_SECONDS + " seconds.\n");
+                restartTick = ticks + (long) RESTART_SECONDS * TICK_RATE;
+            }
+        }
+
+        /** New game with the same players in the same slots. */
+        private void restart() {
+            restartTick = -1;
+            simulation = newGame();
+            int slots = 0;
+            for (Connection connection : connections) {
+                slots = Math.max(slots, connection.slot + 1);
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                simulation.addPlayer();
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                final int s = slot;
+                if (connections.stream().noneMatch(c -> c.slot == s)) {
+                    simulation.removePlayer(slot);
+                }
+            }
+        }
+
+        private void broadcast() {
+            ByteBuffer frame;
+            try {
+                frame = encodeState();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            for (Connection connection : connections) {
+                connection.send(frame);
+            }
+            story.clear();
+        }
+
+        private ByteBuffer encodeState() throws IOException {
+            MazeGrid grid = simulation.grid();
+            EntityTable entities = simulation.entities();
+            boolean full = keyframe || grid != sentGrid;
+            CoopProtocol.Writer message = new CoopProtocol.Writer(CoopProtocol.STATE);
+            message.varint((int) ticks).varint(simulation.status().ordinal())
+                    .varint((full ? CoopProtocol.KEYFRAME : 0) | (simulation.hasObjectiveItem() ? CoopProtocol.HAS_ITEM : 0))
+                    .varint(simulation.level()).varint(simulation.theme());
+            int cells = grid.rows() * grid.cols();
+            if (full) {
+                if (terrain.length != cells) {
+                    terrain = new byte[cells];
+                    sentTerrain = new byte[cells];
+                }
+                grid.copyTerrain(sentTerrain);
+                message.varint(grid.rows()).varint(grid.cols());
+                message.out.write(sentTerrain);
+                int live = entities.count() - countRemoved(entities);
+                message.varint(live);
+                sentX = new int[entities.count()];
+                sentY = new int[entities.count()];
+                sentFacing = new int[entities.count()];
+                for (int e = 0; e < entities.count(); e++) {
+                    if (entities.kind(e) != EntityTable.REMOVED) {
+                        message.varint(e).varint(entities.kind(e)).varint(entities.x(e)).varint(entities.y(e))
+                                .varint(entities.facing(e));
+                        sentX[e] = entities.x(e);
+                        sentY[e] = entities.y(e);
+                        sentFacing[e] = entities.facing(e);
+                    }
+                }
+                sentGrid = grid;
+                sentChanges = grid.changes();
+                keyframe = false;
+            } else {
+                int changedCells = 0;
+                ByteArrayOutputStream cellChanges = null;
+                if (grid.changes() != sentChanges) {
+                    grid.copyTerrain(terrain);
+                    cellChanges = new ByteArrayOutputStream();
+                    for (int i = 0; i < cells; i++) {
+                        if (terrain[i] != sentTerrain[i]) {
+                            CoopProtocol.writeVarint(cellChanges, i);
+                            cellChanges.write(terrain[i]);
+                            sentTerrain[i] = terrain[i];
+                            changedCells++;
+                        }
+                    }
+                    sentChanges = grid.changes();
+                }
+                message.varint(changedCells);
+                if (cellChanges != null) {
+                    cellChanges.writeTo(message.out);
+                }
+                int moved = 0;
+                for (int e = 0; e < entities.count(); e++) {
+                    if (entities.kind(e) != EntityTable.REMOVED && hasMoved(entities, e)) {
+                        moved++;
+                    }
+                }
+                message.varint(moved);
+                for (int e = 0; e < entities.count(); e++) {
+                    if (entities.kind(e) != EntityTable.REMOVED && hasMoved(entities, e)) {
+                        message.varint(e).varint(entities.x(e)).varint(entities.y(e)).varint(entities.facing(e));
+                        sentX[e] = entities.x(e);
+                        sentY[e] = entities.y(e);
+                        sentFacing[e] = entities.facing(e);
+                    }
+                }
+            }
+            message.varint(simulation.playerSlots());
+            for (int slot = 0; slot < simulation.playerSlots(); slot++) {
+                message.varint(simulation.playerEntity(slot)).varint(lastSequence(slot));
+            }
+            message.varint(story.size());
+            for (String line : story) {
+                message.out.writeUTF(line);
+            }
+            return message.finish();
+        }
+
+        private boolean hasMoved(EntityTable entities, int e) {
+            return entities.x(e) != sentX[e] || entities.y(e) != sentY[e] || entities.facing(e) != sentFacing[e];
+        }
+
+        private int lastSequence(int slot) {
+            for (Connection connection : connections) {
+                if (connection.slot == slot) {
+                    return connection.lastSequence;
+                }
+            }
+            return 0;
+        }
+
+        private int countRemoved(EntityTable entities) {
+            int removed = 0;
+            for (int e = 0; e < entities.count(); e++) {
+                if (entities.kind(e) == EntityTable.REMOVED) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Every entity of a level (the player, sages, monsters) in structure-of-arrays storage.
+ *
+ * An entity is a row index. Its components (kind, position, facing, AI mode and
+ * patrol endpoints) live in parallel primitive arrays, and what a kind does is data
+ * in per-kind tables: flags such as SOLID or HOSTILE and the sprite it is drawn
+ * with. Each flag keeps a packed member list in spawn order, so a system visits only
+ * the entities it acts on: MonsterAi walks THINKS, interaction walks TALKS and the
+ * render pass walks MARKER. A per-cell index maps each cell to the SOLID entity on
+ * it, kept in sync with the grid's occupancy bits, so "who is at (x, y)" never
+ * scans. A new kind of entity is a new row in the tables, not a new branch in the
+ * systems, and nothing allocates once a level is spawned.
+ */
+final class EntityTable {
+
+    static final int PLAYER = 0;
+    static final int MONSTER = 1;
+    static final int SAGE = 2;
+    /** Kind of a removed entity's row; indices of the others stay valid. */
+    static final int REMOVED = -1;
+
+    /** Fills its cell: found through {@link #at} and marked occupied in the grid. */
+    static final int SOLID = 1;
+    /** Touching it ends the game. */
+    static final int HOSTILE = 1 << 1;
+    /** Interacting next to it advances the level's sage dialogue. */
+    static final int TALKS = 1 << 2;
+    /** Moved by MonsterAi according to its mode. */
+    static final int THINKS = 1 << 3;
+    /** Drawn at its own position; SOLID kinds are found per cell and sages are part of the terrain. */
+    static final int MARKER = 1 << 4;
+    private static final int FLAG_COUNT = 5;
+
+    // Indexed by kind.
+    private static final int[] KIND_FLAGS = {MARKER, SOLID | HOSTILE | THINKS, TALKS};
+    private static final byte[] KIND_SPRITE = {FrameSnapshot.PLAYER, FrameSnapshot.MONSTER, FrameSnapshot.NONE};
+
+    private final MazeGrid grid;
+    private final int[] occupant;
+    private int[] kind;
+    private int[] xs;
+    private int[] ys;
+    private int[] facing;
+    private int[] mode;
+    private int[] patrolFrom;
+    private int[] patrolTo;
+    private int count;
+    private final int[] kindCount = new int[KIND_FLAGS.length];
+    private final int[][] members = new int[FLAG_COUNT][];
+    private final int[] memberCount = new int[FLAG_COUNT];
+
+    EntityTable(MazeGrid grid, int capacity) {
+        this.grid = grid;
+        this.occupant = new int[grid.rows() * grid.cols()];
+        this.kind = new int[Math.max(1, capacity)];
+        this.xs = new int[kind.length];
+        this.ys = new int[kind.length];
+        this.facing = new int[kind.length];
+        this.mode = new int[kind.length];
+        this.patrolFrom = new int[kind.length];
+        this.patrolTo = new int[kind.length];
+        for (int f = 0; f < FLAG_COUNT; f++) {
+            members[f] = new int[kind.length];
+        }
+    }
+
+    /** Adds an entity of the given kind and returns its index. */
+    int add(int entityKind, int x, int y, int direction) {
+        if (count == kind.length) {
+            int capacity = count * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            facing = Arrays.copyOf(facing, capacity);
+            mode = Arrays.copyOf(mode, capacity);
+            patrolFrom = Arrays.copyOf(patrolFrom, capacity);
+            patrolTo = Arrays.copyOf(patrolTo, capacity);
+        }
+        int e = count++;
+        kind[e] = entityKind;
+        xs[e] = x;
+        ys[e] = y;
+        facing[e] = direction;
+        mode[e] = MonsterAi.WANDER;
+        patrolFrom[e] = grid.index(x, y);
+        patrolTo[e] = grid.index(x, y);
+        kindCount[entityKind]++;
+        int flags = KIND_FLAGS[entityKind];
+        for (int f = 0; f < FLAG_COUNT; f++) {
+            if ((flags & (1 << f)) != 0) {
+                if (memberCount[f] == members[f].length) {
+                    members[f] = Arrays.copyOf(members[f], memberCount[f] * 2);
+                }
+                members[f][memberCount[f]++] = e;
+            }
+        }
+        if ((flags & SOLID) != 0) {
+            occupant[grid.index(x, y)] = e + 1;
+            grid.setOccupied(x, y, true);
+        }
+        return e;
+    }
+
+    void move(int e, int x, int y, int direction) {
+        if ((KIND_FLAGS[kind[e]] & SOLID) != 0) {
+            int from = grid.index(xs[e], ys[e]);
+            if (occupant[from] == e + 1) {
+                occupant[from] = 0;
+                grid.setOccupied(xs[e], ys[e], false);
+            }
+            occupant[grid.index(x, y)] = e + 1;
+            grid.setOccupied(x, y, true);
+        }
+        xs[e] = x;
+        ys[e] = y;
+        facing[e] = direction;
+    }
+
+    /** Drops the entity from every system and the occupancy index, leaving an empty row. */
+    void remove(int e) {
+        int flags = KIND_FLAGS[kind[e]];
+        for (int f = 0; f < FLAG_COUNT; f++) {
+            if ((flags & (1 << f)) != 0) {
+                int[] list = members[f];
+                int i = 0;
+                while (list[i] != e) {
+                    i++;
+                }
+                System.arraycopy(list, i + 1, list, i, memberCount[f] - i - 1);
+                memberCount[f]--;
+            }
+        }
+        if ((flags & SOLID) != 0 && occupant[grid.index(xs[e], ys[e])] == e + 1) {
+            occupant[grid.index(xs[e], ys[e])] = 0;
+            grid.setOccupied(xs[e], ys[e], false);
+        }
+        kindCount[kind[e]]--;
+        kind[e] = REMOVED;
+    }
+
+    /** Index of the SOLID entity on (x, y), or -1 when there is none. */
+    int at(int x, int y) {
+        return occupant[grid.index(x, y)] - 1;
+    }
+
+    /** True when a HOSTILE entity stands on (x, y). */
+    boolean isHostileAt(int x, int y) {
+        int e = at(x, y);
+        return e >= 0 && (KIND_FLAGS[kind[e]] & HOSTILE) != 0;
+    }
+
+    /** Rows in the table, removed ones included. */
+    int count() {
+        return count;
+    }
+
+    /** Entities of one kind. */
+    int count(int entityKind) {
+        return kindCount[entityKind];
+    }
+
+    /** Entities with the given flag (one of the flag constants). */
+    int memberCount(int flag) {
+        return memberCount[Integer.numberOfTrailingZeros(flag)];
+    }
+
+    /** The i-th entity with the given flag, in spawn order. */
+    int member(int flag, int i) {
+        return members[Integer.numberOfTrailingZeros(flag)][i];
+    }
+
+    int kind(int e) {
+        return kind[e];
+    }
+
+    /** How the entity is drawn: a FrameSnapshot sprite code. */
+    byte sprite(int e) {
+        return KIND_SPRITE[kind[e]];
+    }
+
+    int x(int e) {
+        return xs[e];
+    }
+
+    int y(int e) {
+        return ys[e];
+    }
+
+    int facing(int e) {
+        return facing[e];
+    }
+
+    int mode(int e) {
+        return mode[e];
+    }
+
+    void setMode(int e, int value) {
+        mode[e] = value;
+    }
+
+    /** Cell the entity is currently walking toward while patrolling. */
+    int patrolTarget(int e) {
+        return patrolTo[e];
+    }
+
+    /** Patrols between the current cell and the given one. */
+    void setPatrol(int e, int targetCell) {
+        patrolFrom[e] = grid.index(xs[e], ys[e]);
+        patrolTo[e] = targetCell;
+    }
+
+    /** Swaps the patrol endpoints once the current target is reached. */
+    void turnAround(int e) {
+        int target = patrolTo[e];
+        patrolTo[e] = patrolFrom[e];
+        patrolFrom[e] = target;
+    }
+}
@@ -0,0 +1,191 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Line of sight from the player, with memory of every cell seen so far.
+ *
+ * Visibility is found by recursive shadowcasting over the eight octants around the
+ * player, out to a fixed radius; walls and water block sight. The result is kept
+ * in bitsets like MazeGrid's. {@link #update} only recomputes when the player has
+ * moved or the grid's walkability version has changed, and then only clears the
+ * cells it lit last time, so the cost follows the sight radius, not the maze size.
+ */
+final class FieldOfView {
+
+    // Octant transforms: (xx, xy, yx, yy) per octant.
+    private static final int[][] OCTANTS = {
+        {1, 0, 0, 1}, {0, 1, 1, 0}, {0, -1, 1, 0}, {-1, 0, 0, 1},
+        {-1, 0, 0, -1}, {0, -1, -1, 0}, {0, 1, -1, 0}, {1, 0, 0, -1}
+    };
+
+    private final int radius;
+    private MazeGrid grid;
+    private long gridVersion;
+    private int originX = -1;
+    private int originY = -1;
+    private long[] visible = new long[0];
+    private long[] explored = new long[0];
+    private int[] lit = new int[64];
+    private int litCount;
+    // Cells first explored by reveal(), in order, for maps that draw explored cells.
+    private int[] revealed = new int[64];
+    private int revealedCount;
+
+    FieldOfView(int radius) {
+        this.radius = Math.max(1, radius);
+    }
+
+    int radius() {
+        return radius;
+    }
+
+    /**
+     * Brings visibility up to date for a player at (x, y). Returns false when nothing
+     * changed since the last call and no work was done. A new grid (a level change or a
+     * loaded game) also forgets what was explored.
+     */
+    boolean update(MazeGrid grid, int x, int y) {
+        if (grid != this.grid) {
+            this.grid = grid;
+            int words = (grid.rows() * grid.cols() + 63) >>> 6;
+            visible = new long[words];
+            explored = new long[words];
+            litCount = 0;
+            revealedCount = 0;
+        } else if (x == originX && y == originY && grid.version() == gridVersion) {
+            return false;
+        }
+        gridVersion = grid.version();
+        originX = x;
+        originY = y;
+        for (int i = 0; i < litCount; i++) {
+            visible[lit[i] >>> 6] &= ~(1L << lit[i]);
+        }
+        litCount = 0;
+        light(x, y);
+        for (int[] octant : OCTANTS) {
+            castLight(x, y, 1, 1.0, 0.0, octant[0], octant[1], octant[2], octant[3]);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the cells within radius of (x, y) as explored, as a light source there
+     * would show them; they need not be in the player's sight. Ignored for a grid
+     * other than the one last updated for.
+     */
+    void reveal(MazeGrid grid, int x, int y, int radius) {
+        if (grid != this.grid) {
+            return;
+        }
+        for (int dx = -radius; dx <= radius; dx++) {
+            for (int dy = -radius; dy <= radius; dy++) {
+                if (dx * dx + dy * dy <= radius * radius && grid.inBounds(x + dx, y + dy)) {
+                    int cell = grid.index(x + dx, y + dy);
+                    if (!testBit(explored, cell)) {
+                        explored[cell >>> 6] |= 1L << cell;
+                        if (revealedCount == revealed.length) {
+                            revealed = Arrays.copyOf(revealed, revealedCount * 2);
+                        }
+                        revealed[revealedCount++] = cell;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Cells explored by {@link #reveal} on this grid so far; each is counted once, so this only grows. */
+    int revealedCount() {
+        return revealedCount;
+    }
+
+    /** Grid index of the i-th cell revealed, for i below {@link #revealedCount}. */
+    int revealedCell(int i) {
+        return revealed[i];
+    }
+
+    boolean isVisible(int x, int y) {
+        return grid != null && grid.inBounds(x, y) && testBit(visible, grid.index(x, y));
+    }
+
+    boolean isExplored(int x, int y) {
+        return grid != null && grid.inBounds(x, y) && testBit(explored, grid.index(x, y));
+    }
+
+    /** Cells in sight after the last update. */
+    int visibleCount() {
+        return litCount;
+    }
+
+    /** Grid index of the i-th cell in sight, for i below {@link #visibleCount}. */
+    int visibleCell(int i) {
+        return lit[i];
+    }
+
+    private void castLight(int cx, int cy, int row, double start, double end, int xx, int xy, int yx, int yy) {
+        if (start < end) {
+            return;
+        }
+        int radiusSquared = radius * radius;
+        double newStart = 0;
+        for (int distance = row; distance <= radius; distance++) {
+            boolean blocked = false;
+            int dy = -distance;
+            for (int dx = -distance; dx <= 0; dx++) {
+                double leftSlope = (dx - 0.5) / (dy + 0.5);
+                double rightSlope = (dx + 0.5) / (dy - 0.5);
+                if (start < rightSlope) {
+                    continue;
+                }
+                if (end > leftSlope) {
+                    break;
+                }
+                int x = cx + dx * xx + dy * xy;
+                int y = cy + dx * yx + dy * yy;
+                boolean inside = grid.inBounds(x, y);
+                if (inside && dx * dx + dy * dy <= radiusSquared) {
+                    light(x, y);
+                }
+                boolean opaque = !inside || isOpaque(grid.get(x, y));
+                if (blocked) {
+                    if (opaque) {
+                        newStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        start = newStart;
+                    }
+                } else if (opaque && distance < radius) {
+                    blocked = true;
+                    castLight(cx, cy, distance + 1, start, leftSlope, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+            if (blocked) {
+                return;
+            }
+        }
+    }
+
+    private void light(int x, int y) {
+        int cell = grid.index(x, y);
+        if (testBit(visible, cell)) {
+            return;
+        }
+        visible[cell >>> 6] |= 1L << cell;
+        explored[cell >>> 6] |= 1L << cell;
+        if (litCount == lit.length) {
+            lit = Arrays.copyOf(lit, litCount * 2);
+        }
+        lit[litCount++] = cell;
+    }
+
+    /** Walls and standing water; a spring is water, while floods and pits come and go without blocking sight. */
+    private static boolean isOpaque(byte tile) {
+        return tile == MazeGrid.WALL || tile == MazeGrid.WATER || tile == MazeGrid.SPRING;
+    }
+
+    private static boolean testBit(long[] words, int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+/**
+ * Breadth-first distance field toward one target cell.
+ *
+ * Computed once and shared by every monster heading to the same place: a monster
+ * just steps to the neighbour with the smallest distance, so moving M monsters
+ * costs O(M) instead of one path search each. Occupancy is ignored; only terrain
+ * walkability shapes the field, which stays valid until the grid version changes.
+ * Transient hazards (flood water, pits) count as open, since they clear on a timer.
+ * The search can be capped at a maximum distance, in which case it only touches
+ * cells within that radius; generation stamps avoid clearing the whole array.
+ */
+final class FlowField {
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int[] distance;
+    private final int[] stamp;
+    private final int[] queue;
+    private int generation;
+    private int target = -1;
+    private long version = -1;
+
+    FlowField(int cells) {
+        distance = new int[cells];
+        stamp = new int[cells];
+        queue = new int[cells];
+    }
+
+    boolean isFor(int targetCell, long gridVersion) {
+        return target == targetCell && version == gridVersion;
+    }
+
+    void compute(MazeGrid grid, int targetCell) {
+        compute(grid, targetCell, UNREACHABLE - 1);
+    }
+
+    /** Fills distances up to maxDistance steps from targetCell; farther cells read as UNREACHABLE. */
+    void compute(MazeGrid grid, int targetCell, int maxDistance) {
+        int rows = grid.rows();
+        int cols = grid.cols();
+        generation++;
+        target = targetCell;
+        version = grid.version();
+
+        int head = 0;
+        int tail = 0;
+        mark(targetCell, 0);
+        queue[tail++] = targetCell;
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = distance[cell] + 1;
+            if (next > maxDistance) {
+                break;
+            }
+            int x = cell / cols;
+            int y = cell - x * cols;
+            if (x > 0 && visit(grid, cell - cols, next)) queue[tail++] = cell - cols;
+            if (x < rows - 1 && visit(grid, cell + cols, next)) queue[tail++] = cell + cols;
+            if (y > 0 && visit(grid, cell - 1, next)) queue[tail++] = cell - 1;
+            if (y < cols - 1 && visit(grid, cell + 1, next)) queue[tail++] = cell + 1;
+        }
+    }
+
+    private boolean visit(MazeGrid grid, int cell, int next) {
+        if (stamp[cell] == generation || !grid.isPassable(cell)) {
+            return false;
+        }
+        mark(cell, next);
+        return true;
+    }
+
+    private void mark(int cell, int value) {
+        stamp[cell] = generation;
+        distance[cell] = value;
+    }
+
+    int distance(int cell) {
+        return stamp[cell] == generation ? distance[cell] : UNREACHABLE;
+    }
+}
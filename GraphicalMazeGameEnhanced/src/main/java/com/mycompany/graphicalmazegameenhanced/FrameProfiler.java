@@ -0,0 +1,150 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counters behind the in-game profiler overlay.
+ *
+ * Frame intervals, per-frame allocation on the game loop and the EDT, and repaint
+ * area, and the time from a key press to the paint that first shows its move, are
+ * kept in the same fixed rings as the tick and paint timings, so recording costs
+ * a few array writes and nothing is allocated. Allocation is read from the
+ * HotSpot per-thread counter; on VMs without it the overlay shows "n/a".
+ *
+ * The overlay text is rebuilt a few times a second from one sort per ring into a
+ * scratch array, and its drawing time and allocation are reported separately so
+ * the paint figures it shows do not include itself.
+ */
+final class FrameProfiler {
+
+    static final Rectangle OVERLAY = new Rectangle(4, 4, 300, 85);
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+    private static final long REFRESH_NANOS = 250_000_000L;
+
+    private final LatencyRecorder frameIntervals = new LatencyRecorder(256);
+    private final LatencyRecorder loopAllocations = new LatencyRecorder(256);
+    private final LatencyRecorder paintAllocations = new LatencyRecorder(256);
+    private final LatencyRecorder repaintArea = new LatencyRecorder(256);
+    private final LatencyRecorder inputLatency = new LatencyRecorder(256);
+    private long lastPaint;
+
+    /** Sized for the largest ring the overlay reads, GameLoop's frame and tick times. */
+    private final long[] scratch = new long[1024];
+    private final String[] lines = new String[6];
+    private long lastRefresh;
+    private long overlayNanos;
+    private long overlayBytes;
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads;
+                }
+            }
+        } catch (LinkageError | SecurityException e) {
+            // not a HotSpot VM; allocation stays unreported
+        }
+        return null;
+    }
+
+    /** Bytes allocated so far by the calling thread, or -1 when the VM cannot tell. */
+    static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /** Bytes the game loop allocated since its previous frame (ticks plus snapshot). */
+    void recordLoopAllocation(long bytes) {
+        if (bytes >= 0) {
+            loopAllocations.record(bytes);
+        }
+    }
+
+    /** Called at the end of each paint with its allocation and clip size. */
+    void recordPaint(long allocatedBytes, long dirtyPixels) {
+        long now = System.nanoTime();
+        if (lastPaint != 0) {
+            frameIntervals.record(now - lastPaint);
+        }
+        lastPaint = now;
+        if (allocatedBytes >= 0) {
+            paintAllocations.record(allocatedBytes);
+        }
+        repaintArea.record(dirtyPixels);
+        overlayNanos = 0;
+        overlayBytes = 0;
+    }
+
+    /** Nanoseconds spent drawing the overlay since the last recordPaint, to leave out of the paint time. */
+    long overlayNanos() {
+        return overlayNanos;
+    }
+
+    /** Bytes allocated drawing the overlay since the last recordPaint, to leave out of the paint allocation. */
+    long overlayBytes() {
+        return overlayBytes;
+    }
+
+    /** Nanoseconds from a key press to the end of the paint that showed the move. */
+    void recordInputLatency(long nanos) {
+        inputLatency.record(nanos);
+    }
+
+    LatencyRecorder inputLatency() {
+        return inputLatency;
+    }
+
+    void drawOverlay(Graphics2D g, GameLoop loop, int panelPixels) {
+        long start = System.nanoTime();
+        long allocationMark = allocatedBytes();
+        if (lines[0] == null || start - lastRefresh >= REFRESH_NANOS) {
+            refresh(loop, panelPixels);
+            lastRefresh = start;
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(OVERLAY.x, OVERLAY.y, OVERLAY.width, OVERLAY.height);
+        g.setFont(FONT);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], OVERLAY.x + 6, OVERLAY.y + 14 + i * 13);
+        }
+        if (allocationMark >= 0) {
+            overlayBytes += allocatedBytes() - allocationMark;
+        }
+        overlayNanos += System.nanoTime() - start;
+    }
+
+    private void refresh(GameLoop loop, int panelPixels) {
+        int n = frameIntervals.sortInto(scratch);
+        long interval = LatencyRecorder.percentile(scratch, n, 50);
+        lines[0] = String.format("FPS %.1f", interval > 0 ? 1e9 / interval : 0.0);
+        n = loop.frameTimes().sortInto(scratch);
+        lines[1] = String.format("paint p50 %.3f ms  p99 %.3f ms",
+                LatencyRecorder.percentile(scratch, n, 50) / 1e6, LatencyRecorder.percentile(scratch, n, 99) / 1e6);
+        n = loop.tickTimes().sortInto(scratch);
+        lines[2] = String.format("tick  p50 %.3f ms  p99 %.3f ms",
+                LatencyRecorder.percentile(scratch, n, 50) / 1e6, LatencyRecorder.percentile(scratch, n, 99) / 1e6);
+        lines[3] = "alloc/frame loop " + kilobytes(loopAllocations) + "  paint " + kilobytes(paintAllocations);
+        n = repaintArea.sortInto(scratch);
+        lines[4] = String.format("repaint area p50 %.1f%%  p99 %.1f%%",
+                100.0 * LatencyRecorder.percentile(scratch, n, 50) / panelPixels,
+                100.0 * LatencyRecorder.percentile(scratch, n, 99) / panelPixels);
+        n = inputLatency.sortInto(scratch);
+        lines[5] = String.format("input→screen p50 %.1f ms  p99 %.1f ms",
+                LatencyRecorder.percentile(scratch, n, 50) / 1e6, LatencyRecorder.percentile(scratch, n, 99) / 1e6);
+    }
+
+    private String kilobytes(LatencyRecorder recorder) {
+        int n = recorder.sortInto(scratch);
+        return n == 0 ? "n/a" : String.format("%.1f KB", LatencyRecorder.percentile(scratch, n, 50) / 1024.0);
+    }
+}
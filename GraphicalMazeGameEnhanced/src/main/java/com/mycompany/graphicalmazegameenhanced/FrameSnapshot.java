@@ -0,0 +1,195 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+/**
+ * Immutable view of everything the renderer needs for one frame.
+ *
+ * Built on the game loop thread and handed to the EDT, so painting never reads
+ * live simulation state. Layers are stored row-major: terrain holds MazeGrid tile
+ * codes, sprite says who stands on a cell (NONE, PLAYER or MONSTER) and facing
+ * holds that sprite's direction. The layers cover only the visible window of the
+ * maze, whose top-left tile is (originX, originY); the player position is absolute.
+ * Window cell (0, 0) is drawn at pixel (left, top) of the panel, cellSize pixels
+ * per cell, so a scrolling camera can place the window with sub-cell precision.
+ * With fog of war, sight says whether each cell is UNSEEN, REMEMBERED or VISIBLE,
+ * and entities outside the player's sight are left out of the sprite layer.
+ * For animation, pose holds each sprite's walk-cycle frame and slide how far it
+ * still trails its cell (see SpriteMotion); sparks lists the visible particles.
+ */
+final class FrameSnapshot {
+
+    static final byte NONE = 0;
+    static final byte PLAYER = 1;
+    static final byte MONSTER = 2;
+
+    static final byte UNSEEN = 0;
+    static final byte REMEMBERED = 1;
+    static final byte VISIBLE = 2;
+
+    final int level;
+    final int theme;
+    final int rows;
+    final int cols;
+    final int originX;
+    final int originY;
+    final int cellSize;
+    final int left;
+    final int top;
+    final byte[] terrain;
+    final byte[] sprite;
+    final byte[] facing;
+    /** Null when fog of war is off. */
+    final byte[] sight;
+    /** Null when sprites are not animated. */
+    final byte[] pose;
+    /** Null when sprites are not animated. */
+    final byte[] slide;
+    /** (row, col, step) per spark in window cells, or null. */
+    final float[] sparks;
+    final int playerX;
+    final int playerY;
+    final boolean hasObjectiveItem;
+    final float glowAlpha;
+
+    FrameSnapshot(int level, int theme, int rows, int cols, int originX, int originY, int cellSize, int left, int top,
+                  byte[] terrain, byte[] sprite, byte[] facing, byte[] sight, byte[] pose, byte[] slide, float[] sparks,
+                  int playerX, int playerY, boolean hasObjectiveItem, float glowAlpha) {
+        this.level = level;
+        this.theme = theme;
+        this.rows = rows;
+        this.cols = cols;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.left = left;
+        this.top = top;
+        this.terrain = terrain;
+        this.sprite = sprite;
+        this.facing = facing;
+        this.sight = sight;
+        this.pose = pose;
+        this.slide = slide;
+        this.sparks = sparks;
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.hasObjectiveItem = hasObjectiveItem;
+        this.glowAlpha = glowAlpha;
+    }
+
+    /**
+     * Snapshot of a viewRows x viewCols window centred on the player and clamped to
+     * the maze edges, at the atlas design size; a maze smaller than the window is shown whole.
+     */
+    static FrameSnapshot capture(MazeSimulation simulation, int viewRows, int viewCols, float glowAlpha) {
+        MazeGrid grid = simulation.grid();
+        int rows = Math.min(viewRows, grid.rows());
+        int cols = Math.min(viewCols, grid.cols());
+        int originX = Math.max(0, Math.min(simulation.playerX() - rows / 2, grid.rows() - rows));
+        int originY = Math.max(0, Math.min(simulation.playerY() - cols / 2, grid.cols() - cols));
+        return capture(simulation.level(), simulation.theme(), simulation.grid(), simulation.entities(),
+                simulation.fieldOfView(), simulation.playerX(), simulation.playerY(), simulation.hasObjectiveItem(),
+                originX, originY, rows, cols, TileAtlas.SIZE, 0, 0, null, null, glowAlpha);
+    }
+
+    /** Animated snapshot of the window the camera last framed; glowing objectives emit into particles. */
+    static FrameSnapshot capture(MazeSimulation simulation, Camera camera, SpriteMotion motion, Particles particles,
+                                 float glowAlpha) {
+        return capture(simulation.level(), simulation.theme(), simulation.grid(), simulation.entities(),
+                simulation.fieldOfView(), simulation.playerX(), simulation.playerY(), simulation.hasObjectiveItem(),
+                camera.originX(), camera.originY(), camera.rows(), camera.cols(), camera.cellSize(), camera.left(),
+                camera.top(), motion, particles, glowAlpha);
+    }
+
+    /** Snapshot of a co-op client's copy of the server's game, seen from its own player. */
+    static FrameSnapshot capture(CoopClient client, Camera camera, SpriteMotion motion, Particles particles,
+                                 float glowAlpha) {
+        return capture(client.level(), client.theme(), client.grid(), client.entities(), null,
+                client.playerX(), client.playerY(), client.hasObjectiveItem(), camera.originX(), camera.originY(),
+                camera.rows(), camera.cols(), camera.cellSize(), camera.left(), camera.top(), motion, particles, glowAlpha);
+    }
+
+    /** Motion and particles may be null for a still frame. */
+    private static FrameSnapshot capture(int level, int theme, MazeGrid grid, EntityTable entities, FieldOfView fieldOfView,
+                                         int playerX, int playerY, boolean hasObjectiveItem, int originX, int originY,
+                                         int rows, int cols, int cellSize, int left, int top, SpriteMotion motion,
+                                         Particles particles, float glowAlpha) {
+        byte[] terrain = new byte[rows * cols];
+        byte[] sprite = new byte[rows * cols];
+        byte[] facing = new byte[rows * cols];
+        grid.copyTerrain(originX, originY, rows, cols, terrain);
+        byte[] sight = fieldOfView == null ? null : new byte[rows * cols];
+        byte[] pose = motion == null ? null : new byte[rows * cols];
+        byte[] slide = motion == null ? null : new byte[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (sight != null) {
+                    sight[i * cols + j] = fieldOfView.isVisible(originX + i, originY + j) ? VISIBLE
+                            : fieldOfView.isExplored(originX + i, originY + j) ? REMEMBERED : UNSEEN;
+                    if (sight[i * cols + j] != VISIBLE) {
+                        continue;
+                    }
+                }
+                if (particles != null && MazeGrid.isObjective(terrain[i * cols + j]) && !hasObjectiveItem
+                        && MazeSimulation.isNear(playerX, playerY, originX + i, originY + j)) {
+                    particles.emit(originX + i, originY + j);
+                }
+                int e = entities.at(originX + i, originY + j);
+                if (e >= 0) {
+                    sprite[i * cols + j] = entities.sprite(e);
+                    facing[i * cols + j] = (byte) entities.facing(e);
+                    if (motion != null) {
+                        pose[i * cols + j] = (byte) motion.pose(e);
+                        slide[i * cols + j] = (byte) motion.slide(e);
+                    }
+                }
+            }
+        }
+        // Markers (the player) are few, so they are placed from their own positions after the per-cell pass.
+        for (int k = 0; k < entities.memberCount(EntityTable.MARKER); k++) {
+            int e = entities.member(EntityTable.MARKER, k);
+            int i = entities.x(e) - originX;
+            int j = entities.y(e) - originY;
+            if (i >= 0 && i < rows && j >= 0 && j < cols && (sight == null || sight[i * cols + j] == VISIBLE)) {
+                sprite[i * cols + j] = entities.sprite(e);
+                facing[i * cols + j] = (byte) entities.facing(e);
+                if (motion != null) {
+                    pose[i * cols + j] = (byte) motion.pose(e);
+                    slide[i * cols + j] = (byte) motion.slide(e);
+                }
+            }
+        }
+        float[] sparks = particles == null ? null : particles.window(originX, originY, rows, cols);
+        return new FrameSnapshot(level, theme, rows, cols, originX, originY, cellSize, left, top,
+                terrain, sprite, facing, sight, pose, slide, sparks, playerX, playerY, hasObjectiveItem, glowAlpha);
+    }
+
+    byte terrain(int row, int col) {
+        return terrain[row * cols + col];
+    }
+
+    byte sprite(int row, int col) {
+        return sprite[row * cols + col];
+    }
+
+    int facing(int row, int col) {
+        return facing[row * cols + col];
+    }
+
+    int pose(int row, int col) {
+        return pose == null ? 0 : pose[row * cols + col];
+    }
+
+    /** How far the sprite on the cell trails it, in 1/SpriteMotion.SLIDE_STEPS of a cell. */
+    int slide(int row, int col) {
+        return slide == null ? 0 : slide[row * cols + col];
+    }
+
+    /** VISIBLE for every cell when fog of war is off. */
+    byte sight(int row, int col) {
+        return sight == null ? VISIBLE : sight[row * cols + col];
+    }
+
+    /** True when the objective on window cell (row, col) is close enough to the player to glow. */
+    boolean isGlowing(int row, int col) {
+        return !hasObjectiveItem && MazeSimulation.isNear(playerX, playerY, originX + row, originY + col);
+    }
+}
@@ -0,0 +1,133 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Fixed-timestep simulation loop running on its own thread.
+ *
+ * Logic advances in whole ticks at a constant rate no matter how long painting takes.
+ * After catching up, the loop asks the renderer to publish a frame (capped at
+ * maxFps) and passes the fraction of a tick elapsed since the last one, so
+ * animation can be interpolated between ticks.
+ *
+ * A tick or frame that throws is reported and skipped, and the loop keeps going;
+ * a failure that repeats on every pass is reported once, until a pass succeeds.
+ */
+final class GameLoop implements Runnable {
+
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final int ticksPerSecond;
+    private final long tickNanos;
+    private final long frameNanos;
+    private final Runnable tick;
+    private final DoubleConsumer render;
+    private final Consumer<RuntimeException> onError;
+    private final LatencyRecorder tickTimes = new LatencyRecorder(1024);
+    private final LatencyRecorder frameTimes = new LatencyRecorder(1024);
+    private volatile boolean running;
+    private Thread thread;
+    // Whether the last tick / frame threw, so a failure that repeats is reported once.
+    private boolean tickFailing;
+    private boolean renderFailing;
+
+    /**
+     * @param ticksPerSecond simulation rate
+     * @param maxFps render cap, or 0 to publish a frame after every pass of the loop
+     * @param tick advances the simulation by one tick
+     * @param render publishes a frame; receives the interpolation factor in [0, 1)
+     * @param onError told about a tick or frame that threw; called on the loop thread
+     */
+    GameLoop(int ticksPerSecond, int maxFps, Runnable tick, DoubleConsumer render, Consumer<RuntimeException> onError) {
+        this.ticksPerSecond = ticksPerSecond;
+        this.tickNanos = 1_000_000_000L / ticksPerSecond;
+        this.frameNanos = maxFps > 0 ? 1_000_000_000L / maxFps : 0;
+        this.tick = tick;
+        this.render = render;
+        this.onError = onError;
+    }
+
+    int ticksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    /** Time spent inside each simulation tick. */
+    LatencyRecorder tickTimes() {
+        return tickTimes;
+    }
+
+    /** Time spent painting each frame; recorded by the renderer. */
+    LatencyRecorder frameTimes() {
+        return frameTimes;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "maze-game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops the loop after the current tick; safe to call from the loop thread itself. */
+    void stop() {
+        running = false;
+        if (thread != null && Thread.currentThread() != thread) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+            // Drop time we cannot catch up on instead of spiralling after a long stall.
+            accumulator = Math.min(accumulator, MAX_CATCH_UP_TICKS * tickNanos);
+
+            while (running && accumulator >= tickNanos) {
+                long start = System.nanoTime();
+                try {
+                    tick.run();
+                    tickFailing = false;
+                } catch (RuntimeException ex) {
+                    if (!tickFailing) {
+                        tickFailing = true;
+                        onError.accept(ex);
+                    }
+                }
+                tickTimes.record(System.nanoTime() - start);
+                accumulator -= tickNanos;
+            }
+            if (!running) {
+                break;
+            }
+
+            now = System.nanoTime();
+            if (now - nextFrame >= 0) {
+                try {
+                    render.accept((double) accumulator / tickNanos);
+                    renderFailing = false;
+                } catch (RuntimeException ex) {
+                    if (!renderFailing) {
+                        renderFailing = true;
+                        onError.accept(ex);
+                    }
+                }
+                nextFrame = now + frameNanos;
+            }
+
+            long untilTick = tickNanos - accumulator - (System.nanoTime() - previous);
+            long untilFrame = nextFrame - System.nanoTime();
+            long wait = Math.min(untilTick, frameNanos > 0 ? untilFrame : untilTick);
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+}
@@ -3,9 +3,15 @@ package com.mycompany.graphicalmazegameenhanced;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
-import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 /**
  * Graphical Maze Game: The Cursed Labyrinth (Enhanced Graphics & Level 2 Exit)
@@ -16,361 +22,455 @@ import java.util.ArrayList;
  * - Graphics: Subtle ground patterns (grass/roots/stars), 3D brick walls, textured vines, glowing stones, detailed sprites (belt, staff, eyes), enhanced glow (8 particles, outer ring), distinct exit door (golden frame).
  * - Storyline: Same as before, with updated story log for Level 2 exit.
  * - Controls: WASD/Arrows, SPACE to interact, H for help, V to save, L to load.
+ * - Rendering: per-level pre-rendered tile atlas (TileAtlas); repaints cover only dirty cells and glow halos.
+ * - Game loop: fixed-timestep simulation thread (GameLoop) publishing immutable FrameSnapshots to the EDT.
+ *   Tick rate and render cap are set with -Dmaze.tickRate (default 60) and -Dmaze.maxFps (default 60).
+ * - Simulation: all game rules live in the headless MazeSimulation; this frame only feeds it input and draws it.
+ * - Saves: versioned binary maze_save.dat (header, CRC32, packed grid, atomic rename); maze_save.txt from older versions still loads.
+ *   Saving runs on a background thread; keys 1-9 pick one of -Dmaze.saveSlots slots (default 3), 0 picks the autosave,
+ *   written every -Dmaze.autosaveSeconds (default 60, 0 disables).
+ * - Profiling: P toggles an overlay (FPS, paint/tick percentiles, allocation per frame, repaint area); JFR gets
+ *   MazeTick, MazePaint and SaveLoad events (category "Maze"), e.g. with -XX:StartFlightRecording.
+ * - Story log: bounded ring buffer (-Dmaze.logLines, default 500) shown in a JList; appends are batched per EDT pass.
+ * - Replays: the simulation has its own seeded random; -Dmaze.record=file journals the seed and tick-stamped inputs
+ *   (InputJournal), -Dmaze.replay=file plays one back in real time, ReplayRunner fast-forwards it headlessly.
+ * - Procedural levels: -Dmaze.seed=N generates seeded mazes (MazeGenerator) of -Dmaze.cells cells per side
+ *   (default 15) with -Dmaze.algorithm=backtracker|prim|wilson. A level is generated whole and kept in memory;
+ *   ChunkedMaze streams chunks for the generator benchmarks only.
+ * - Level packs: layouts, spawns and story text are data (levels.txt); LevelPackTool compiles them into
+ *   memory-mapped pack files with a table of contents, played with -Dmaze.levels=file.
+ * - Fog of war: -Dmaze.fog=true or F; shadowcast sight (-Dmaze.sightRadius, default 5) with explored-cell memory,
+ *   recomputed only when the player moves or walls change. Unseen cells are not painted.
+ * - Camera: the resizable view eases after the player over mazes of any size (Camera), zooms with +/- and
+ *   only copies and paints the tiles on screen; M toggles a minimap (MiniMap) for mazes larger than the view.
+ *   Tiles are drawn from an atlas rasterized once per zoom at the screen's device scale.
+ * - Entities: the player, sages and monsters are rows of one structure-of-arrays EntityTable whose per-kind flags
+ *   decide who thinks, blocks, kills or talks; AI, collision, dialogue and snapshots walk packed member lists.
+ *   Every sage tile of a level is a sage.
+ * - Co-op: CoopServer hosts named sessions for several players on virtual threads and streams delta-compressed
+ *   state (CoopProtocol); -Dmaze.server=host:port and -Dmaze.session=name join one, with the own player's moves
+ *   predicted and reconciled. CoopLoadTest drives hundreds of bot sessions over loopback.
+ * - Animation: sprites glide between cells in a four-frame walk cycle (SpriteMotion) and glowing objectives
+ *   shed pooled sparks (Particles); every pose, halo brightness and spark fade is a cached atlas image.
+ * - Input: the EDT hands key presses and releases to the game loop through a lock-free ring (InputRing);
+ *   MovementInput moves a held direction at -Dmaze.moveRate steps per second whatever the OS key repeat does,
+ *   buffers quick taps and ignores repeats. The profiler and help show key-to-screen latency.
+ * - Validation: LevelValidator checks that every level of a pack can be won, prints its shortest solution
+ *   and a danger estimate from monster spawns and modes, fails levels where a pursuer hunts the player from
+ *   the first move, and batch-checks thousands of generated levels per second.
+ *   It found that the last built-in level had no exit; the exit now sits beside the Spire.
+ * - Renderers: -Dmaze.renderer=canvas draws every frame from the game loop into a page-flipped BufferStrategy
+ *   (active rendering), falling back to the Swing panel when no accelerated buffers are available;
+ *   -Dmaze.opengl=true asks for the OpenGL pipeline. -Dmaze.quality=fast|balanced|high picks how much is
+ *   antialiased per frame (balanced: sprites only; tiles are antialiased once in the atlas).
+ * - Startup: the window shows before the first level loads (on the first tick), tile atlases are rasterized on a
+ *   background thread (Assets) behind placeholder colours, and the next level is decoded and its tiles prefetched
+ *   while the current one is played. Time to window, level and first frame goes to the story log after startup,
+ *   and to standard output with -Dmaze.startupReport=true; -Dmaze.exitAfterFirstFrame=true prints it and quits. mvn -Pstartup package trains a class-data archive
+ *   (target/maze.jsa) for java -XX:SharedArchiveFile=target/maze.jsa -jar target/GraphicalMazeGameEnhanced-1.0-SNAPSHOT.jar.
+ * - Hazards: springs ('~') flood the floor around them in tides, cracked floors ('x') collapse into pits a moment
+ *   after a player steps on them, traps ('^') stun, glowstones ('*') light the paths around them under fog of war.
+ *   TerrainHazards times them with a timer wheel that only touches cells with something due, so a tick costs the
+ *   same in a huge maze (HazardBenchmark); -Dmaze.hazards=N scatters N hazards per 100 cells in generated mazes.
+ * - Benchmarks: painting lives in MazeRenderer so it can run offscreen; the JMH module in benchmarks/ times
+ *   paints per theme, monster moves, cell queries and save/load round-trips (see benchmarks/pom.xml).
  */
-public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener {
+public class GraphicalMazeGameEnhanced extends JFrame {
 
     private static final int CELL_SIZE = 50;
-    private static final int ROWS = 10;
-    private static final int COLS = 10;
+    private static final int ROWS = MazeSimulation.ROWS;
+    private static final int COLS = MazeSimulation.COLS;
     private static final int MONSTER_MOVE_DELAY = 300;
+    private static final int MOVE_RATE = Math.max(1, Integer.getInteger("maze.moveRate", 8));
     private static final int GLOW_ANIMATION_SPEED = 80;
-
-    private int currentLevel = 1;
-    private final int MAX_LEVEL = 3;
-
-    private char[][] level1Maze = {
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-        {'#', 'P', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '.', '.', 'M', '#', '#', '.', '#'},
-        {'#', '.', '#', '#', '#', '.', '#', '.', '.', '#'},
-        {'#', '.', 'A', 'G', '#', '.', '#', '.', '#', '#'},
-        {'#', '#', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
-        {'#', '.', '.', '.', '.', '.', '#', '.', '.', '#'},
-        {'#', '#', '#', '#', '#', '.', '#', 'M', 'E', '#'},
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
-    };
-
-    private char[][] level2Maze = {
-        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'},
-        {'W', 'P', 'T', '.', 'W', '.', 'T', '.', '.', 'W'},
-        {'W', '.', 'W', '.', '.', 'M', 'W', 'W', 'T', 'W'},
-        {'W', 'T', 'W', 'W', 'W', '.', 'W', '.', '.', 'W'},
-        {'W', '.', '.', 'G', 'W', 'T', 'W', '.', 'W', 'W'},
-        {'W', 'W', '.', '.', 'W', '.', '.', 'T', '.', 'W'},
-        {'W', '.', 'W', 'W', 'W', 'W', 'W', '.', 'W', 'W'},
-        {'W', '.', 'T', '.', '.', '.', 'W', 'M', '.', 'W'},
-        {'W', 'W', 'W', 'W', 'W', '.', 'W', 'E', 'S', 'W'},
-        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'}
-    };
-
-    private char[][] level3Maze = {
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-        {'#', 'P', '.', 'T', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '.', '.', 'M', '#', 'T', '.', '#'},
-        {'#', 'T', '#', '#', '#', '.', '#', '.', '.', '#'},
-        {'#', '.', '.', 'G', '#', 'T', '#', '.', '#', '#'},
-        {'#', '#', '.', '.', '#', '.', '.', 'T', '.', '#'},
-        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
-        {'#', '.', 'T', '.', '.', '.', '#', 'M', '.', '#'},
-        {'#', '#', '#', '#', '#', '.', '#', 'M', 'C', '#'},
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
-    };
-
-    private char[][] maze;
-
-    private int playerX = 1;
-    private int playerY = 1;
-    private int playerFacing = 2;
-    private ArrayList<int[]> monsters = new ArrayList<>();
-    private int[] sagePos = {4, 3};
-    private boolean hasObjectiveItem = false;
-    private int sageInteractionStage = 0;
-    private String currentObjective = "Find the Sage for guidance on the curse.";
-    private Random random = new Random();
-    private Timer monsterTimer;
-    private Timer glowTimer;
+    private static final int TICK_RATE = Integer.getInteger("maze.tickRate", 60);
+    private static final int MAX_FPS = Integer.getInteger("maze.maxFps", 60);
+    private static final int STORY_LOG_LINES = Integer.getInteger("maze.logLines", 500);
+    private static final int STORY_WRAP_COLUMNS = 68;
+    private static final Path LEGACY_SAVE_FILE = Paths.get("maze_save.txt");
+    private static final Path AUTOSAVE_FILE = Paths.get("maze_autosave.dat");
+    private static final int SAVE_SLOTS = Math.max(1, Math.min(9, Integer.getInteger("maze.saveSlots", 3)));
+    private static final int AUTOSAVE_SECONDS = Integer.getInteger("maze.autosaveSeconds", 60);
+    private static final Long MAZE_SEED = Long.getLong("maze.seed");
+    private static final int MAZE_CELLS = Integer.getInteger("maze.cells", 15);
+    private static final int MAZE_HAZARDS = Integer.getInteger("maze.hazards", 0);
+    private static final String MAZE_ALGORITHM = System.getProperty("maze.algorithm", "backtracker");
+    private static final String LEVEL_PACK = System.getProperty("maze.levels");
+    private static final int SIGHT_RADIUS = Math.max(1, Integer.getInteger("maze.sightRadius", 5));
+    private static final String RECORD_FILE = System.getProperty("maze.record");
+    private static final String REPLAY_FILE = System.getProperty("maze.replay");
+    private static final String COOP_SERVER = System.getProperty("maze.server");
+    private static final String COOP_SESSION = System.getProperty("maze.session", "default");
+    private static final String RENDERER = System.getProperty("maze.renderer", "panel");
+    private static final boolean EXIT_AFTER_FIRST_FRAME = Boolean.getBoolean("maze.exitAfterFirstFrame");
+    private static final boolean STARTUP_REPORT = Boolean.getBoolean("maze.startupReport") || EXIT_AFTER_FIRST_FRAME;
+    private static final MazeRenderer.Quality QUALITY =
+            MazeRenderer.Quality.valueOf(System.getProperty("maze.quality", "balanced").toUpperCase());
+
+    // Created by the first tick, so the window can show before any level is loaded.
+    private MazeSimulation simulation;
+    private final StartupTimer startup = new StartupTimer();
+    private int prefetchedLevel;
+    private final Camera camera = new Camera(CELL_SIZE);
+    private final MiniMap miniMap = new MiniMap();
+    private final SpriteMotion motion = new SpriteMotion();
+    private final Particles particles = new Particles();
+    private volatile boolean showMiniMap = true;
+    private long lastFrameNanos;
+    private InputJournal.Recorder recorder;
+    private InputJournal.Replay replay;
+    private CoopClient client;
+    private GameLoop gameLoop;
+    private final SaveService saveService = new SaveService((path, message) -> appendToStoryLog(message + "\n"));
+    private int saveSlot = 1;
+    private final InputRing keyEvents = new InputRing(256);
+    private final MovementInput movement = new MovementInput(keyEvents, Math.round(TICK_RATE / (float) MOVE_RATE), this::handleCommand);
+    private long inputTicks;
+    private final float glowStep = 0.07f * 1000f / (GLOW_ANIMATION_SPEED * TICK_RATE);
+    private boolean gameOver = false;
     private float glowAlpha = 0.5f;
+    private float previousGlowAlpha = 0.5f;
     private boolean glowIncreasing = true;
-    private GamePanel gamePanel;
-    private JTextArea storyLog;
+    private MazeView view;
+    private final FrameProfiler profiler = new FrameProfiler();
+    private volatile boolean showProfiler;
+    private long loopAllocationMark = -1;
+    private StoryLog storyLog;
 
     public GraphicalMazeGameEnhanced() {
         setTitle("The Cursed Labyrinth - Enhanced");
         setLayout(new BorderLayout());
 
-        gamePanel = new GamePanel();
-        add(gamePanel, BorderLayout.CENTER);
-
-        storyLog = new JTextArea();
-        storyLog.setEditable(false);
-        storyLog.setWrapStyleWord(true);
-        storyLog.setLineWrap(true);
-        storyLog.setFont(new Font("Serif", Font.PLAIN, 14));
-        JScrollPane scrollPane = new JScrollPane(storyLog);
+        CanvasView canvas = RENDERER.equals("canvas") && !GraphicsEnvironment.isHeadless() ? new CanvasView() : null;
+        view = canvas != null ? canvas : new GamePanel();
+        add((Component) view, BorderLayout.CENTER);
+
+        JList<String> storyView = new JList<>();
+        storyLog = new StoryLog(STORY_LOG_LINES, STORY_WRAP_COLUMNS,
+                () -> storyView.ensureIndexIsVisible(storyLog.getSize() - 1));
+        storyView.setModel(storyLog);
+        storyView.setFont(new Font("Serif", Font.PLAIN, 14));
+        // A fixed row height lets the list lay out and paint only the visible rows.
+        storyView.setFixedCellHeight(storyView.getFontMetrics(storyView.getFont()).getHeight());
+        storyView.setFocusable(false);
+        JScrollPane scrollPane = new JScrollPane(storyView);
         scrollPane.setPreferredSize(new Dimension(COLS * CELL_SIZE, 150));
         add(scrollPane, BorderLayout.SOUTH);
 
-        setSize(COLS * CELL_SIZE + 16, (ROWS * CELL_SIZE + 150) + 39);
+        pack();
+        if (canvas != null) {
+            String failure = canvas.start();
+            if (failure != null) {
+                remove(canvas);
+                view = new GamePanel();
+                add((Component) view, BorderLayout.CENTER);
+                pack();
+                appendToStoryLog("Active rendering unavailable (" + failure + "), using the Swing panel.\n");
+            } else {
+                appendToStoryLog("Renderer: " + canvas.describe() + ".\n");
+            }
+        }
         setDefaultCloseOperation(EXIT_ON_CLOSE);
-        setResizable(false);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // Runs before EXIT_ON_CLOSE exits, so a save queued just before closing still lands.
+                saveService.flush(2000);
+            }
+        });
 
         addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                handleKeyPress(e);
+                keyEvents.offer(e.getKeyCode(), true, System.nanoTime());
             }
-        });
-        setFocusable(true);
-
-        loadLevel(1);
 
-        monsterTimer = new Timer(MONSTER_MOVE_DELAY, this);
-        monsterTimer.start();
-        glowTimer = new Timer(GLOW_ANIMATION_SPEED, e -> {
-            if (glowIncreasing) {
-                glowAlpha += 0.07f;
-                if (glowAlpha >= 0.9f) glowIncreasing = false;
-            } else {
-                glowAlpha -= 0.07f;
-                if (glowAlpha <= 0.3f) glowIncreasing = true;
+            @Override
+            public void keyReleased(KeyEvent e) {
+                keyEvents.offer(e.getKeyCode(), false, System.nanoTime());
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                keyEvents.offer(InputRing.RELEASE_ALL, false, System.nanoTime());
             }
-            gamePanel.repaint();
         });
-        glowTimer.start();
+        setFocusable(true);
 
+        gameLoop = new GameLoop(TICK_RATE, MAX_FPS, this::tick, this::publishFrame,
+                ex -> appendToStoryLog("Game loop error: " + ex + "\n"));
         setVisible(true);
+        gameLoop.start();
     }
 
-    private void loadLevel(int level) {
-        try {
-            currentLevel = level;
-            hasObjectiveItem = false;
-            sageInteractionStage = 0;
-            monsters.clear();
-
-            maze = new char[ROWS][COLS];
-            char[][] sourceMaze = level == 1 ? level1Maze : level == 2 ? level2Maze : level3Maze;
-            for (int i = 0; i < ROWS; i++) {
-                maze[i] = sourceMaze[i].clone();
-            }
-
-            if (level == 1) {
-                monsters.add(new int[]{2, 5, 2});
-                monsters.add(new int[]{8, 7, 2});
-                sagePos = new int[]{4, 3};
-                currentObjective = "Find the Sage for guidance on the curse.";
-                appendToStoryLog("Level 1: The Cursed Labyrinth\nJournal Entry: I am Elara, seeking the Crystal of Eternity in the Cursed Labyrinth, where cursed guardians roam. A Sage may guide me.\n");
-                appendToStoryLog("Controls: WASD/Arrows to move, SPACE to interact, H for help, V to save, L to load.\n");
-                appendToStoryLog("Current Objective: " + currentObjective + "\n");
-                addRandomDecorations(5);
-            } else if (level == 2) {
-                monsters.add(new int[]{2, 5, 2});
-                monsters.add(new int[]{7, 7, 2});
-                monsters.add(new int[]{5, 3, 1});
-                sagePos = new int[]{4, 3};
-                currentObjective = "Find the Ancient Altar ('S') to seal the curse.";
-                appendToStoryLog("Level 2: The Enchanted Forest\nThe Crystal reveals the curse's source: an Ancient Altar in the Enchanted Forest. Seal it and find the exit door to proceed, but beware agile forest spirits and treacherous waters.\n");
-                appendToStoryLog("Current Objective: " + currentObjective + "\n");
-                addRandomDecorations(10);
-            } else if (level == 3) {
-                monsters.add(new int[]{2, 5, 2});
-                monsters.add(new int[]{7, 7, 2});
-                monsters.add(new int[]{5, 3, 1});
-                monsters.add(new int[]{3, 8, 3});
-                sagePos = new int[]{4, 3};
-                currentObjective = "Place the Crystal at the Celestial Spire ('C').";
-                appendToStoryLog("Level 3: The Celestial Ruins\nThe Crystal unveils the curse's true origin: a corrupted Celestial Spire in ancient ruins. Place the Crystal there to end the curse and restore cosmic balance, but beware the swift Celestial Wraiths.\n");
-                appendToStoryLog("Current Objective: " + currentObjective + "\n");
-                addRandomDecorations(8);
-            }
-
-            playerX = 1;
-            playerY = 1;
-            playerFacing = 2;
-            gamePanel.repaint();
-        } catch (Exception e) {
-            appendToStoryLog("Error loading level: " + e.getMessage() + "\n");
+    /**
+     * Opens the session and loads the first level. Runs as the first tick, on the
+     * game loop thread, while the EDT is already showing the empty window.
+     */
+    private void startSession() {
+        simulation = openSession().newSimulation();
+        simulation.setListener(this::appendToStoryLog);
+        simulation.loadLevel(1);
+        if (Boolean.getBoolean("maze.fog")) {
+            simulation.setSightRadius(SIGHT_RADIUS);
         }
+        if (COOP_SERVER != null) {
+            joinCoop();
+        }
+        startup.mark(StartupTimer.Milestone.LEVEL);
     }
 
-    private void addRandomDecorations(int count) {
-        try {
-            for (int i = 0; i < count; i++) {
-                int rx = random.nextInt(ROWS);
-                int ry = random.nextInt(COLS);
-                if (maze[rx][ry] == '.' && !(rx == 4 && ry == 2) && !(rx == 8 && ry == 8) && !(rx == 8 && ry == 7)) {
-                    maze[rx][ry] = 'T';
+    /** Notes a painted frame; the first one with real tiles completes startup. */
+    private void framePainted(boolean placeholder) {
+        startup.mark(StartupTimer.Milestone.FIRST_FRAME);
+        if (!placeholder && startup.mark(StartupTimer.Milestone.TILES)) {
+            Assets.load(() -> {
+                String report = startup.report();
+                if (STARTUP_REPORT) {
+                    System.out.println(report);
                 }
-            }
-        } catch (Exception e) {
-            appendToStoryLog("Error adding decorations: " + e.getMessage() + "\n");
+                appendToStoryLog(report + "\n");
+                if (EXIT_AFTER_FIRST_FRAME) {
+                    System.exit(0);
+                }
+            });
         }
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (e.getSource() == monsterTimer) {
-            moveMonsters();
-            checkStoryTriggers();
-            if (isPlayerOnMonster()) {
-                loseGame();
-            }
-            gamePanel.repaint();
+    /** Decodes the level after this one and rasterizes its tiles in the background. */
+    private void prefetchNextLevel(int level) {
+        LevelPack levels = simulation.levels();
+        if (client != null || level >= levels.size()) {
+            return;
         }
+        Assets.load(() -> view.prefetch(levels.level(level + 1).theme));
     }
 
-    private void handleKeyPress(KeyEvent e) {
-        int key = e.getKeyCode();
-        int newX = playerX;
-        int newY = playerY;
-        int newFacing = playerFacing;
-
-        switch (key) {
-            case KeyEvent.VK_W: case KeyEvent.VK_UP: newX--; newFacing = 0; break;
-            case KeyEvent.VK_A: case KeyEvent.VK_LEFT: newY--; newFacing = 3; break;
-            case KeyEvent.VK_S: case KeyEvent.VK_DOWN: newX++; newFacing = 2; break;
-            case KeyEvent.VK_D: case KeyEvent.VK_RIGHT: newY++; newFacing = 1; break;
-            case KeyEvent.VK_SPACE: interactWithSage(); return;
-            case KeyEvent.VK_V: saveGame(); return;
-            case KeyEvent.VK_L: loadGame(); return;
-            case KeyEvent.VK_H: showHelp(); return;
-            default: return;
-        }
-
-        if (isValidMove(newX, newY)) {
-            char targetCell = maze[newX][newY];
-            if ((currentLevel == 1 && targetCell == 'A') || (currentLevel == 2 && targetCell == 'S') || (currentLevel == 3 && targetCell == 'C')) {
-                hasObjectiveItem = true;
-                maze[newX][newY] = '.';
-                String itemName = currentLevel == 1 ? "Crystal of Eternity" : currentLevel == 2 ? "Ancient Altar Seal" : "Celestial Spire Placement";
-                appendToStoryLog("You acquired the " + itemName + "! Power surges through you.\nNew Objective: Find the exit door.\n");
-                currentObjective = "Find the exit door.";
-            }
-
-            if (targetCell == 'E') {
-                if (hasObjectiveItem) {
-                    if (currentLevel < MAX_LEVEL) {
-                        loadLevel(currentLevel + 1);
-                    } else {
-                        winGame();
-                    }
-                    return;
-                } else {
-                    appendToStoryLog("The exit door is sealed without the required item. Find it first!\n");
-                    return;
-                }
+    /**
+     * Settings for this session: those of the replayed journal, or fresh ones (and a
+     * new journal when recording). Problems are reported and play goes on unrecorded.
+     */
+    private InputJournal.Header openSession() {
+        if (REPLAY_FILE != null) {
+            try {
+                replay = InputJournal.read(Paths.get(REPLAY_FILE));
+                appendToStoryLog("Replaying " + REPLAY_FILE + " (" + replay.finalTick() + " ticks).\n");
+                return replay.header;
+            } catch (IOException ex) {
+                appendToStoryLog("Error reading replay: " + ex.getMessage() + "\n");
             }
-
-            if (isMonsterAt(newX, newY)) {
-                loseGame();
-                return;
+        }
+        int ticksPerMonsterMove = Math.round(MONSTER_MOVE_DELAY * TICK_RATE / 1000f);
+        MazeGenerator.Algorithm algorithm = MAZE_SEED == null ? null : MazeGenerator.Algorithm.valueOf(MAZE_ALGORITHM.toUpperCase());
+        LevelPack levels = null;
+        if (LEVEL_PACK != null) {
+            try {
+                levels = LevelPack.open(Paths.get(LEVEL_PACK));
+                appendToStoryLog("Level pack " + LEVEL_PACK + " (" + levels.size() + " levels).\n");
+            } catch (IOException ex) {
+                appendToStoryLog("Error opening level pack, using the built-in levels: " + ex.getMessage() + "\n");
             }
-
-            char underlying = maze[playerX][playerY];
-            maze[playerX][playerY] = (underlying == 'P') ? '.' : underlying;
-            playerX = newX;
-            playerY = newY;
-            playerFacing = newFacing;
-            maze[playerX][playerY] = 'P';
-
-            if (isPlayerOnMonster()) {
-                loseGame();
+        }
+        InputJournal.Header header = new InputJournal.Header(new Random().nextLong(), ticksPerMonsterMove, algorithm,
+                MAZE_SEED == null ? 0 : MAZE_SEED, MAZE_CELLS, MAZE_CELLS, MAZE_HAZARDS, levels);
+        if (RECORD_FILE != null) {
+            try {
+                recorder = new InputJournal.Recorder(Paths.get(RECORD_FILE), header);
+                appendToStoryLog("Recording to " + RECORD_FILE + ".\n");
+            } catch (IOException ex) {
+                appendToStoryLog("Error starting recording: " + ex.getMessage() + "\n");
             }
-
-            gamePanel.repaint();
         }
+        return header;
     }
 
-    private boolean isValidMove(int x, int y) {
-        return x >= 0 && x < ROWS && y >= 0 && y < COLS && maze[x][y] != '#' && maze[x][y] != 'W' && maze[x][y] != 'G';
-    }
-
-    private void moveMonsters() {
+    /**
+     * Joins -Dmaze.session on -Dmaze.server (host:port); the local simulation is then
+     * only a fallback and the server's game is shown instead.
+     */
+    private void joinCoop() {
+        int colon = COOP_SERVER.lastIndexOf(':');
+        String host = colon < 0 ? COOP_SERVER : COOP_SERVER.substring(0, colon);
+        int port = colon < 0 ? 7777 : Integer.parseInt(COOP_SERVER.substring(colon + 1));
         try {
-            int[][] directions = {{-1, 0, 0}, {0, 1, 1}, {1, 0, 2}, {0, -1, 3}};
-            for (int[] monster : monsters) {
-                if (maze[monster[0]][monster[1]] == 'M') {
-                    maze[monster[0]][monster[1]] = '.';
-                }
+            client = CoopClient.connect(new InetSocketAddress(host, port), COOP_SESSION);
+            client.setListener(this::appendToStoryLog);
+            appendToStoryLog("Joined co-op session " + COOP_SESSION + " on " + COOP_SERVER + " as player " + (client.slot() + 1) + ".\n");
+        } catch (IOException | IllegalArgumentException ex) {
+            appendToStoryLog("Could not join co-op session, playing alone: " + ex.getMessage() + "\n");
+        }
+    }
 
-                int dirIdx = random.nextInt(directions.length);
-                int[] dir = directions[dirIdx];
-                int newX = monster[0] + dir[0];
-                int newY = monster[1] + dir[1];
-                int newFacing = dir[2];
+    /** One fixed step on the game loop thread, which owns the simulation. */
+    private void tick() {
+        if (simulation == null) {
+            startSession();
+        }
+        MazeTickEvent tickEvent = new MazeTickEvent();
+        tickEvent.begin();
+        MazeSimulation.Input input = movement.next(++inputTicks);
+        long pressNanos = movement.takePressNanos();
+        long positionBefore = playerPosition();
+        if (client != null) {
+            advanceGlow();
+            tickCoop(input);
+            markInputLatency(pressNanos, positionBefore);
+            return;
+        }
+        long nextTick = simulation.tickCount() + 1;
+        if (replay != null) {
+            input = replay.inputAt(nextTick);
+        } else if (recorder != null) {
+            try {
+                recorder.record(nextTick, input);
+            } catch (IOException ex) {
+                stopRecording("Error recording input: " + ex.getMessage());
+            }
+        }
 
-                if (isValidMove(newX, newY) && !isMonsterAt(newX, newY) && !isPlayerAt(newX, newY) && maze[newX][newY] != 'G') {
-                    monster[0] = newX;
-                    monster[1] = newY;
-                    monster[2] = newFacing;
-                }
+        advanceGlow();
 
-                if (maze[monster[0]][monster[1]] != 'A' && maze[monster[0]][monster[1]] != 'S' && maze[monster[0]][monster[1]] != 'C' && maze[monster[0]][monster[1]] != 'E') {
-                    maze[monster[0]][monster[1]] = 'M';
-                }
-            }
-        } catch (Exception e) {
-            appendToStoryLog("Error moving monsters: " + e.getMessage() + "\n");
+        MazeSimulation.Status status = simulation.step(input);
+        if (replay == null) {
+            markInputLatency(pressNanos, positionBefore);
+        }
+        if (tickEvent.shouldCommit()) {
+            tickEvent.tick = simulation.tickCount();
+            tickEvent.level = simulation.level();
+            tickEvent.input = input.name();
+            tickEvent.monsters = simulation.entities().count(EntityTable.MONSTER);
+            tickEvent.commit();
+        }
+        if (replay != null && status == MazeSimulation.Status.PLAYING && simulation.tickCount() >= replay.finalTick()) {
+            gameLoop.stop();
+            appendToStoryLog("Replay finished" + (!replay.isComplete() ? ".\n" : replay.finalHash() == simulation.stateHash()
+                    ? ": state matches the recording.\n" : ": STATE DIFFERS from the recording.\n"));
+        }
+        long autosaveTicks = (long) AUTOSAVE_SECONDS * TICK_RATE;
+        if (autosaveTicks > 0 && status == MazeSimulation.Status.PLAYING && simulation.tickCount() % autosaveTicks == 0) {
+            saveService.save(AUTOSAVE_FILE, simulation.snapshot());
+        }
+        if (status == MazeSimulation.Status.WON) {
+            endGame("Congratulations! You ended the curse and restored balance. Elara's saga continues...");
+        } else if (status == MazeSimulation.Status.LOST) {
+            endGame("Game Over: You have been cursed.");
         }
     }
 
-    private boolean isMonsterAt(int x, int y) {
-        for (int[] monster : monsters) {
-            if (monster[0] == x && monster[1] == y) {
-                return true;
-            }
+    /** The local player's cell packed into a long, or -1 before a co-op client has one. */
+    private long playerPosition() {
+        if (client != null) {
+            return client.isReady() ? (long) client.playerX() << 32 | client.playerY() : -1;
         }
-        return false;
+        return (long) simulation.playerX() << 32 | simulation.playerY();
     }
 
-    private boolean isPlayerOnMonster() {
-        return isMonsterAt(playerX, playerY);
+    /** Times a key press to the paint that shows it, if it moved the player; blocked moves show nothing. */
+    private void markInputLatency(long pressNanos, long positionBefore) {
+        if (pressNanos != 0 && playerPosition() != positionBefore) {
+            view.markInput(pressNanos);
+        }
     }
 
-    private boolean isPlayerAt(int x, int y) {
-        return x == playerX && y == playerY;
+    private void advanceGlow() {
+        previousGlowAlpha = glowAlpha;
+        if (glowIncreasing) {
+            glowAlpha += glowStep;
+            if (glowAlpha >= 0.9f) glowIncreasing = false;
+        } else {
+            glowAlpha -= glowStep;
+            if (glowAlpha <= 0.3f) glowIncreasing = true;
+        }
     }
 
-    private void interactWithSage() {
-        int dx = Math.abs(playerX - sagePos[0]);
-        int dy = Math.abs(playerY - sagePos[1]);
-        if (dx <= 1 && dy <= 1 && (dx + dy > 0)) {
-            String message = "";
-            switch (sageInteractionStage) {
-                case 0:
-                    if (currentLevel == 1) {
-                        message = "Sage: 'Greetings, Elara. I survived the curse. Kings sealed the Crystal here, cursing seekers. Avoid the guardians.'\nObjective: Seek the Crystal.";
-                        currentObjective = "Collect the Crystal of Eternity.";
-                    } else if (currentLevel == 2) {
-                        message = "Sage's Spirit: 'Elara, the Crystal led you here. Seal the Altar and find the exit door to proceed.'\nObjective: Find the Altar.";
-                        currentObjective = "Find the Ancient Altar ('S').";
-                    } else {
-                        message = "Celestial Sage: 'Elara, the Crystal has brought you to the Celestial Ruins. Place it in the Spire to end the curse.'\nObjective: Find the Spire.";
-                        currentObjective = "Place the Crystal at the Celestial Spire ('C').";
-                    }
-                    sageInteractionStage = 1;
-                    break;
-                case 1:
-                    message = currentLevel == 1 ? "Sage: 'The Crystal weakens the curse. Reach the exit door.'" :
-                             currentLevel == 2 ? "Sage's Spirit: 'The Altar is near. Seal it and find the exit door.'" :
-                             "Celestial Sage: 'The Spire awaits. Place the Crystal and end this.'";
-                    sageInteractionStage = 2;
-                    break;
-                case 2:
-                    message = "Sage: 'You're close, Elara. With the item, find the exit door.'";
-                    sageInteractionStage = 3;
-                    break;
-                case 3:
-                    message = "Sage: 'Go now, your destiny awaits.'";
-                    break;
-            }
-            appendToStoryLog(message + "\n");
+    /** Co-op tick: the server runs the game, so this only sends input and applies its frames. */
+    private void tickCoop(MazeSimulation.Input input) {
+        try {
+            client.send(input);
+            client.poll();
+        } catch (IOException ex) {
+            appendToStoryLog("Co-op error: " + ex.getMessage() + "\n");
+        }
+        if (!client.isConnected()) {
+            endGame("Disconnected from the co-op server.");
         }
     }
 
-    private void checkStoryTriggers() {
-        int objX = currentLevel == 1 ? 4 : 8;
-        int objY = currentLevel == 1 ? 2 : 8;
-        if (!hasObjectiveItem && Math.abs(playerX - objX) <= 2 && Math.abs(playerY - objY) <= 2) {
-            if (random.nextInt(10) == 0) {
-                appendToStoryLog("A radiant glow pulses nearby... the objective is close.\n");
-            }
+    /**
+     * Moves the camera along, builds an immutable frame of the window it shows and
+     * hands it to the panel.
+     */
+    private void publishFrame(double interpolation) {
+        if (simulation == null) {
+            return;
         }
-        if (Math.abs(playerX - 8) <= 2 && Math.abs(playerY - (currentLevel == 2 ? 7 : 8)) <= 2) {
-            if (random.nextInt(10) == 0) {
-                appendToStoryLog("The air hums near the exit door. Cosmic whispers urge you forward.\n");
+        float glow = (float) (previousGlowAlpha + (glowAlpha - previousGlowAlpha) * interpolation);
+        long now = System.nanoTime();
+        double seconds = lastFrameNanos == 0 ? 0 : (now - lastFrameNanos) / 1e9;
+        lastFrameNanos = now;
+        particles.advance(seconds);
+        if (client != null) {
+            if (client.isReady()) {
+                camera.follow(client.grid(), client.playerX(), client.playerY(), seconds,
+                        view.viewWidth(), view.viewHeight());
+                boolean miniMapChanged = showMiniMap && miniMap.update(client.grid(), null, client.playerX(), client.playerY());
+                motion.update(client.entities(), now);
+                view.present(FrameSnapshot.capture(client, camera, motion, particles, glow), miniMapChanged);
             }
+        } else {
+            camera.follow(simulation.grid(), simulation.playerX(), simulation.playerY(), seconds,
+                    view.viewWidth(), view.viewHeight());
+            boolean miniMapChanged = showMiniMap && miniMap.update(simulation.grid(), simulation.fieldOfView(),
+                    simulation.playerX(), simulation.playerY());
+            motion.update(simulation.entities(), now);
+            view.present(FrameSnapshot.capture(simulation, camera, motion, particles, glow), miniMapChanged);
+            if (simulation.level() != prefetchedLevel) {
+                prefetchedLevel = simulation.level();
+                prefetchNextLevel(prefetchedLevel);
+            }
+        }
+        long allocated = FrameProfiler.allocatedBytes();
+        if (loopAllocationMark >= 0) {
+            profiler.recordLoopAllocation(allocated - loopAllocationMark);
+        }
+        loopAllocationMark = allocated;
+    }
+
+    /**
+     * Handles a key that is not movement (see MovementInput): save, load, help and the
+     * view toggles. Runs on the game loop thread while it drains the key events.
+     */
+    private void handleCommand(int key) {
+        switch (key) {
+            case KeyEvent.VK_V: saveGame(); break;
+            case KeyEvent.VK_L: loadGame(); break;
+            case KeyEvent.VK_H: showHelp(); break;
+            case KeyEvent.VK_P:
+                showProfiler = !showProfiler;
+                view.refresh();
+                break;
+            case KeyEvent.VK_F:
+                if (client != null) {
+                    appendToStoryLog("Fog of war is not available in co-op.\n");
+                    break;
+                }
+                boolean fog = simulation.fieldOfView() == null;
+                simulation.setSightRadius(fog ? SIGHT_RADIUS : 0);
+                appendToStoryLog(fog ? "Fog of war on.\n" : "Fog of war off.\n");
+                break;
+            case KeyEvent.VK_EQUALS: case KeyEvent.VK_ADD: camera.zoomIn(); break;
+            case KeyEvent.VK_MINUS: case KeyEvent.VK_SUBTRACT: camera.zoomOut(); break;
+            case KeyEvent.VK_M:
+                showMiniMap = !showMiniMap;
+                view.refresh();
+                break;
+            default:
+                if (key >= KeyEvent.VK_0 && key <= KeyEvent.VK_0 + SAVE_SLOTS) {
+                    saveSlot = key - KeyEvent.VK_0;
+                    appendToStoryLog("Save slot: " + slotFile(saveSlot).getFileName() + "\n");
+                }
+                break;
         }
     }
 
@@ -380,261 +480,478 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
                           "SPACE: Interact with Sage.\n" +
                           "V: Save game.\n" +
                           "L: Load game.\n" +
-                          "H: Show this help.\n\n" +
+                          "1-" + SAVE_SLOTS + ": Choose save slot, 0: autosave (current: " + slotFile(saveSlot).getFileName() + ").\n" +
+                          "H: Show this help.\n" +
+                          "P: Toggle the profiler overlay.\n" +
+                          "F: Toggle fog of war.\n" +
+                          "+/-: Zoom in/out. M: Toggle the minimap.\n\n" +
                           "Story: Elara seeks to end a cosmic curse. Level 1: Find Crystal. Level 2: Seal Altar, find exit. Level 3: Place Crystal in Spire.\n" +
-                          "Current Level: " + currentLevel + "\n" +
-                          "Current Objective: " + currentObjective + "\n";
-        JOptionPane.showMessageDialog(this, helpText);
+                          (client != null
+                                  ? "Co-op: player " + (client.slot() + 1) + " in session " + COOP_SESSION + " on " + COOP_SERVER
+                                    + ", level " + client.level() + ". Input round trip " + client.ackLatency().summary()
+                                    + ", " + client.corrections() + " corrections.\n\n"
+                                  : "Current Level: " + simulation.level() + "\n" +
+                                    "Current Objective: " + simulation.objective() + "\n\n") +
+                          "Performance (" + gameLoop.ticksPerSecond() + " Hz): tick " + gameLoop.tickTimes().summary() +
+                          "; paint " + gameLoop.frameTimes().summary() + "\n" +
+                          "Renderer: " + (view instanceof CanvasView ? ((CanvasView) view).describe() : "Swing panel")
+                          + ", " + QUALITY.name().toLowerCase() + " quality\n" +
+                          "Input (" + MOVE_RATE + " moves/s, -Dmaze.moveRate): key to screen " +
+                          profiler.inputLatency().summary() +
+                          (keyEvents.dropped() > 0 ? ", " + keyEvents.dropped() + " key events dropped" : "") + "\n" +
+                          (saveService.saveTimes().count() > 0 ? "Saves: " + saveService.saveTimes().summary() + " to disk\n" : "");
+        showMessage(helpText);
     }
 
-    private void winGame() {
-        appendToStoryLog("Final Epilogue: The Crystal ignites the Celestial Spire, shattering the curse. Light floods the ruins, and the stars align in harmony. Elara, now a cosmic guardian, sees visions of new realms to explore. Her legend will echo through the ages.\n");
-        JOptionPane.showMessageDialog(this, "Congratulations! You ended the curse and restored balance. Elara's saga continues...");
-        System.exit(0);
-    }
-
-    private void loseGame() {
-        appendToStoryLog("Tragic End: A wraith's grasp consumes you. The curse claims another soul, and Elara fades into the cosmic void.\n");
-        JOptionPane.showMessageDialog(this, "Game Over: You have been cursed.");
-        System.exit(0);
+    private void endGame(String message) {
+        if (gameOver) return;
+        gameOver = true;
+        gameLoop.stop();
+        if (recorder != null) {
+            try {
+                recorder.finish(simulation.tickCount(), simulation.stateHash());
+            } catch (IOException ex) {
+                appendToStoryLog("Error closing recording: " + ex.getMessage() + "\n");
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this, message);
+            saveService.flush(2000);
+            System.exit(0);
+        });
     }
 
+    /** Safe from any thread; the log batches lines onto the EDT itself. */
     private void appendToStoryLog(String text) {
         storyLog.append(text);
-        storyLog.setCaretPosition(storyLog.getDocument().getLength());
     }
 
+    private void showMessage(String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, message));
+    }
+
+    /** Slot 0 is the autosave; slot 1 keeps the historical save file name. */
+    private static Path slotFile(int slot) {
+        return slot == 0 ? AUTOSAVE_FILE : slot == 1 ? Paths.get("maze_save.dat") : Paths.get("maze_save_" + slot + ".dat");
+    }
+
+    /** Snapshots on the game thread; the write and its toast happen on the save thread. */
     private void saveGame() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter("maze_save.txt"))) {
-            writer.println(currentLevel);
-            writer.println(playerX + "," + playerY + "," + playerFacing);
-            writer.println(hasObjectiveItem);
-            writer.println(sageInteractionStage);
-            writer.println(monsters.size());
-            for (int[] monster : monsters) {
-                writer.println(monster[0] + "," + monster[1] + "," + monster[2]);
-            }
-            for (char[] row : maze) {
-                for (char cell : row) {
-                    writer.print(cell);
-                }
-                writer.println();
-            }
-            writer.println(currentObjective);
-            JOptionPane.showMessageDialog(this, "Game saved successfully!");
-        } catch (IOException ex) {
-            appendToStoryLog("Error saving game: " + ex.getMessage() + "\n");
+        if (client != null) {
+            appendToStoryLog("Saving is not available in co-op.\n");
+            return;
         }
+        saveService.save(slotFile(saveSlot), simulation.snapshot());
     }
 
+    private void stopRecording(String reason) {
+        try {
+            recorder.close();
+        } catch (IOException ignored) {
+            // the journal is already as complete as it can be
+        }
+        recorder = null;
+        appendToStoryLog(reason + "\n");
+    }
+
+    /** Loads the selected slot; slot 1 falls back to a text save from older versions. */
     private void loadGame() {
-        try (BufferedReader reader = new BufferedReader(new FileReader("maze_save.txt"))) {
-            currentLevel = Integer.parseInt(reader.readLine());
-            String[] playerData = reader.readLine().split(",");
-            playerX = Integer.parseInt(playerData[0]);
-            playerY = Integer.parseInt(playerData[1]);
-            playerFacing = Integer.parseInt(playerData[2]);
-            hasObjectiveItem = Boolean.parseBoolean(reader.readLine());
-            sageInteractionStage = Integer.parseInt(reader.readLine());
-            int monsterCount = Integer.parseInt(reader.readLine());
-            monsters.clear();
-            for (int i = 0; i < monsterCount; i++) {
-                String[] monsterData = reader.readLine().split(",");
-                monsters.add(new int[]{Integer.parseInt(monsterData[0]), Integer.parseInt(monsterData[1]), Integer.parseInt(monsterData[2])});
-            }
-            maze = new char[ROWS][COLS];
-            char[][] sourceMaze = currentLevel == 1 ? level1Maze : currentLevel == 2 ? level2Maze : level3Maze;
-            for (int i = 0; i < ROWS; i++) {
-                String line = reader.readLine();
-                maze[i] = line.toCharArray();
-            }
-            currentObjective = reader.readLine();
-            JOptionPane.showMessageDialog(this, "Game loaded successfully!");
-            gamePanel.repaint();
-            appendToStoryLog("Game loaded. Current Level: " + currentLevel + ". Objective: " + currentObjective + "\n");
-        } catch (IOException | NumberFormatException ex) {
+        if (replay != null) {
+            appendToStoryLog("Loading is disabled during a replay.\n");
+            return;
+        }
+        if (client != null) {
+            appendToStoryLog("Loading is not available in co-op.\n");
+            return;
+        }
+        Path path = slotFile(saveSlot);
+        if (saveSlot == 1 && !Files.exists(path)) {
+            path = LEGACY_SAVE_FILE;
+        }
+        try {
+            simulation.restore(SaveFile.read(path));
+            if (recorder != null) {
+                stopRecording("Recording stopped: a loaded save cannot be replayed.");
+            }
+            showMessage("Game loaded successfully!");
+            appendToStoryLog("Game loaded. Current Level: " + simulation.level() + ". Objective: " + simulation.objective() + "\n");
+        } catch (IOException | IllegalArgumentException ex) {
+            // IllegalArgumentException: the save is valid but does not fit the current level pack.
             appendToStoryLog("Error loading game: " + ex.getMessage() + "\n");
         }
     }
 
-    private class GamePanel extends JPanel {
+    /** Where frames go: the Swing panel, or the active-rendering canvas with -Dmaze.renderer=canvas. */
+    private interface MazeView {
+        /** Shows a new frame. Called from the game loop thread. */
+        void present(FrameSnapshot next, boolean miniMapChanged);
+
+        /** Times the key press whose move the next frame shows. Called from the game loop thread. */
+        void markInput(long pressNanos);
+
+        int viewWidth();
+
+        int viewHeight();
+
+        /** Redraws everything, e.g. after an overlay was toggled. */
+        void refresh();
+
+        /** Gets the tiles of a theme ready in the background. */
+        void prefetch(int theme);
+    }
+
+    /**
+     * Passive rendering: frames are published to the EDT and Swing repaints the
+     * dirty cells when it gets to them. Always available; the fallback for the canvas.
+     */
+    private class GamePanel extends JPanel implements MazeView {
+        private final MazeRenderer renderer = new MazeRenderer(this::repaint);
+        private volatile FrameSnapshot frame;
+        private volatile int viewWidth = COLS * CELL_SIZE;
+        private volatile int viewHeight = ROWS * CELL_SIZE;
+        // Input latency: the press waiting to be seen, and the first frame that shows its move.
+        private volatile long presentedFrames;
+        private volatile long inputFrame;
+        private volatile long inputPressNanos;
+
+        GamePanel() {
+            renderer.setQuality(QUALITY);
+            setPreferredSize(new Dimension(COLS * CELL_SIZE, ROWS * CELL_SIZE));
+            setBackground(Color.BLACK);
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    viewWidth = getWidth();
+                    viewHeight = getHeight();
+                }
+            });
+        }
+
+        @Override
+        public int viewWidth() {
+            return viewWidth;
+        }
+
+        @Override
+        public int viewHeight() {
+            return viewHeight;
+        }
+
+        @Override
+        public void refresh() {
+            repaint();
+        }
+
+        @Override
+        public void prefetch(int theme) {
+            renderer.prefetch(theme);
+        }
+
+        /**
+         * Notes that the next frame presented shows the move made by a key pressed at
+         * pressNanos. While one press is still waiting for its paint, later ones are
+         * not timed. Called from the game loop thread.
+         */
+        @Override
+        public void markInput(long pressNanos) {
+            if (inputPressNanos == 0) {
+                inputFrame = presentedFrames + 1;
+                inputPressNanos = pressNanos;
+            }
+        }
+
+        /**
+         * Publishes a new frame and repaints only what differs from the previous one:
+         * changed cells, glow halos, exit lights and the minimap. A scroll, zoom or
+         * resize repaints everything. Called from the game loop thread.
+         */
+        @Override
+        public void present(FrameSnapshot next, boolean miniMapChanged) {
+            FrameSnapshot previous = frame;
+            frame = next;
+            presentedFrames++;
+            if (showProfiler) {
+                repaint(FrameProfiler.OVERLAY);
+            }
+            if (previous == null || previous.level != next.level || previous.theme != next.theme
+                    || (previous.sight == null) != (next.sight == null) || previous.hasObjectiveItem != next.hasObjectiveItem
+                    || previous.originX != next.originX || previous.originY != next.originY
+                    || previous.rows != next.rows || previous.cols != next.cols
+                    || previous.left != next.left || previous.top != next.top || previous.cellSize != next.cellSize) {
+                repaint();
+                return;
+            }
+            if (showMiniMap && miniMap.isShown(next)
+                    && (miniMapChanged || previous.playerX != next.playerX || previous.playerY != next.playerY)) {
+                repaint(miniMap.bounds(viewWidth));
+            }
+            int bleed = MazeRenderer.glowBleed(next.cellSize);
+            for (int i = 0; i < next.rows; i++) {
+                for (int j = 0; j < next.cols; j++) {
+                    byte tile = next.terrain(i, j);
+                    if (tile != previous.terrain(i, j) || next.sight(i, j) != previous.sight(i, j)) {
+                        repaintCell(next, i, j, 0);
+                    }
+                    if (next.sprite(i, j) != previous.sprite(i, j) || next.facing(i, j) != previous.facing(i, j)
+                            || next.pose(i, j) != previous.pose(i, j) || next.slide(i, j) != previous.slide(i, j)) {
+                        repaintSprite(previous, i, j);
+                        repaintSprite(next, i, j);
+                    }
+                    if (tile == MazeGrid.EXIT) {
+                        repaintCell(next, i, j, 0);
+                    } else if (MazeGrid.isObjective(tile) && (next.isGlowing(i, j) || previous.isGlowing(i, j))) {
+                        repaintCell(next, i, j, bleed);
+                    }
+                }
+            }
+            // Sparks outlive the glow that emitted them by up to their lifetime.
+            repaintSparks(previous);
+            repaintSparks(next);
+        }
+
+        private void repaintSparks(FrameSnapshot snapshot) {
+            if (snapshot.sparks != null) {
+                for (int k = 0; k < snapshot.sparks.length; k += 3) {
+                    repaintCell(snapshot, (int) snapshot.sparks[k], (int) snapshot.sparks[k + 1], 0);
+                }
+            }
+        }
+
+        /** Repaints a sprite's cell and, while it slides in, the cell it comes from. */
+        private void repaintSprite(FrameSnapshot snapshot, int row, int col) {
+            repaintCell(snapshot, row, col, 0);
+            if (snapshot.sprite(row, col) != FrameSnapshot.NONE && snapshot.slide(row, col) > 0) {
+                int facing = snapshot.facing(row, col);
+                repaintCell(snapshot, row - (facing == 2 ? 1 : facing == 0 ? -1 : 0), col - (facing == 1 ? 1 : facing == 3 ? -1 : 0), 0);
+            }
+        }
+
+        private void repaintCell(FrameSnapshot snapshot, int row, int col, int bleed) {
+            int size = snapshot.cellSize;
+            repaint(snapshot.left + col * size - bleed, snapshot.top + row * size - bleed, size + 2 * bleed, size + 2 * bleed);
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
+            long start = System.nanoTime();
+            long allocationMark = FrameProfiler.allocatedBytes();
+            MazePaintEvent paintEvent = new MazePaintEvent();
+            paintEvent.begin();
             super.paintComponent(g);
+            startup.mark(StartupTimer.Milestone.WINDOW);
+            long shown = presentedFrames;
+            FrameSnapshot snapshot = frame;
+            if (snapshot == null) {
+                return;
+            }
             Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            for (int i = 0; i < ROWS; i++) {
-                for (int j = 0; j < COLS; j++) {
-                    int x = j * CELL_SIZE;
-                    int y = i * CELL_SIZE;
-
-                    // Ground with patterns
-                    if (currentLevel == 1) {
-                        g2d.setPaint(new GradientPaint(x, y, new Color(144, 238, 144), x + CELL_SIZE, y + CELL_SIZE, new Color(100, 200, 100)));
-                        g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                        g2d.setColor(new Color(80, 160, 80, 100));
-                        g2d.fillOval(x + 10, y + 10, 5, 5);
-                    } else if (currentLevel == 2) {
-                        g2d.setPaint(new GradientPaint(x, y, new Color(50, 150, 50), x + CELL_SIZE, y + CELL_SIZE, new Color(30, 100, 30)));
-                        g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                        g2d.setColor(new Color(100, 80, 60, 100));
-                        g2d.fillRect(x + 15, y + 15, 5, 5);
-                    } else {
-                        g2d.setPaint(new GradientPaint(x, y, new Color(0, 50, 100), x + CELL_SIZE, y + CELL_SIZE, new Color(0, 20, 50)));
-                        g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                        g2d.setColor(new Color(255, 255, 255, 100));
-                        g2d.fillOval(x + 20, y + 20, 3, 3);
-                    }
+            Rectangle clip = g.getClipBounds();
+            g2d.translate(snapshot.left, snapshot.top);
+            int cellsPainted = renderer.paint(g2d, snapshot, g.getClipBounds(), getGraphicsConfiguration());
+            g2d.translate(-snapshot.left, -snapshot.top);
+            framePainted(renderer.isPlaceholder());
+            if (showMiniMap) {
+                miniMap.draw(g2d, snapshot, getWidth());
+            }
+            if (showProfiler) {
+                profiler.drawOverlay(g2d, gameLoop, getWidth() * getHeight());
+            }
+            long end = System.nanoTime();
+            gameLoop.frameTimes().record(end - start - profiler.overlayNanos());
+            long press = inputPressNanos;
+            if (press != 0 && shown >= inputFrame) {
+                profiler.recordInputLatency(end - press);
+                inputPressNanos = 0;
+            }
+            long allocated = allocationMark < 0 ? -1
+                    : FrameProfiler.allocatedBytes() - allocationMark - profiler.overlayBytes();
+            long dirtyPixels = clip == null ? (long) getWidth() * getHeight() : (long) clip.width * clip.height;
+            profiler.recordPaint(allocated, dirtyPixels);
+            if (paintEvent.shouldCommit()) {
+                paintEvent.dirtyPixels = (int) dirtyPixels;
+                paintEvent.cellsPainted = cellsPainted;
+                paintEvent.allocatedBytes = allocated;
+                paintEvent.commit();
+            }
+        }
+    }
 
-                    char cell = maze[i][j];
-                    if (cell == '#' || cell == 'W') {
-                        boolean isBuilding = currentLevel == 1 && (i + j) % 2 == 0;
-                        drawWall(g2d, x, y, cell == 'W' ? false : isBuilding);
-                    } else if (cell == 'T') {
-                        drawDecoration(g2d, x, y);
-                    } else if (cell == 'A' || cell == 'S' || cell == 'C') {
-                        if (!hasObjectiveItem && Math.abs(playerX - i) <= 2 && Math.abs(playerY - j) <= 2) {
-                            g2d.setColor(new Color(1.0f, 1.0f, 0.0f, glowAlpha * 0.5f));
-                            g2d.fillOval(x - 20, y - 20, CELL_SIZE + 40, CELL_SIZE + 40);
-                            g2d.setColor(new Color(1.0f, 1.0f, 0.0f, glowAlpha));
-                            g2d.fillOval(x - 15, y - 15, CELL_SIZE + 30, CELL_SIZE + 30);
-                            drawParticles(g2d, x, y);
-                        }
-                        drawObjectiveItem(g2d, x, y, cell);
-                    } else if (cell == 'E') {
-                        drawExit(g2d, x, y);
-                    } else if (cell == 'G') {
-                        drawPerson(g2d, x, y, Color.MAGENTA, 2, true);
-                    } else if (cell == 'P') {
-                        drawPerson(g2d, x, y, Color.BLUE, playerFacing, false);
-                    } else if (cell == 'M') {
-                        for (int[] monster : monsters) {
-                            if (monster[0] == i && monster[1] == j) {
-                                Color monsterColor = currentLevel == 1 ? Color.RED : currentLevel == 2 ? new Color(0, 100, 0) : new Color(0, 150, 255);
-                                drawPerson(g2d, x, y, monsterColor, monster[2], false);
-                                break;
-                            }
-                        }
-                    }
+    /**
+     * Active rendering: the game loop thread draws each frame straight into the back
+     * buffer of a BufferStrategy and shows it, with no EDT or repaint manager in
+     * between, so a frame is on screen as soon as show() returns. The whole view is
+     * redrawn every frame. Page flipping is used where the pipeline offers it, a
+     * blitted back buffer otherwise; without an accelerated back buffer the game falls
+     * back to the panel.
+     */
+    private class CanvasView extends Canvas implements MazeView {
+        // Every frame is drawn in full, so a finished atlas needs no extra redraw.
+        private final MazeRenderer renderer = new MazeRenderer(() -> { });
+        private volatile int viewWidth = COLS * CELL_SIZE;
+        private volatile int viewHeight = ROWS * CELL_SIZE;
+        private BufferStrategy strategy;
+        private long inputPressNanos;
+
+        CanvasView() {
+            renderer.setQuality(QUALITY);
+            setPreferredSize(new Dimension(COLS * CELL_SIZE, ROWS * CELL_SIZE));
+            setBackground(Color.BLACK);
+            setIgnoreRepaint(true);
+            // Keys go to the frame, as with the panel.
+            setFocusable(false);
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    viewWidth = getWidth();
+                    viewHeight = getHeight();
+                }
+            });
+        }
 
-                    if (cell == '.' || cell == 'T' || cell == 'P' || cell == 'M') {
-                        if ((i + j) % 3 == 0) {
-                            g2d.setColor(currentLevel == 1 ? new Color(169, 169, 169) : new Color(139, 69, 19));
-                            g2d.fillRect(x + 10, y + 20, CELL_SIZE - 20, 10);
-                        }
-                    }
+        /** Sets up the buffers once the canvas is displayable; returns why that failed, or null. */
+        String start() {
+            try {
+                try {
+                    createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true),
+                            BufferCapabilities.FlipContents.UNDEFINED));
+                } catch (AWTException e) {
+                    createBufferStrategy(2);
                 }
+                strategy = getBufferStrategy();
+            } catch (RuntimeException e) {
+                return e.getMessage();
+            }
+            if (strategy == null) {
+                return "no buffer strategy";
+            }
+            if (!strategy.getCapabilities().getBackBufferCapabilities().isAccelerated()) {
+                return "the back buffer is not accelerated";
             }
+            return null;
         }
 
-        private void drawWall(Graphics2D g, int x, int y, boolean isBuilding) {
-            if (currentLevel == 2 || !isBuilding) {
-                g.setPaint(new GradientPaint(x, y, new Color(60, 160, 60), x + CELL_SIZE, y + CELL_SIZE, new Color(30, 100, 30)));
-                g.fillOval(x, y, CELL_SIZE, CELL_SIZE);
-                g.setColor(new Color(0, 120, 0, 150));
-                g.fillOval(x + 10, y + 10, CELL_SIZE - 20, CELL_SIZE - 20);
-                g.setColor(new Color(0, 80, 0, 100));
-                g.drawLine(x + 15, y + 15, x + 35, y + 35);
-            } else if (currentLevel == 3) {
-                g.setPaint(new GradientPaint(x, y, new Color(120, 120, 180), x + CELL_SIZE, y + CELL_SIZE, new Color(70, 70, 120)));
-                g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                g.setColor(new Color(200, 200, 255, 150));
-                g.fillOval(x + 5, y + 5, 10, 10);
-                g.fillOval(x + 35, y + 35, 10, 10);
-                g.setColor(new Color(255, 255, 255, 50));
-                g.drawRect(x + 2, y + 2, CELL_SIZE - 4, CELL_SIZE - 4);
-            } else {
-                g.setPaint(new GradientPaint(x, y, new Color(139, 69, 19), x + CELL_SIZE, y + CELL_SIZE, new Color(100, 50, 10)));
-                g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                g.setColor(new Color(80, 40, 0));
-                g.drawLine(x + 2, y + 2, x + CELL_SIZE - 2, y + 2);
-                g.drawLine(x + 2, y + 2, x + 2, y + CELL_SIZE - 2);
-                g.setColor(Color.YELLOW);
-                g.fillRect(x + 10, y + 10, 10, 10);
-                g.fillRect(x + 30, y + 30, 10, 10);
-            }
-        }
-
-        private void drawDecoration(Graphics2D g, int x, int y) {
-            if (currentLevel == 3) {
-                g.setColor(new Color(0, 200, 255, 150));
-                g.fillOval(x + 15, y + 15, 20, 20);
-                g.setColor(new Color(255, 255, 255, 100));
-                g.fillOval(x + 20, y + 20, 10, 10);
-            } else {
-                g.setColor(new Color(139, 69, 19));
-                g.fillRect(x + 20, y + 30, 10, 20);
-                g.setColor(Color.GREEN);
-                g.fillOval(x + 5, y + 5, 40, 40);
-            }
-        }
-
-        private void drawObjectiveItem(Graphics2D g, int x, int y, char type) {
-            g.setColor(type == 'A' ? Color.YELLOW : type == 'S' ? Color.WHITE : new Color(255, 200, 0));
-            int[] xp = {x + 25, x + 10, x + 40};
-            int[] yp = {y + 10, y + 40, y + 40};
-            g.fillPolygon(xp, yp, 3);
-        }
-
-        private void drawExit(Graphics2D g, int x, int y) {
-            g.setPaint(new GradientPaint(x, y, new Color(0, 100, 0), x + 40, y + 40, new Color(0, 150, 0)));
-            g.fillRect(x + 10, y + 10, 30, 40);
-            g.setColor(new Color(255, 215, 0));
-            g.drawRect(x + 8, y + 8, 34, 44);
-            g.setColor(new Color(255, 255, 0, (int)(glowAlpha * 255)));
-            g.fillOval(x + 20, y + 30, 5, 5);
-        }
-
-        private void drawPerson(Graphics2D g, int x, int y, Color color, int facing, boolean isSage) {
-            g.setColor(color);
-            g.fillOval(x + 15, y + 5, 20, 20);
-            g.setColor(new Color(255, 220, 200));
-            g.fillOval(x + 18, y + 8, 14, 14);
-            g.setColor(color);
-            g.fillRect(x + 22, y + 25, 6, 15);
-            g.drawLine(x + 25, y + 28, x + 15, y + 23);
-            g.drawLine(x + 25, y + 28, x + 35, y + 23);
-            g.drawLine(x + 24, y + 40, x + 20, y + 45);
-            g.drawLine(x + 26, y + 40, x + 30, y + 45);
-            if (isSage) {
-                g.setColor(new Color(200, 0, 200, 150));
-                g.fillPolygon(new int[]{x + 15, x + 25, x + 35}, new int[]{y + 25, y + 40, y + 25}, 3);
-                g.setColor(Color.GRAY);
-                g.fillRect(x + 23, y + 10, 4, 10);
-            } else {
-                g.setColor(new Color(150, 150, 150, 150));
-                g.fillRect(x + 20, y + 25, 10, 10);
-                g.setColor(Color.BLACK);
-                g.fillRect(x + 22, y + 30, 6, 2);
+        String describe() {
+            return "canvas with " + (strategy.getCapabilities().isPageFlipping() ? "page flipping" : "a blitted back buffer")
+                    + " (" + getGraphicsConfiguration().getClass().getSimpleName() + ")";
+        }
+
+        @Override
+        public int viewWidth() {
+            return viewWidth;
+        }
+
+        @Override
+        public int viewHeight() {
+            return viewHeight;
+        }
+
+        @Override
+        public void refresh() {
+            // Every frame is drawn in full anyway.
+        }
+
+        @Override
+        public void prefetch(int theme) {
+            renderer.prefetch(theme);
+        }
+
+        @Override
+        public void markInput(long pressNanos) {
+            if (inputPressNanos == 0) {
+                inputPressNanos = pressNanos;
             }
-            if (currentLevel == 3 && !isSage && color != Color.BLUE) {
-                g.setColor(new Color(0, 255, 255, 100));
-                g.fillOval(x + 10, y, 30, 30);
-                g.setColor(Color.WHITE);
-                g.fillOval(x + 20, y + 10, 4, 4);
-                g.fillOval(x + 26, y + 10, 4, 4);
+        }
+
+        @Override
+        public void present(FrameSnapshot next, boolean miniMapChanged) {
+            int width = getWidth();
+            int height = getHeight();
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            long allocationMark = FrameProfiler.allocatedBytes();
+            MazePaintEvent paintEvent = new MazePaintEvent();
+            paintEvent.begin();
+            int cellsPainted = 0;
+            try {
+                do {
+                    do {
+                        Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                        try {
+                            g2d.setColor(Color.BLACK);
+                            g2d.fillRect(0, 0, width, height);
+                            g2d.translate(next.left, next.top);
+                            cellsPainted = renderer.paint(g2d, next, null, getGraphicsConfiguration());
+                            g2d.translate(-next.left, -next.top);
+                            if (showMiniMap) {
+                                miniMap.draw(g2d, next, width);
+                            }
+                            if (showProfiler) {
+                                profiler.drawOverlay(g2d, gameLoop, width * height);
+                            }
+                        } finally {
+                            g2d.dispose();
+                        }
+                    } while (strategy.contentsRestored());
+                    strategy.show();
+                } while (strategy.contentsLost());
+            } catch (IllegalStateException e) {
+                // The window is going away.
+                return;
             }
-            g.setColor(Color.BLACK);
-            switch (facing) {
-                case 0: g.drawLine(x + 25, y + 15, x + 25, y + 5); break;
-                case 1: g.drawLine(x + 25, y + 15, x + 35, y + 15); break;
-                case 2: g.drawLine(x + 25, y + 15, x + 25, y + 25); break;
-                case 3: g.drawLine(x + 25, y + 15, x + 15, y + 15); break;
+            Toolkit.getDefaultToolkit().sync();
+            startup.mark(StartupTimer.Milestone.WINDOW);
+            framePainted(renderer.isPlaceholder());
+            long end = System.nanoTime();
+            gameLoop.frameTimes().record(end - start - profiler.overlayNanos());
+            if (inputPressNanos != 0) {
+                profiler.recordInputLatency(end - inputPressNanos);
+                inputPressNanos = 0;
+            }
+            long allocated = allocationMark < 0 ? -1
+                    : FrameProfiler.allocatedBytes() - allocationMark - profiler.overlayBytes();
+            profiler.recordPaint(allocated, (long) width * height);
+            if (paintEvent.shouldCommit()) {
+                paintEvent.dirtyPixels = width * height;
+                paintEvent.cellsPainted = cellsPainted;
+                paintEvent.allocatedBytes = allocated;
+                paintEvent.commit();
             }
         }
+    }
 
-        private void drawParticles(Graphics2D g, int x, int y) {
-            g.setColor(new Color(1.0f, 1.0f, 0.0f, 0.5f));
-            for (int i = 0; i < 8; i++) {
-                int px = x + 25 + random.nextInt(20) - 10;
-                int py = y + 25 + random.nextInt(20) - 10;
-                g.fillOval(px, py, 5, 5);
-            }
+    /**
+     * Headless stand-in for the game's first frame: loads level 1 and paints it
+     * offscreen. Lets a class-data archive be trained on a build machine without a display.
+     */
+    private static void paintFirstFrameOffscreen() {
+        MazeSimulation simulation = new MazeSimulation(1, new SplittableRandom());
+        simulation.loadLevel(1);
+        for (int i = 0; i < TICK_RATE; i++) {
+            simulation.step(MazeSimulation.Input.NONE);
         }
+        Camera camera = new Camera(CELL_SIZE);
+        camera.follow(simulation.grid(), simulation.playerX(), simulation.playerY(), 0, COLS * CELL_SIZE, ROWS * CELL_SIZE);
+        FrameSnapshot snapshot = FrameSnapshot.capture(simulation, camera, new SpriteMotion(), new Particles(), 0.5f);
+        BufferedImage image = new BufferedImage(COLS * CELL_SIZE, ROWS * CELL_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        new MazeRenderer().paint(g2d, snapshot, null, null);
+        g2d.dispose();
+        StartupTimer startup = new StartupTimer();
+        startup.mark(StartupTimer.Milestone.TILES);
+        System.out.println(startup.report() + " (headless)");
     }
 
     public static void main(String[] args) {
+        if (EXIT_AFTER_FIRST_FRAME && GraphicsEnvironment.isHeadless()) {
+            paintFirstFrameOffscreen();
+            return;
+        }
+        // Java2D picks its pipeline when it starts, so this must happen before any window exists.
+        if (Boolean.getBoolean("maze.opengl") && System.getProperty("sun.java2d.opengl") == null) {
+            System.setProperty("sun.java2d.opengl", "true");
+        }
         SwingUtilities.invokeLater(GraphicalMazeGameEnhanced::new);
     }
 }
\ No newline at end of file
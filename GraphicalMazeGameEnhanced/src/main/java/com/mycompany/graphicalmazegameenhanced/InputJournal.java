@@ -0,0 +1,269 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Append-only journal of one play session, for bit-exact replays.
+ *
+ * The header holds everything that shapes the simulation: the random seed, the
+ * monster cadence, the level pack and the procedural generator settings, hazard
+ * density included. After it come (tick delta, input) records for every tick
+ * with a non-NONE input, as a varint and a byte, so an hour of play is a few
+ * kilobytes. Closing the journal appends an end marker with the final tick and
+ * a hash of the final state, which a replay checks itself against. A journal
+ * cut short by a crash still replays up to its last input.
+ *
+ * Built-in levels are not stored, so the version also dates them: journals of
+ * the built-in levels older than BUILT_IN_LEVELS were played on maps without
+ * hazards and monsters in other modes, and are refused rather than replayed
+ * into a mismatch.
+ */
+final class InputJournal {
+
+    static final int MAGIC = 0x4D5A524A; // "MZRJ"
+    static final int VERSION = 4;
+    /** First version recorded against the current built-in levels. */
+    static final int BUILT_IN_LEVELS = 4;
+    private static final MazeSimulation.Input[] INPUTS = MazeSimulation.Input.values();
+
+    private InputJournal() {
+    }
+
+    /** Session settings; building the simulation from them is what makes a replay exact. */
+    static final class Header {
+        final long seed;
+        final int ticksPerMonsterMove;
+        final MazeGenerator.Algorithm algorithm;
+        final long generatorSeed;
+        final int cellRows;
+        final int cellCols;
+        /** Generator hazard density, hazard tiles per 100 cells. */
+        final int hazards;
+        final LevelPack levels;
+
+        /**
+         * @param algorithm null for layouts from the level pack
+         * @param levels an opened pack file, or null for the built-in levels
+         */
+        Header(long seed, int ticksPerMonsterMove, MazeGenerator.Algorithm algorithm,
+               long generatorSeed, int cellRows, int cellCols, int hazards, LevelPack levels) {
+            this.seed = seed;
+            this.ticksPerMonsterMove = ticksPerMonsterMove;
+            this.algorithm = algorithm;
+            this.generatorSeed = generatorSeed;
+            this.cellRows = cellRows;
+            this.cellCols = cellCols;
+            this.hazards = hazards;
+            this.levels = levels;
+        }
+
+        /** A fresh simulation for this session, before level 1 is loaded. */
+        MazeSimulation newSimulation() {
+            MazeSimulation simulation = new MazeSimulation(ticksPerMonsterMove, new SplittableRandom(seed));
+            simulation.useLevelPack(levels);
+            if (algorithm != null) {
+                simulation.useGenerator(new MazeGenerator(generatorSeed, algorithm, hazards), cellRows, cellCols);
+            }
+            return simulation;
+        }
+    }
+
+    /** Writes a journal as the game runs; call from the game thread only. */
+    static final class Recorder implements Closeable {
+        private final DataOutputStream out;
+        private long lastTick;
+        private boolean closed;
+
+        Recorder(Path path, Header header) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(header.seed);
+            writeVarlong(out, header.ticksPerMonsterMove);
+            out.writeByte(header.algorithm == null ? -1 : header.algorithm.ordinal());
+            out.writeLong(header.generatorSeed);
+            writeVarlong(out, header.cellRows);
+            writeVarlong(out, header.cellCols);
+            // Only the path is stored; a replay needs the same pack file.
+            out.writeUTF(header.levels == null ? "" : header.levels.path().toString());
+            writeVarlong(out, header.hazards);
+            out.flush();
+        }
+
+        /** Records the input applied on the given tick; NONE is implied and not stored. */
+        void record(long tick, MazeSimulation.Input input) throws IOException {
+            if (closed || input == MazeSimulation.Input.NONE) {
+                return;
+            }
+            writeVarlong(out, tick - lastTick);
+            out.writeByte(input.ordinal());
+            lastTick = tick;
+            // Inputs are a few per second at most; flushing each keeps a crashed session replayable.
+            out.flush();
+        }
+
+        /** Appends the end marker with the final tick and state hash, then closes. */
+        void finish(long finalTick, long stateHash) throws IOException {
+            if (closed) {
+                return;
+            }
+            writeVarlong(out, 0);
+            writeVarlong(out, finalTick);
+            out.writeLong(stateHash);
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    /** A fully loaded journal, replayed tick by tick. */
+    static final class Replay {
+        final Header header;
+        private final long[] ticks;
+        private final byte[] inputs;
+        private final int count;
+        private final long finalTick;
+        private final long finalHash;
+        private final boolean complete;
+        private int cursor;
+
+        private Replay(Header header, long[] ticks, byte[] inputs, int count, long finalTick, long finalHash, boolean complete) {
+            this.header = header;
+            this.ticks = ticks;
+            this.inputs = inputs;
+            this.count = count;
+            this.finalTick = finalTick;
+            this.finalHash = finalHash;
+            this.complete = complete;
+        }
+
+        int inputCount() {
+            return count;
+        }
+
+        /** Last tick of the session; the last input's tick when the journal was cut short. */
+        long finalTick() {
+            return finalTick;
+        }
+
+        /** False when the journal has no end marker, so there is no hash to verify. */
+        boolean isComplete() {
+            return complete;
+        }
+
+        long finalHash() {
+            return finalHash;
+        }
+
+        /** Input for the given tick; ticks must be asked for in increasing order. */
+        MazeSimulation.Input inputAt(long tick) {
+            while (cursor < count && ticks[cursor] < tick) {
+                cursor++;
+            }
+            return cursor < count && ticks[cursor] == tick ? INPUTS[inputs[cursor]] : MazeSimulation.Input.NONE;
+        }
+
+        void rewind() {
+            cursor = 0;
+        }
+    }
+
+    static Replay read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not an input journal");
+            }
+            int version = in.readUnsignedByte();
+            if (version > VERSION) {
+                throw new IOException("Journal version " + version + " is newer than supported version " + VERSION);
+            }
+            long seed = in.readLong();
+            int ticksPerMonsterMove = (int) readVarlong(in);
+            int algorithm = in.readByte();
+            long generatorSeed = in.readLong();
+            int cellRows = (int) readVarlong(in);
+            int cellCols = (int) readVarlong(in);
+            String pack = version >= 2 ? in.readUTF() : "";
+            int hazards = version >= 3 ? (int) readVarlong(in) : 0;
+            if (algorithm >= MazeGenerator.Algorithm.values().length) {
+                throw new IOException("Unknown maze algorithm " + algorithm);
+            }
+            if (algorithm < 0 && pack.isEmpty() && version < BUILT_IN_LEVELS) {
+                throw new IOException("Journal version " + version + " was recorded on an older set of built-in levels");
+            }
+            Header header = new Header(seed, ticksPerMonsterMove,
+                    algorithm < 0 ? null : MazeGenerator.Algorithm.values()[algorithm], generatorSeed, cellRows, cellCols, hazards,
+                    pack.isEmpty() ? null : LevelPack.open(Paths.get(pack)));
+
+            long[] ticks = new long[256];
+            byte[] inputs = new byte[256];
+            int count = 0;
+            long tick = 0;
+            try {
+                while (true) {
+                    long delta = readVarlong(in);
+                    if (delta == 0) {
+                        long finalTick = readVarlong(in);
+                        long finalHash = in.readLong();
+                        return new Replay(header, ticks, inputs, count, finalTick, finalHash, true);
+                    }
+                    int input = in.readUnsignedByte();
+                    if (input >= INPUTS.length) {
+                        throw new IOException("Unknown input " + input + " at tick " + (tick + delta));
+                    }
+                    if (count == ticks.length) {
+                        ticks = Arrays.copyOf(ticks, count * 2);
+                        inputs = Arrays.copyOf(inputs, count * 2);
+                    }
+                    tick += delta;
+                    ticks[count] = tick;
+                    inputs[count++] = (byte) input;
+                }
+            } catch (EOFException e) {
+                return new Replay(header, ticks, inputs, count, tick, 0, false);
+            }
+        }
+    }
+
+    private static void writeVarlong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarlong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in journal");
+    }
+}
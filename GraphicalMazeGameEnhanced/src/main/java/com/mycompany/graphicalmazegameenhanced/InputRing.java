@@ -0,0 +1,69 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+/**
+ * Lock-free single-producer, single-consumer ring of key events.
+ *
+ * The EDT offers each key press and release with the time it was seen; the game
+ * loop drains them once per tick. Producer and consumer each own one counter and
+ * only read the other's, so a volatile write publishes an event without locks,
+ * boxing or allocation. A full ring drops new events (and counts them) rather than
+ * block the EDT; at the default capacity that takes seconds of unread typing.
+ */
+final class InputRing {
+
+    /** Key code of the event sent when the window loses focus: every key counts as released. */
+    static final int RELEASE_ALL = -1;
+
+    private final int[] keys;
+    private final boolean[] pressed;
+    private final long[] nanos;
+    private final int mask;
+    private volatile long head;
+    private volatile long tail;
+    private volatile long dropped;
+
+    /** @param capacity rounded up to a power of two */
+    InputRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        keys = new int[size];
+        pressed = new boolean[size];
+        nanos = new long[size];
+        mask = size - 1;
+    }
+
+    /** EDT only. */
+    boolean offer(int keyCode, boolean isPress, long timeNanos) {
+        long t = tail;
+        if (t - head == keys.length) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        keys[slot] = keyCode;
+        pressed[slot] = isPress;
+        nanos[slot] = timeNanos;
+        tail = t + 1;
+        return true;
+    }
+
+    /** Game loop only. Hands every queued event to the sink and returns how many there were. */
+    int drain(Sink sink) {
+        long h = head;
+        long t = tail;
+        for (long i = h; i < t; i++) {
+            int slot = (int) i & mask;
+            sink.accept(keys[slot], pressed[slot], nanos[slot]);
+        }
+        head = t;
+        return (int) (t - h);
+    }
+
+    /** Events lost to a full ring. */
+    long dropped() {
+        return dropped;
+    }
+
+    interface Sink {
+        void accept(int keyCode, boolean pressed, long timeNanos);
+    }
+}
@@ -0,0 +1,72 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent timing samples (in nanoseconds) in a fixed ring and
+ * answers percentile queries over them. Recording never allocates.
+ */
+final class LatencyRecorder {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyRecorder(int capacity) {
+        samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /** Returns the given percentile (0-100) of the recorded samples, or 0 when empty. */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return percentile(sorted, count, percentile);
+    }
+
+    /**
+     * Copies the samples into scratch, which must hold the capacity, sorts them
+     * there and returns how many there are. Lets a caller read several
+     * percentiles from one sort without allocating.
+     */
+    synchronized int sortInto(long[] scratch) {
+        System.arraycopy(samples, 0, scratch, 0, count);
+        Arrays.sort(scratch, 0, count);
+        return count;
+    }
+
+    /** Returns the given percentile of the first count entries of sorted, or 0 when count is 0. */
+    static long percentile(long[] sorted, int count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /** Records every sample kept here into target, oldest first, e.g. to pool several clients. */
+    synchronized void copyTo(LatencyRecorder target) {
+        int first = count < samples.length ? 0 : next;
+        for (int i = 0; i < count; i++) {
+            target.record(samples[(first + i) % samples.length]);
+        }
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    String summary() {
+        return String.format("p50 %.3f ms, p99 %.3f ms", percentile(50) / 1e6, percentile(99) / 1e6);
+    }
+}
@@ -0,0 +1,231 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo level-balance runner.
+ *
+ * Plays many seeded games of each level headlessly, in parallel on a ForkJoinPool, and
+ * reports win/loss rates, a steps-to-goal histogram and a heatmap of where the player
+ * was caught. The game range is split deterministically into batches of at most
+ * BATCH_SIZE, each with its own SplittableRandom derived from the base seed and its
+ * first game index, so results are reproducible no matter how many threads run them.
+ *
+ * Usage: LevelBalanceRunner [games] [greedy|random] [seed] [threads] [maxSteps]
+ */
+public final class LevelBalanceRunner {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int HISTOGRAM_BUCKET = 10;
+
+    enum AgentKind { GREEDY, RANDOM }
+
+    private final int level;
+    private final AgentKind agentKind;
+    private final long seed;
+    private final int maxSteps;
+
+    LevelBalanceRunner(int level, AgentKind agentKind, long seed, int maxSteps) {
+        this.level = level;
+        this.agentKind = agentKind;
+        this.seed = seed;
+        this.maxSteps = maxSteps;
+    }
+
+    /** Outcome counters for a batch of games; merged up the fork-join tree. */
+    static final class Stats {
+        long games;
+        long wins;
+        long losses;
+        long timeouts;
+        long winningSteps;
+        final long[] stepsHistogram;
+        final long[] deathHeatmap = new long[MazeSimulation.ROWS * MazeSimulation.COLS];
+
+        Stats(int maxSteps) {
+            stepsHistogram = new long[maxSteps / HISTOGRAM_BUCKET + 1];
+        }
+
+        void merge(Stats other) {
+            games += other.games;
+            wins += other.wins;
+            losses += other.losses;
+            timeouts += other.timeouts;
+            winningSteps += other.winningSteps;
+            for (int i = 0; i < stepsHistogram.length; i++) {
+                stepsHistogram[i] += other.stepsHistogram[i];
+            }
+            for (int i = 0; i < deathHeatmap.length; i++) {
+                deathHeatmap[i] += other.deathHeatmap[i];
+            }
+        }
+    }
+
+    private final class Batch extends RecursiveTask<Stats> {
+        private final long firstGame;
+        private final long games;
+
+        Batch(long firstGame, long games) {
+            this.firstGame = firstGame;
+            this.games = games;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (games <= BATCH_SIZE) {
+                return play(new SplittableRandom(seed ^ (firstGame * 0x9E3779B97F4A7C15L)), games);
+            }
+            long half = games / 2;
+            Batch left = new Batch(firstGame, half);
+            left.fork();
+            Stats stats = new Batch(firstGame + half, games - half).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+
+    Stats run(ForkJoinPool pool, long games) {
+        return pool.invoke(new Batch(0, games));
+    }
+
+    private Stats play(SplittableRandom random, long games) {
+        Stats stats = new Stats(maxSteps);
+        GreedyAgent greedy = new GreedyAgent();
+        MazeSimulation.Input[] inputs = MazeSimulation.Input.values();
+        for (long g = 0; g < games; g++) {
+            MazeSimulation simulation = new MazeSimulation(1, random);
+            simulation.loadLevel(level);
+            int steps = 0;
+            MazeSimulation.Status status = MazeSimulation.Status.PLAYING;
+            while (steps < maxSteps && status == MazeSimulation.Status.PLAYING && simulation.level() == level) {
+                MazeSimulation.Input input = agentKind == AgentKind.GREEDY
+                        ? greedy.next(simulation, random)
+                        : inputs[random.nextInt(inputs.length)];
+                status = simulation.step(input);
+                steps++;
+            }
+            stats.games++;
+            if (status == MazeSimulation.Status.WON || simulation.level() != level) {
+                stats.wins++;
+                stats.winningSteps += steps;
+                stats.stepsHistogram[steps / HISTOGRAM_BUCKET]++;
+            } else if (status == MazeSimulation.Status.LOST) {
+                stats.losses++;
+                stats.deathHeatmap[simulation.playerX() * MazeSimulation.COLS + simulation.playerY()]++;
+            } else {
+                stats.timeouts++;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Walks the shortest monster-free path to the objective, then to the exit.
+     * Waits in place when monsters block every route. Scratch arrays are reused.
+     */
+    static final class GreedyAgent {
+        private int[] queue = new int[MazeSimulation.ROWS * MazeSimulation.COLS];
+        private int[] parent = new int[MazeSimulation.ROWS * MazeSimulation.COLS];
+
+        MazeSimulation.Input next(MazeSimulation simulation, SplittableRandom random) {
+            int cols = simulation.cols();
+            int rows = simulation.rows();
+            MazeGrid grid = simulation.grid();
+            byte target = simulation.hasObjectiveItem() ? MazeGrid.EXIT : simulation.objectiveTile();
+            int start = simulation.playerX() * cols + simulation.playerY();
+            if (parent.length < rows * cols) {
+                queue = new int[rows * cols];
+                parent = new int[rows * cols];
+            }
+
+            Arrays.fill(parent, -1);
+            parent[start] = start;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            int found = -1;
+            while (head < tail) {
+                int current = queue[head++];
+                int x = current / cols;
+                int y = current % cols;
+                if (grid.get(current) == target) {
+                    found = current;
+                    break;
+                }
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + (d == 0 ? -1 : d == 2 ? 1 : 0);
+                    int ny = y + (d == 1 ? 1 : d == 3 ? -1 : 0);
+                    if (nx < 0 || nx >= rows || ny < 0 || ny >= cols) {
+                        continue;
+                    }
+                    int next = nx * cols + ny;
+                    if (parent[next] == -1 && grid.isWalkable(next) && !grid.isOccupied(next)) {
+                        parent[next] = current;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            if (found < 0 || found == start) {
+                return MazeSimulation.Input.NONE;
+            }
+            int step = found;
+            while (parent[step] != start) {
+                step = parent[step];
+            }
+            int dx = step / cols - simulation.playerX();
+            int dy = step % cols - simulation.playerY();
+            return dx < 0 ? MazeSimulation.Input.UP : dx > 0 ? MazeSimulation.Input.DOWN
+                    : dy > 0 ? MazeSimulation.Input.RIGHT : MazeSimulation.Input.LEFT;
+        }
+    }
+
+    private static void report(int level, Stats stats, double seconds, int threads, int maxSteps) {
+        System.out.printf("Level %d: %d games in %.2f s (%.0f games/s, %.0f games/s/core)%n",
+                level, stats.games, seconds, stats.games / seconds, stats.games / seconds / threads);
+        System.out.printf("  win %.2f%%  loss %.2f%%  timeout %.2f%%  mean steps to goal %.1f%n",
+                100.0 * stats.wins / stats.games, 100.0 * stats.losses / stats.games,
+                100.0 * stats.timeouts / stats.games, stats.wins == 0 ? 0.0 : (double) stats.winningSteps / stats.wins);
+        System.out.println("  Steps to goal:");
+        long peak = Arrays.stream(stats.stepsHistogram).max().orElse(0);
+        for (int i = 0; i < stats.stepsHistogram.length; i++) {
+            if (stats.stepsHistogram[i] > 0) {
+                int bar = (int) (40 * stats.stepsHistogram[i] / peak);
+                System.out.printf("    %4d-%-4d %9d %s%n", i * HISTOGRAM_BUCKET, Math.min(maxSteps, (i + 1) * HISTOGRAM_BUCKET - 1),
+                        stats.stepsHistogram[i], "#".repeat(Math.max(1, bar)));
+            }
+        }
+        System.out.println("  Deaths by cell (row-major):");
+        for (int i = 0; i < MazeSimulation.ROWS; i++) {
+            StringBuilder row = new StringBuilder("   ");
+            for (int j = 0; j < MazeSimulation.COLS; j++) {
+                row.append(String.format(" %7d", stats.deathHeatmap[i * MazeSimulation.COLS + j]));
+            }
+            System.out.println(row);
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        AgentKind agent = args.length > 1 ? AgentKind.valueOf(args[1].toUpperCase()) : AgentKind.GREEDY;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxSteps = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+
+        System.setProperty("java.awt.headless", "true");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            System.out.printf("Agent %s, seed %d, %d threads, max %d steps%n", agent, seed, threads, maxSteps);
+            for (int level = 1; level <= LevelPack.builtIn().size(); level++) {
+                LevelBalanceRunner runner = new LevelBalanceRunner(level, agent, seed + level, maxSteps);
+                long start = System.nanoTime();
+                Stats stats = runner.run(pool, games);
+                report(level, stats, (System.nanoTime() - start) / 1e9, threads, maxSteps);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only collection of levels: layout, spawns and story text.
+ *
+ * On disk a pack is a 12-byte header (magic, version, level count), a table of
+ * contents with one (offset, length, CRC32) entry per level, then the level records.
+ * Packs are memory-mapped and only the header and table of contents are read when
+ * one is opened, so a level switch touches just the pages of that level's record.
+ * Decoded levels are kept in a small LRU cache. The built-in levels are compiled
+ * from the levels.txt resource into the same format when first used.
+ *
+ * Source format: see levels.txt. LevelPackTool turns source files into pack files.
+ */
+final class LevelPack {
+
+    static final int MAGIC = 0x4D5A4C50; // "MZLP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int TOC_ENTRY_SIZE = 16;
+    static final int CACHE_SIZE = Math.max(1, Integer.getInteger("maze.levelCache", 16));
+
+    private static final String[] FACINGS = {"up", "right", "down", "left"};
+    private static final String[] MODES = {"wander", "patrol", "pursue"};
+
+    /** One decoded level. Immutable; terrain must be copied before it is changed. */
+    static final class Level {
+        final String name;
+        final int theme;
+        final int rows;
+        final int cols;
+        final byte[] terrain;
+        final int startX;
+        final int startY;
+        final int sageX;
+        final int sageY;
+        final int decorations;
+        /** Monster spawns as consecutive (x, y, facing, mode) quadruples. */
+        final int[] spawns;
+        final String item;
+        final String objective;
+        final String intro;
+        final String sageGreeting;
+        final String sageObjective;
+        final String sageHint;
+
+        Level(String name, int theme, int rows, int cols, byte[] terrain, int startX, int startY, int sageX, int sageY,
+              int decorations, int[] spawns, String item, String objective, String intro,
+              String sageGreeting, String sageObjective, String sageHint) {
+            this.name = name;
+            this.theme = theme;
+            this.rows = rows;
+            this.cols = cols;
+            this.terrain = terrain;
+            this.startX = startX;
+            this.startY = startY;
+            this.sageX = sageX;
+            this.sageY = sageY;
+            this.decorations = decorations;
+            this.spawns = spawns;
+            this.item = item;
+            this.objective = objective;
+            this.intro = intro;
+            this.sageGreeting = sageGreeting;
+            this.sageObjective = sageObjective;
+            this.sageHint = sageHint;
+        }
+
+        int monsterCount() {
+            return spawns.length / 4;
+        }
+    }
+
+    private static LevelPack builtIn;
+
+    private final Path path;
+    private final ByteBuffer data;
+    private final int count;
+    private final Map<Integer, Level> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Level> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private LevelPack(Path path, ByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data;
+        String source = path == null ? "built-in level pack" : path.toString();
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(source + " is not a level pack");
+        }
+        int version = data.getInt(4);
+        if (version > VERSION) {
+            throw new IOException("Level pack version " + version + " is newer than supported version " + VERSION);
+        }
+        count = data.getInt(8);
+        if (count < 1 || (long) HEADER_SIZE + (long) count * TOC_ENTRY_SIZE > data.limit()) {
+            throw new IOException(source + " has an invalid table of contents");
+        }
+        for (int i = 0; i < count; i++) {
+            long offset = data.getLong(HEADER_SIZE + i * TOC_ENTRY_SIZE);
+            int length = data.getInt(HEADER_SIZE + i * TOC_ENTRY_SIZE + 8);
+            if (offset < HEADER_SIZE || length < 0 || offset + length > data.limit()) {
+                throw new IOException(source + ": level " + (i + 1) + " lies outside the file");
+            }
+        }
+    }
+
+    /** Maps a pack file; only its header and table of contents are read here. */
+    static LevelPack open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new LevelPack(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** The levels shipped with the game, parsed from the levels.txt resource on first use. */
+    static synchronized LevelPack builtIn() {
+        if (builtIn == null) {
+            try (InputStream in = LevelPack.class.getResourceAsStream("levels.txt")) {
+                if (in == null) {
+                    throw new IOException("levels.txt resource is missing");
+                }
+                builtIn = new LevelPack(null, encode(parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load the built-in levels", e);
+            }
+        }
+        return builtIn;
+    }
+
+    /** The pack file, or null for the built-in levels. */
+    Path path() {
+        return path;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Level by number, counting from 1. Throws IllegalArgumentException for a number
+     * outside the pack or a record that fails its checksum.
+     */
+    synchronized Level level(int number) {
+        if (number < 1 || number > count) {
+            throw new IllegalArgumentException("Level " + number + " is not in this pack (1-" + count + ")");
+        }
+        Level level = cache.get(number);
+        if (level == null) {
+            level = decode(number);
+            cache.put(number, level);
+        }
+        return level;
+    }
+
+    private Level decode(int number) {
+        int entry = HEADER_SIZE + (number - 1) * TOC_ENTRY_SIZE;
+        ByteBuffer record = data.slice((int) data.getLong(entry), data.getInt(entry + 8));
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != data.getInt(entry + 12)) {
+            throw new IllegalArgumentException("Level " + number + " is corrupt (checksum mismatch)");
+        }
+        try {
+            String name = getString(record);
+            int theme = record.get();
+            int rows = record.getInt();
+            int cols = record.getInt();
+            int startX = record.getInt();
+            int startY = record.getInt();
+            int sageX = record.getInt();
+            int sageY = record.getInt();
+            int decorations = record.getInt();
+            int monsters = record.getInt();
+            if (rows < 1 || cols < 1 || monsters < 0 || (long) rows * cols + monsters * 16L > record.remaining()) {
+                throw new IllegalArgumentException("Level " + number + " has sizes that exceed its record");
+            }
+            int[] spawns = new int[monsters * 4];
+            for (int i = 0; i < spawns.length; i++) {
+                spawns[i] = record.getInt();
+            }
+            byte[] terrain = new byte[rows * cols];
+            record.get(terrain);
+            for (byte tile : terrain) {
+                if (!MazeGrid.isValidTile(tile)) {
+                    throw new IllegalArgumentException("Level " + number + " has invalid tile code " + tile);
+                }
+            }
+            if (theme < 1 || theme > 3 || startX < 0 || startY < 0 || startX >= rows || startY >= cols) {
+                throw new IllegalArgumentException("Level " + number + " has an invalid theme or start");
+            }
+            // No sage is (-1, -1); otherwise it must be on the map.
+            if ((sageX != -1 || sageY != -1) && (sageX < 0 || sageY < 0 || sageX >= rows || sageY >= cols)) {
+                throw new IllegalArgumentException("Level " + number + " has its sage outside the map");
+            }
+            for (int i = 0; i < spawns.length; i += 4) {
+                int x = spawns[i];
+                int y = spawns[i + 1];
+                if (x < 0 || y < 0 || x >= rows || y >= cols || MazeGrid.isBlocking(terrain[x * cols + y])
+                        || spawns[i + 2] < 0 || spawns[i + 2] >= FACINGS.length || spawns[i + 3] < 0 || spawns[i + 3] >= MODES.length) {
+                    throw new IllegalArgumentException("Level " + number + " has an invalid monster spawn at (" + x + "," + y + ")");
+                }
+            }
+            return new Level(name, theme, rows, cols, terrain, startX, startY, sageX, sageY, decorations, spawns,
+                    getString(record), getString(record), getString(record),
+                    getString(record), getString(record), getString(record));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Level " + number + " is truncated", e);
+        }
+    }
+
+    /** Serialises levels into pack format, table of contents first. */
+    static ByteBuffer encode(List<Level> levels) {
+        List<byte[]> records = new ArrayList<>(levels.size());
+        long size = HEADER_SIZE + (long) levels.size() * TOC_ENTRY_SIZE;
+        for (Level level : levels) {
+            byte[] record = encodeLevel(level);
+            records.add(record);
+            size += record.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Level pack would be larger than 2 GB");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(levels.size());
+        int offset = HEADER_SIZE + levels.size() * TOC_ENTRY_SIZE;
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record);
+            out.putLong(offset).putInt(record.length).putInt((int) crc.getValue());
+            offset += record.length;
+        }
+        for (byte[] record : records) {
+            out.put(record);
+        }
+        return out.flip();
+    }
+
+    private static byte[] encodeLevel(Level level) {
+        String[] text = {level.item, level.objective, level.intro, level.sageGreeting, level.sageObjective, level.sageHint};
+        byte[][] strings = new byte[text.length + 1][];
+        strings[0] = level.name.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 8 * 4 + level.spawns.length * 4 + level.terrain.length;
+        for (int i = 0; i < text.length; i++) {
+            strings[i + 1] = text[i].getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        putString(out, strings[0]);
+        out.put((byte) level.theme);
+        out.putInt(level.rows).putInt(level.cols).putInt(level.startX).putInt(level.startY)
+                .putInt(level.sageX).putInt(level.sageY).putInt(level.decorations).putInt(level.monsterCount());
+        for (int value : level.spawns) {
+            out.putInt(value);
+        }
+        out.put(level.terrain);
+        for (int i = 1; i < strings.length; i++) {
+            putString(out, strings[i]);
+        }
+        return out.array();
+    }
+
+    private static void putString(ByteBuffer out, byte[] utf8) {
+        out.putInt(utf8.length).put(utf8);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /** Parses levels in source format; errors name the offending line. */
+    static List<Level> parse(BufferedReader in) throws IOException {
+        List<Level> levels = new ArrayList<>();
+        LevelSource level = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (level != null && level.map != null) {
+                if (line.isBlank()) {
+                    levels.add(level.build(lineNumber));
+                    level = null;
+                } else {
+                    level.map.add(line);
+                }
+                continue;
+            }
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String key = space < 0 ? line : line.substring(0, space);
+            String value = space < 0 ? "" : line.substring(space + 1).strip();
+            if (key.equals("level")) {
+                if (level != null) {
+                    throw new IOException("Line " + lineNumber + ": level '" + level.name + "' has no map");
+                }
+                level = new LevelSource(value.isEmpty() ? "Level " + (levels.size() + 1) : value);
+                continue;
+            }
+            if (level == null) {
+                throw new IOException("Line " + lineNumber + ": '" + key + "' before the first level");
+            }
+            try {
+                level.set(key, value);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (level != null) {
+            if (level.map == null) {
+                throw new IOException("Level '" + level.name + "' has no map");
+            }
+            levels.add(level.build(lineNumber));
+        }
+        if (levels.isEmpty()) {
+            throw new IOException("No levels found");
+        }
+        return levels;
+    }
+
+    /** A level being read from source. */
+    private static final class LevelSource {
+        final String name;
+        int theme = 1;
+        int decorations;
+        int[] spawns = new int[0];
+        String item = "";
+        String objective = "";
+        String intro = "";
+        String sageGreeting = "";
+        String sageObjective = "";
+        String sageHint = "";
+        List<String> map;
+
+        LevelSource(String name) {
+            this.name = name;
+        }
+
+        void set(String key, String value) {
+            switch (key) {
+                case "theme":
+                    theme = Integer.parseInt(value);
+                    if (theme < 1 || theme > 3) {
+                        throw new IllegalArgumentException("theme must be 1, 2 or 3");
+                    }
+                    break;
+                case "decorations": decorations = Integer.parseInt(value); break;
+                case "item": item = unescape(value); break;
+                case "objective": objective = unescape(value); break;
+                case "intro": intro = unescape(value); break;
+                case "sage.greeting": sageGreeting = unescape(value); break;
+                case "sage.objective": sageObjective = unescape(value); break;
+                case "sage.hint": sageHint = unescape(value); break;
+                case "monster": addMonster(value.split("\\s+")); break;
+                case "map": map = new ArrayList<>(); break;
+                default: throw new IllegalArgumentException("unknown key '" + key + "'");
+            }
+        }
+
+        private void addMonster(String[] fields) {
+            if (fields.length != 4) {
+                throw new IllegalArgumentException("monster needs: row col facing mode");
+            }
+            int n = spawns.length;
+            spawns = Arrays.copyOf(spawns, n + 4);
+            spawns[n] = Integer.parseInt(fields[0]);
+            spawns[n + 1] = Integer.parseInt(fields[1]);
+            spawns[n + 2] = indexOf(FACINGS, fields[2], "facing");
+            spawns[n + 3] = indexOf(MODES, fields[3], "mode");
+        }
+
+        Level build(int lineNumber) throws IOException {
+            int rows = map.size();
+            int cols = rows == 0 ? 0 : map.get(0).length();
+            if (rows < 3 || cols < 3) {
+                throw new IOException("Level '" + name + "' map is smaller than 3x3");
+            }
+            byte[] terrain = new byte[rows * cols];
+            int startX = -1, startY = -1, sageX = -1, sageY = -1;
+            for (int x = 0; x < rows; x++) {
+                String row = map.get(x);
+                if (row.length() != cols) {
+                    throw new IOException("Level '" + name + "' map row " + x + " is " + row.length() + " wide, expected " + cols);
+                }
+                for (int y = 0; y < cols; y++) {
+                    char c = row.charAt(y);
+                    terrain[x * cols + y] = MazeGrid.fromChar(c);
+                    if (c == 'P') {
+                        startX = x;
+                        startY = y;
+                    } else if (c == 'G') {
+                        sageX = x;
+                        sageY = y;
+                    }
+                }
+            }
+            if (startX < 0) {
+                throw new IOException("Level '" + name + "' has no start ('P') before line " + lineNumber);
+            }
+            for (int i = 0; i < spawns.length; i += 4) {
+                int x = spawns[i];
+                int y = spawns[i + 1];
+                if (x < 0 || y < 0 || x >= rows || y >= cols || MazeGrid.isBlocking(terrain[x * cols + y])) {
+                    throw new IOException("Level '" + name + "' has a monster on a blocked cell (" + x + "," + y + ")");
+                }
+            }
+            return new Level(name, theme, rows, cols, terrain, startX, startY, sageX, sageY, decorations, spawns,
+                    item, objective, intro, sageGreeting, sageObjective, sageHint);
+        }
+
+        private static int indexOf(String[] names, String value, String what) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(value)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("unknown " + what + " '" + value + "'");
+        }
+
+        private static String unescape(String value) {
+            return value.replace("\\n", "\n");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds and inspects level packs.
+ *
+ * compile joins one or more source files (the levels.txt format) into a pack.
+ * generate writes a pack of procedural levels that borrow the built-in story text,
+ * for trying out large packs. info lists a pack's levels and times opening it, the
+ * first (uncached) load of every level and a cached load.
+ *
+ * Usage: LevelPackTool compile pack source... | LevelPackTool generate pack [levels=300] [cells=15] [seed=1]
+ *        | LevelPackTool info pack
+ */
+public final class LevelPackTool {
+
+    private static final String USAGE = "Usage: LevelPackTool compile pack source... | "
+            + "LevelPackTool generate pack [levels] [cells] [seed] | LevelPackTool info pack";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        Path pack = Paths.get(args[1]);
+        switch (args[0]) {
+            case "compile":
+                List<LevelPack.Level> levels = new ArrayList<>();
+                for (int i = 2; i < args.length; i++) {
+                    try (BufferedReader in = Files.newBufferedReader(Paths.get(args[i]), StandardCharsets.UTF_8)) {
+                        levels.addAll(LevelPack.parse(in));
+                    } catch (IOException e) {
+                        throw new IOException(args[i] + ": " + e.getMessage(), e);
+                    }
+                }
+                write(pack, levels);
+                System.out.printf("Wrote %d levels to %s (%d bytes)%n", levels.size(), pack, Files.size(pack));
+                break;
+            case "generate":
+                int count = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+                int cells = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+                long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+                write(pack, generate(count, cells, seed));
+                System.out.printf("Wrote %d generated levels to %s (%d bytes)%n", count, pack, Files.size(pack));
+                break;
+            case "info":
+                info(pack);
+                break;
+            default:
+                System.err.println(USAGE);
+                System.exit(2);
+        }
+    }
+
+    private static void write(Path pack, List<LevelPack.Level> levels) throws IOException {
+        ByteBuffer data = LevelPack.encode(levels);
+        try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    private static List<LevelPack.Level> generate(int count, int cells, long seed) {
+        LevelPack story = LevelPack.builtIn();
+        MazeGenerator generator = new MazeGenerator(seed, MazeGenerator.Algorithm.BACKTRACKER);
+        List<LevelPack.Level> levels = new ArrayList<>(count);
+        for (int n = 1; n <= count; n++) {
+            LevelPack.Level text = story.level((n - 1) % story.size() + 1);
+            MazeGenerator.Level layout = generator.generate(n, text.theme, cells, cells,
+                    Math.max(2, cells * cells / 64));
+            MazeGrid grid = layout.grid;
+            byte[] terrain = new byte[grid.rows() * grid.cols()];
+            grid.copyTerrain(terrain);
+            int[] spawns = new int[layout.spawns.length / 3 * 4];
+            for (int i = 0, j = 0; i < layout.spawns.length; i += 3, j += 4) {
+                spawns[j] = layout.spawns[i];
+                spawns[j + 1] = layout.spawns[i + 1];
+                spawns[j + 2] = 2;
+                spawns[j + 3] = layout.spawns[i + 2];
+            }
+            int decorations = (int) ((long) text.decorations * terrain.length / (text.rows * text.cols));
+            levels.add(new LevelPack.Level(text.name + " " + n, text.theme, grid.rows(), grid.cols(), terrain,
+                    layout.startX, layout.startY, layout.sageX, layout.sageY, decorations, spawns,
+                    text.item, text.objective, text.intro, text.sageGreeting, text.sageObjective, text.sageHint));
+        }
+        return levels;
+    }
+
+    private static void info(Path path) throws IOException {
+        long start = System.nanoTime();
+        LevelPack pack = LevelPack.open(path);
+        long opened = System.nanoTime();
+        long coldNanos = 0;
+        long slowest = 0;
+        for (int n = 1; n <= pack.size(); n++) {
+            long before = System.nanoTime();
+            LevelPack.Level level = pack.level(n);
+            long nanos = System.nanoTime() - before;
+            coldNanos += nanos;
+            slowest = Math.max(slowest, nanos);
+            System.out.printf("%4d  %-32s theme %d  %4dx%-4d %3d monsters%n",
+                    n, level.name, level.theme, level.rows, level.cols, level.monsterCount());
+        }
+        long before = System.nanoTime();
+        pack.level(pack.size());
+        long cached = System.nanoTime() - before;
+        System.out.printf("%s: %d levels, %d bytes%n", path, pack.size(), Files.size(path));
+        System.out.printf("Open %.3f ms; first load avg %.1f us, max %.1f us; cached load %.1f us%n",
+                (opened - start) / 1e6, coldNanos / 1e3 / pack.size(), slowest / 1e3, cached / 1e3);
+    }
+}
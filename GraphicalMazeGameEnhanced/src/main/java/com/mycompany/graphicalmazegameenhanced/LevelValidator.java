@@ -0,0 +1,506 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Checks that levels can be won and finds their shortest solution.
+ *
+ * A level is solved in two phases, as the rules play it: from the start to an
+ * objective tile, with the exit sealed, then on to the exit. One breadth-first
+ * search runs out from the start with exit tiles as walls, a second runs back from
+ * the exit, and the objective with the smallest sum of the two distances gives the
+ * shortest solution. Walls, water, springs and sages block; decorations do not, and the
+ * random ones added on load only cover plain floor, so they never change the answer.
+ * Flood water and pits are crossed, as they always clear again.
+ *
+ * Danger is estimated from a third search spread out from every monster spawn at
+ * once: a solution cell is contested when a monster walking straight at it, at the
+ * player's speed, could be there no later than the player. Patrollers only count
+ * along their route to the objective. Pursuers are then played against the
+ * solution with MonsterAi's pursuit rule; a level where one chases the player from
+ * the first move and catches them is HUNTED, which fails validation like an
+ * unsolvable level. Random wandering is not simulated; LevelBalanceRunner plays the
+ * levels for that.
+ *
+ * All searches share int queues and distance arrays that grow to the largest level
+ * seen and are reused, so validating a level allocates nothing but its solution.
+ *
+ * Usage: LevelValidator [pack] | LevelValidator generate [levels=10000] [cells=15] [seed=1] [backtracker|prim|wilson]
+ */
+public final class LevelValidator {
+
+    enum Verdict { SOLVABLE, BAD_START, NO_OBJECTIVE, NO_EXIT, OBJECTIVE_UNREACHABLE, EXIT_UNREACHABLE, HUNTED }
+
+    static final int UNREACHABLE = -1;
+
+    private static final String USAGE = "Usage: LevelValidator [pack] | "
+            + "LevelValidator generate [levels] [cells] [seed] [backtracker|prim|wilson]";
+    private static final char[] MOVES = {'U', 'R', 'D', 'L'};
+
+    private int[] queue = new int[0];
+    private int[] fromStart = new int[0];
+    private int[] toExit = new int[0];
+    private int[] fromMonsters = new int[0];
+    private int[] path = new int[0];
+    private int[] hunters = new int[0];
+    private int[] patrols = new int[0];
+    // Whether each pursuer was in range of the start, so chasing from the first move.
+    private boolean[] chasing = new boolean[0];
+    private FlowField field = new FlowField(0);
+    private MazeGrid grid;
+    private int pathLength;
+    private int objectiveSteps;
+    private int badSpawns;
+    private int nearestMonster;
+    private int contested;
+    private int caughtAt;
+    private boolean caughtFromStart;
+
+    /**
+     * Validates one level.
+     *
+     * @param spawns monster spawns as (x, y, ..., mode) records of spawnStride ints each
+     */
+    Verdict check(MazeGrid grid, byte objectiveTile, int startX, int startY, int[] spawns, int spawnStride) {
+        this.grid = grid;
+        int cells = grid.rows() * grid.cols();
+        if (queue.length < cells) {
+            queue = new int[cells];
+            fromStart = new int[cells];
+            toExit = new int[cells];
+            fromMonsters = new int[cells];
+            path = new int[cells * 2];
+            field = new FlowField(cells);
+        }
+        if (hunters.length < spawns.length / spawnStride) {
+            hunters = new int[spawns.length / spawnStride];
+            patrols = new int[spawns.length / spawnStride];
+            chasing = new boolean[spawns.length / spawnStride];
+        }
+        pathLength = 0;
+        objectiveSteps = UNREACHABLE;
+        nearestMonster = UNREACHABLE;
+        contested = 0;
+        caughtAt = UNREACHABLE;
+        caughtFromStart = false;
+        badSpawns = 0;
+
+        int monsters = 0;
+        int hunterCount = 0;
+        int patrolCount = 0;
+        for (int i = 0; i < spawns.length; i += spawnStride) {
+            int x = spawns[i];
+            int y = spawns[i + 1];
+            if (!grid.isWalkable(x, y) || (x == startX && y == startY)) {
+                badSpawns++;
+                continue;
+            }
+            int cell = grid.index(x, y);
+            int mode = spawns[i + spawnStride - 1];
+            if (mode == MonsterAi.PATROL) {
+                patrols[patrolCount++] = cell;
+            } else {
+                queue[monsters++] = cell;
+                if (mode == MonsterAi.PURSUE) {
+                    hunters[hunterCount++] = cell;
+                }
+            }
+        }
+        search(monsters, MazeGrid.WALL, fromMonsters);
+        if (patrolCount > 0) {
+            patrol(patrolCount, objectiveTile);
+        }
+
+        if (!grid.isWalkable(startX, startY)) {
+            return Verdict.BAD_START;
+        }
+        int exits = 0;
+        for (int i = 0; i < cells; i++) {
+            if (grid.get(i) == MazeGrid.EXIT) {
+                queue[exits++] = i;
+            }
+        }
+        search(exits, MazeGrid.WALL, toExit);
+        queue[0] = grid.index(startX, startY);
+        // Until the objective is held the exit refuses the player, so it is a wall.
+        search(1, MazeGrid.EXIT, fromStart);
+
+        int best = -1;
+        boolean anyObjective = false;
+        boolean anyReached = false;
+        for (int i = 0; i < cells; i++) {
+            if (grid.get(i) != objectiveTile) {
+                continue;
+            }
+            anyObjective = true;
+            if (fromStart[i] == UNREACHABLE) {
+                continue;
+            }
+            anyReached = true;
+            if (toExit[i] != UNREACHABLE && (best < 0 || fromStart[i] + toExit[i] < fromStart[best] + toExit[best])) {
+                best = i;
+            }
+        }
+        if (!anyObjective) {
+            return Verdict.NO_OBJECTIVE;
+        }
+        if (exits == 0) {
+            return Verdict.NO_EXIT;
+        }
+        if (!anyReached) {
+            return Verdict.OBJECTIVE_UNREACHABLE;
+        }
+        if (best < 0) {
+            return Verdict.EXIT_UNREACHABLE;
+        }
+
+        objectiveSteps = fromStart[best];
+        pathLength = objectiveSteps + toExit[best];
+        // Walk back from the objective to the start, then down the exit distances.
+        for (int cell = best, step = objectiveSteps; step >= 0; step--) {
+            path[step] = cell;
+            cell = neighbour(cell, fromStart, step - 1);
+        }
+        for (int cell = best, step = objectiveSteps; step < pathLength; step++) {
+            cell = neighbour(cell, toExit, toExit[cell] - 1);
+            path[step + 1] = cell;
+        }
+        for (int step = 0; step <= pathLength; step++) {
+            int monster = fromMonsters[path[step]];
+            if (monster != UNREACHABLE) {
+                nearestMonster = nearestMonster == UNREACHABLE ? monster : Math.min(nearestMonster, monster);
+                if (monster <= step) {
+                    contested++;
+                }
+            }
+        }
+        if (hunterCount > 0) {
+            caughtAt = pursue(hunterCount);
+        }
+        return caughtFromStart ? Verdict.HUNTED : Verdict.SOLVABLE;
+    }
+
+    /** Shortest number of moves from the start to the exit, objective included. */
+    int solutionLength() {
+        return pathLength;
+    }
+
+    /** Moves of the shortest solution spent reaching the objective. */
+    int objectiveSteps() {
+        return objectiveSteps;
+    }
+
+    /** The shortest solution as run-length moves, e.g. "R2 D3 L1". */
+    String solution() {
+        StringBuilder moves = new StringBuilder();
+        int cols = grid.cols();
+        for (int step = 0; step < pathLength; ) {
+            int move = direction(path[step + 1] - path[step], cols);
+            int run = 0;
+            while (step < pathLength && direction(path[step + 1] - path[step], cols) == move) {
+                step++;
+                run++;
+            }
+            if (moves.length() > 0) {
+                moves.append(' ');
+            }
+            moves.append(MOVES[move]).append(run);
+        }
+        return moves.toString();
+    }
+
+    /** Steps from the nearest monster spawn to the solution, or UNREACHABLE when none can get to it. */
+    int nearestMonster() {
+        return nearestMonster;
+    }
+
+    /** Solution cells, start included, that some monster could reach no later than the player. */
+    int contestedCells() {
+        return contested;
+    }
+
+    /** Contested share of the solution, 0 to 1. */
+    double danger() {
+        return (double) contested / (pathLength + 1);
+    }
+
+    /**
+     * The move of the shortest solution on which a pursuer catches the player, or
+     * UNREACHABLE when the player gets through; see {@link #pursue}.
+     */
+    int caughtAt() {
+        return caughtAt;
+    }
+
+    /** Spawns inside walls or on the start; they are left out of the danger estimate. */
+    int badSpawns() {
+        return badSpawns;
+    }
+
+    /**
+     * Lowers the monster distances along each patrol: a patroller only ever walks its
+     * route to the first objective tile and back, arriving at the player's speed.
+     */
+    private void patrol(int patrolCount, byte objectiveTile) {
+        int post = -1;
+        for (int i = 0; i < grid.rows() * grid.cols() && post < 0; i++) {
+            if (grid.get(i) == objectiveTile) {
+                post = i;
+            }
+        }
+        if (post < 0) {
+            return;
+        }
+        field.compute(grid, post);
+        for (int p = 0; p < patrolCount; p++) {
+            for (int cell = patrols[p], step = 0; cell >= 0; cell = downhill(cell), step++) {
+                if (fromMonsters[cell] == UNREACHABLE || fromMonsters[cell] > step) {
+                    fromMonsters[cell] = step;
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the shortest solution against the pursuers, one monster step per move as
+     * LevelBalanceRunner plays, and returns the move on which one of them catches the
+     * player, or UNREACHABLE. A pursuer holds its spawn until the player comes within
+     * MonsterAi.PURSUIT_RANGE steps, since its wandering is random, then steps down
+     * the same capped field MonsterAi chases with. Other monsters are left out.
+     * Notes whether the catching pursuer was already in range at the start.
+     */
+    private int pursue(int hunterCount) {
+        field.compute(grid, path[0], MonsterAi.PURSUIT_RANGE);
+        for (int h = 0; h < hunterCount; h++) {
+            chasing[h] = field.distance(hunters[h]) <= MonsterAi.PURSUIT_RANGE;
+        }
+        int cols = grid.cols();
+        for (int step = 0; step <= pathLength; step++) {
+            int player = path[step];
+            // The capped field is only needed while some pursuer could be in range.
+            boolean near = false;
+            for (int h = 0; h < hunterCount && !near; h++) {
+                near = Math.abs(hunters[h] / cols - player / cols) + Math.abs(hunters[h] % cols - player % cols)
+                        <= MonsterAi.PURSUIT_RANGE;
+            }
+            if (near) {
+                field.compute(grid, player, MonsterAi.PURSUIT_RANGE);
+            }
+            for (int h = 0; h < hunterCount; h++) {
+                int next = !near || hunters[h] == player || field.distance(hunters[h]) > MonsterAi.PURSUIT_RANGE
+                        ? -1 : downhill(hunters[h]);
+                if (next >= 0) {
+                    hunters[h] = next;
+                }
+                if (hunters[h] == player) {
+                    caughtFromStart = chasing[h];
+                    return step;
+                }
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /** The walkable neighbour closest to the field's target, first in MonsterAi's order; -1 at the target or when stuck. */
+    private int downhill(int cell) {
+        int cols = grid.cols();
+        int x = cell / cols;
+        int y = cell - x * cols;
+        int best = field.distance(cell);
+        int next = -1;
+        if (grid.isWalkable(x - 1, y) && field.distance(cell - cols) < best) {
+            best = field.distance(cell - cols);
+            next = cell - cols;
+        }
+        if (grid.isWalkable(x, y + 1) && field.distance(cell + 1) < best) {
+            best = field.distance(cell + 1);
+            next = cell + 1;
+        }
+        if (grid.isWalkable(x + 1, y) && field.distance(cell + cols) < best) {
+            best = field.distance(cell + cols);
+            next = cell + cols;
+        }
+        if (grid.isWalkable(x, y - 1) && field.distance(cell - 1) < best) {
+            next = cell - 1;
+        }
+        return next;
+    }
+
+    /**
+     * Breadth-first distances from the first sourceCount cells of the queue. Blocking
+     * terrain and the barrier tile are not entered; unreached cells get UNREACHABLE.
+     */
+    private void search(int sourceCount, byte barrier, int[] distance) {
+        int rows = grid.rows();
+        int cols = grid.cols();
+        Arrays.fill(distance, 0, rows * cols, UNREACHABLE);
+        for (int i = 0; i < sourceCount; i++) {
+            distance[queue[i]] = 0;
+        }
+        int head = 0;
+        int tail = sourceCount;
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = distance[cell] + 1;
+            int x = cell / cols;
+            int y = cell - x * cols;
+            if (x > 0 && visit(cell - cols, barrier, distance, next)) queue[tail++] = cell - cols;
+            if (x < rows - 1 && visit(cell + cols, barrier, distance, next)) queue[tail++] = cell + cols;
+            if (y > 0 && visit(cell - 1, barrier, distance, next)) queue[tail++] = cell - 1;
+            if (y < cols - 1 && visit(cell + 1, barrier, distance, next)) queue[tail++] = cell + 1;
+        }
+    }
+
+    private boolean visit(int cell, byte barrier, int[] distance, int next) {
+        if (distance[cell] != UNREACHABLE || !grid.isPassable(cell) || grid.get(cell) == barrier) {
+            return false;
+        }
+        distance[cell] = next;
+        return true;
+    }
+
+    /** A neighbour of cell at the wanted distance; the searches guarantee one exists. */
+    private int neighbour(int cell, int[] distance, int wanted) {
+        int rows = grid.rows();
+        int cols = grid.cols();
+        int x = cell / cols;
+        int y = cell - x * cols;
+        if (x > 0 && distance[cell - cols] == wanted) return cell - cols;
+        if (y < cols - 1 && distance[cell + 1] == wanted) return cell + 1;
+        if (x < rows - 1 && distance[cell + cols] == wanted) return cell + cols;
+        if (y > 0 && distance[cell - 1] == wanted) return cell - 1;
+        return cell;
+    }
+
+    /** Facing of a one-cell step: 0 up, 1 right, 2 down, 3 left. */
+    private static int direction(int delta, int cols) {
+        return delta == -cols ? 0 : delta == 1 ? 1 : delta == cols ? 2 : 3;
+    }
+
+    private static String describe(Verdict verdict) {
+        switch (verdict) {
+            case BAD_START: return "the start is outside the maze or inside a wall";
+            case NO_OBJECTIVE: return "there is no objective tile";
+            case NO_EXIT: return "there is no exit";
+            case OBJECTIVE_UNREACHABLE: return "no objective can be reached from the start";
+            case EXIT_UNREACHABLE: return "the exit cannot be reached from any reachable objective";
+            case HUNTED: return "a pursuer within " + MonsterAi.PURSUIT_RANGE
+                    + " steps of the start chases the player from the first move and catches them";
+            default: return "solvable";
+        }
+    }
+
+    private static boolean validatePack(LevelPack pack, String name) {
+        LevelValidator validator = new LevelValidator();
+        int failures = 0;
+        System.out.printf("%s: %d levels%n", name, pack.size());
+        for (int n = 1; n <= pack.size(); n++) {
+            LevelPack.Level level = pack.level(n);
+            MazeGrid grid = MazeGrid.fromTerrain(level.rows, level.cols, level.terrain);
+            Verdict verdict = validator.check(grid, MazeGrid.objectiveTile(level.theme), level.startX, level.startY,
+                    level.spawns, 4);
+            System.out.printf("%4d  %-32s ", n, level.name);
+            if (verdict == Verdict.HUNTED) {
+                failures++;
+                System.out.println("UNWINNABLE: " + describe(verdict) + " on move " + validator.caughtAt());
+                continue;
+            }
+            if (verdict != Verdict.SOLVABLE) {
+                failures++;
+                System.out.println("UNSOLVABLE: " + describe(verdict));
+                continue;
+            }
+            System.out.printf("%d moves (%d to the objective), nearest monster %s, %d/%d cells contested (danger %.0f%%)%n",
+                    validator.solutionLength(), validator.objectiveSteps(),
+                    validator.nearestMonster() == UNREACHABLE ? "none" : validator.nearestMonster() + " steps",
+                    validator.contestedCells(), validator.solutionLength() + 1, 100 * validator.danger());
+            System.out.println("      " + validator.solution());
+            if (validator.caughtAt() != UNREACHABLE) {
+                System.out.println("      warning: a pursuer catches a player walking this solution on move " + validator.caughtAt());
+            }
+            if (validator.badSpawns() > 0) {
+                System.out.println("      warning: " + validator.badSpawns() + " monster spawns in a wall or on the start");
+            }
+        }
+        System.out.printf("%d of %d levels winnable%n", pack.size() - failures, pack.size());
+        return failures == 0;
+    }
+
+    private static boolean validateGenerated(int count, int cells, long seed, MazeGenerator.Algorithm algorithm) {
+        MazeGenerator generator = new MazeGenerator(seed, algorithm);
+        LevelValidator validator = new LevelValidator();
+        int monsters = Math.max(2, cells * cells / 64);
+        long generateNanos = 0;
+        long validateNanos = 0;
+        long totalLength = 0;
+        long longest = 0;
+        double totalDanger = 0;
+        double worstDanger = 0;
+        int caught = 0;
+        int failures = 0;
+        for (int n = 1; n <= count; n++) {
+            int theme = (n - 1) % 3 + 1;
+            long start = System.nanoTime();
+            MazeGenerator.Level level;
+            try {
+                level = generator.generate(n, theme, cells, cells, monsters);
+            } catch (IllegalStateException e) {
+                failures++;
+                System.out.println("Level " + n + ": " + e.getMessage());
+                continue;
+            }
+            long generated = System.nanoTime();
+            Verdict verdict = validator.check(level.grid, MazeGrid.objectiveTile(theme), level.startX, level.startY,
+                    level.spawns, 3);
+            validateNanos += System.nanoTime() - generated;
+            generateNanos += generated - start;
+            if (verdict != Verdict.SOLVABLE) {
+                failures++;
+                System.out.println("Level " + n + ": " + describe(verdict));
+                continue;
+            }
+            totalLength += validator.solutionLength();
+            longest = Math.max(longest, validator.solutionLength());
+            totalDanger += validator.danger();
+            worstDanger = Math.max(worstDanger, validator.danger());
+            if (validator.caughtAt() != UNREACHABLE) {
+                caught++;
+            }
+        }
+        int solved = count - failures;
+        System.out.printf("%d %s levels of %dx%d cells, seed %d: %d solvable%n",
+                count, algorithm.name().toLowerCase(), cells, cells, seed, solved);
+        System.out.printf("Generate %.1f us/level; validate %.1f us/level (%.0f levels/s)%n",
+                generateNanos / 1e3 / count, validateNanos / 1e3 / count, count / (validateNanos / 1e9));
+        if (solved > 0) {
+            System.out.printf("Solution mean %.1f moves, longest %d; danger mean %.0f%%, worst %.0f%%%n",
+                    (double) totalLength / solved, longest, 100 * totalDanger / solved, 100 * worstDanger);
+            System.out.printf("A pursuer catches a player walking the solution in %d levels%n", caught);
+        }
+        return failures == 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        boolean ok;
+        if (args.length > 0 && args[0].equals("generate")) {
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+            int cells = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+            MazeGenerator.Algorithm algorithm = args.length > 4
+                    ? MazeGenerator.Algorithm.valueOf(args[4].toUpperCase()) : MazeGenerator.Algorithm.BACKTRACKER;
+            ok = validateGenerated(count, cells, seed, algorithm);
+        } else if (args.length > 1) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        } else {
+            ok = args.length == 0
+                    ? validatePack(LevelPack.builtIn(), "Built-in levels")
+                    : validatePack(LevelPack.open(Paths.get(args[0])), args[0]);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,357 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Seeded procedural maze generator.
+ *
+ * Carves a perfect maze (every cell reachable by exactly one path) on the usual
+ * odd-coordinate lattice: cells sit at odd tiles and the walls between them at
+ * even tiles. Three carving algorithms are available; they differ only in texture.
+ * Levels get the player start, an objective, an exit, a sage and monster spawns,
+ * and are checked for solvability before being returned. The same seed, level and
+ * size always produce the same maze. With a hazard density, hazard tiles are
+ * scattered last, so the maze and its spawns are the same as without them; springs
+ * take the place of walls, so they cannot cut a path.
+ */
+final class MazeGenerator {
+
+    enum Algorithm { BACKTRACKER, PRIM, WILSON }
+
+    private static final int MIN_SPAWN_DISTANCE = 6;
+    private static final int MIN_HAZARD_DISTANCE = 2;
+    private static final byte[] HAZARDS = {MazeGrid.CRACKED, MazeGrid.TRAP, MazeGrid.GLOWSTONE, MazeGrid.SPRING};
+    private static final int[] SPAWN_MODES = {MonsterAi.WANDER, MonsterAi.PATROL, MonsterAi.PURSUE};
+
+    /** A generated level: terrain plus entity placements. */
+    static final class Level {
+        final MazeGrid grid;
+        final int startX;
+        final int startY;
+        final int sageX;
+        final int sageY;
+        /** Monster spawns as consecutive (x, y, mode) triples. */
+        final int[] spawns;
+
+        Level(MazeGrid grid, int startX, int startY, int sageX, int sageY, int[] spawns) {
+            this.grid = grid;
+            this.startX = startX;
+            this.startY = startY;
+            this.sageX = sageX;
+            this.sageY = sageY;
+            this.spawns = spawns;
+        }
+    }
+
+    private final long seed;
+    private final Algorithm algorithm;
+    private final int hazards;
+
+    MazeGenerator(long seed, Algorithm algorithm) {
+        this(seed, algorithm, 0);
+    }
+
+    /** @param hazards hazard tiles per 100 maze cells; 0 for none */
+    MazeGenerator(long seed, Algorithm algorithm, int hazards) {
+        this.seed = seed;
+        this.algorithm = algorithm;
+        this.hazards = Math.max(0, hazards);
+    }
+
+    Algorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Generates a level of cellRows x cellCols cells ((2n + 1) tiles per side) in the
+     * theme of the given level number: objective tile, water walls on level 2.
+     */
+    Level generate(int level, int cellRows, int cellCols, int monsterCount) {
+        return generate(level, level, cellRows, cellCols, monsterCount);
+    }
+
+    /** As above, in the given theme (1-3); the level number only seeds the maze. */
+    Level generate(int level, int theme, int cellRows, int cellCols, int monsterCount) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + level);
+        int rows = cellRows * 2 + 1;
+        int cols = cellCols * 2 + 1;
+        MazeGrid grid = new MazeGrid(rows, cols);
+        byte wall = theme == 2 ? MazeGrid.WATER : MazeGrid.WALL;
+        fill(grid, 0, 0, rows, cols, wall);
+        carve(grid, 0, 0, cellRows, cellCols, algorithm, random);
+
+        int startX = 1;
+        int startY = 1;
+        int cells = rows * cols;
+        FlowField fromStart = new FlowField(cells);
+        fromStart.compute(grid, grid.index(startX, startY));
+        int objective = farthestCell(grid, fromStart, null, -1);
+        FlowField fromObjective = new FlowField(cells);
+        fromObjective.compute(grid, objective);
+        int exit = farthestCell(grid, fromStart, fromObjective, objective);
+
+        grid.set(objective / cols, objective % cols, MazeGrid.objectiveTile(theme));
+        grid.set(exit / cols, exit % cols, MazeGrid.EXIT);
+
+        // The sage blocks its cell, so it goes in a dead end where it cannot cut any path.
+        int sage = pickDeadEnd(grid, fromStart, random, grid.index(startX, startY), objective, exit);
+        if (sage >= 0) {
+            grid.set(sage / cols, sage % cols, MazeGrid.SAGE);
+        }
+
+        FlowField check = new FlowField(cells);
+        check.compute(grid, grid.index(startX, startY));
+        if (check.distance(objective) == FlowField.UNREACHABLE || check.distance(exit) == FlowField.UNREACHABLE) {
+            throw new IllegalStateException("Generated level " + level + " is not solvable (seed " + seed + ")");
+        }
+
+        int[] spawns = new int[monsterCount * 3];
+        int placed = 0;
+        for (int attempt = 0; placed < monsterCount && attempt < monsterCount * 50; attempt++) {
+            int x = random.nextInt(cellRows) * 2 + 1;
+            int y = random.nextInt(cellCols) * 2 + 1;
+            int cell = grid.index(x, y);
+            if (grid.get(cell) != MazeGrid.FLOOR || check.distance(cell) < MIN_SPAWN_DISTANCE || isSpawn(spawns, placed, x, y)) {
+                continue;
+            }
+            spawns[placed * 3] = x;
+            spawns[placed * 3 + 1] = y;
+            spawns[placed * 3 + 2] = SPAWN_MODES[placed % SPAWN_MODES.length];
+            placed++;
+        }
+        if (placed < monsterCount) {
+            spawns = Arrays.copyOf(spawns, placed * 3);
+        }
+        placeHazards(grid, check, spawns, placed, hazards * cellRows * cellCols / 100, random);
+        return new Level(grid, startX, startY, sage < 0 ? -1 : sage / cols, sage < 0 ? -1 : sage % cols, spawns);
+    }
+
+    /**
+     * Puts up to count hazards on plain floor away from the start and off the monster
+     * spawns; springs replace a wall next to the floor instead, so no path changes.
+     */
+    private static void placeHazards(MazeGrid grid, FlowField fromStart, int[] spawns, int spawnCount, int count, RandomGenerator random) {
+        int placed = 0;
+        for (int attempt = 0; placed < count && attempt < count * 20; attempt++) {
+            byte hazard = HAZARDS[random.nextInt(HAZARDS.length)];
+            int x = random.nextInt(grid.rows());
+            int y = random.nextInt(grid.cols());
+            int cell = grid.index(x, y);
+            byte tile = grid.get(cell);
+            boolean fits = hazard == MazeGrid.SPRING
+                    ? (tile == MazeGrid.WALL || tile == MazeGrid.WATER) && openSides(grid, x, y) > 0
+                    : tile == MazeGrid.FLOOR && fromStart.distance(cell) >= MIN_HAZARD_DISTANCE && !isSpawn(spawns, spawnCount, x, y);
+            if (fits) {
+                grid.set(x, y, hazard);
+                placed++;
+            }
+        }
+    }
+
+    private static boolean isSpawn(int[] spawns, int count, int x, int y) {
+        for (int i = 0; i < count; i++) {
+            if (spawns[i * 3] == x && spawns[i * 3 + 1] == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Cell tile (odd coordinates) maximising distance from start, plus distance from the second field if given. */
+    private static int farthestCell(MazeGrid grid, FlowField first, FlowField second, int exclude) {
+        int best = -1;
+        long bestScore = -1;
+        for (int x = 1; x < grid.rows(); x += 2) {
+            for (int y = 1; y < grid.cols(); y += 2) {
+                int cell = grid.index(x, y);
+                if (cell == exclude || first.distance(cell) == FlowField.UNREACHABLE || first.distance(cell) == 0) {
+                    continue;
+                }
+                long score = first.distance(cell) + (second == null ? 0L : second.distance(cell));
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = cell;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int pickDeadEnd(MazeGrid grid, FlowField fromStart, RandomGenerator random, int... excluded) {
+        int chosen = -1;
+        int seen = 0;
+        for (int x = 1; x < grid.rows(); x += 2) {
+            for (int y = 1; y < grid.cols(); y += 2) {
+                int cell = grid.index(x, y);
+                if (grid.get(cell) != MazeGrid.FLOOR || fromStart.distance(cell) < 2 || openSides(grid, x, y) != 1) {
+                    continue;
+                }
+                boolean skip = false;
+                for (int e : excluded) {
+                    skip |= e == cell;
+                }
+                // Reservoir sampling keeps the choice uniform without collecting candidates.
+                if (!skip && random.nextInt(++seen) == 0) {
+                    chosen = cell;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private static int openSides(MazeGrid grid, int x, int y) {
+        int open = 0;
+        if (grid.isWalkable(x - 1, y)) open++;
+        if (grid.isWalkable(x + 1, y)) open++;
+        if (grid.isWalkable(x, y - 1)) open++;
+        if (grid.isWalkable(x, y + 1)) open++;
+        return open;
+    }
+
+    static void fill(MazeGrid grid, int x0, int y0, int rows, int cols, byte tile) {
+        for (int x = x0; x < x0 + rows; x++) {
+            for (int y = y0; y < y0 + cols; y++) {
+                grid.set(x, y, tile);
+            }
+        }
+    }
+
+    /**
+     * Carves a perfect maze of cellRows x cellCols cells into grid, with cell (i, j)
+     * at tile (x0 + 2i + 1, y0 + 2j + 1). The area must already be solid wall.
+     */
+    static void carve(MazeGrid grid, int x0, int y0, int cellRows, int cellCols, Algorithm algorithm, RandomGenerator random) {
+        Carver carver = new Carver(grid, x0, y0, cellRows, cellCols);
+        switch (algorithm) {
+            case PRIM: carver.prim(random); break;
+            case WILSON: carver.wilson(random); break;
+            default: carver.backtracker(random); break;
+        }
+    }
+
+    /** Cell-lattice helpers shared by the carving algorithms; cells are row-major ids. */
+    private static final class Carver {
+        private final MazeGrid grid;
+        private final int x0;
+        private final int y0;
+        private final int rows;
+        private final int cols;
+        private final boolean[] inMaze;
+        private final int[] neighbours = new int[4];
+
+        Carver(MazeGrid grid, int x0, int y0, int rows, int cols) {
+            this.grid = grid;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.rows = rows;
+            this.cols = cols;
+            this.inMaze = new boolean[rows * cols];
+        }
+
+        private void add(int cell) {
+            inMaze[cell] = true;
+            grid.set(x0 + (cell / cols) * 2 + 1, y0 + (cell % cols) * 2 + 1, MazeGrid.FLOOR);
+        }
+
+        /** Opens the wall tile between two adjacent cells. */
+        private void connect(int a, int b) {
+            int ax = (a / cols) * 2 + 1;
+            int ay = (a % cols) * 2 + 1;
+            int bx = (b / cols) * 2 + 1;
+            int by = (b % cols) * 2 + 1;
+            grid.set(x0 + (ax + bx) / 2, y0 + (ay + by) / 2, MazeGrid.FLOOR);
+        }
+
+        /** Fills the scratch array with neighbours whose in-maze flag equals wanted; returns the count. */
+        private int neighbours(int cell, boolean wanted) {
+            int r = cell / cols;
+            int c = cell % cols;
+            int n = 0;
+            if (r > 0 && inMaze[cell - cols] == wanted) neighbours[n++] = cell - cols;
+            if (r < rows - 1 && inMaze[cell + cols] == wanted) neighbours[n++] = cell + cols;
+            if (c > 0 && inMaze[cell - 1] == wanted) neighbours[n++] = cell - 1;
+            if (c < cols - 1 && inMaze[cell + 1] == wanted) neighbours[n++] = cell + 1;
+            return n;
+        }
+
+        void backtracker(RandomGenerator random) {
+            int[] stack = new int[rows * cols];
+            int top = 0;
+            int start = random.nextInt(rows * cols);
+            add(start);
+            stack[top++] = start;
+            while (top > 0) {
+                int cell = stack[top - 1];
+                int n = neighbours(cell, false);
+                if (n == 0) {
+                    top--;
+                    continue;
+                }
+                int next = neighbours[random.nextInt(n)];
+                connect(cell, next);
+                add(next);
+                stack[top++] = next;
+            }
+        }
+
+        void prim(RandomGenerator random) {
+            int[] frontier = new int[rows * cols];
+            boolean[] inFrontier = new boolean[rows * cols];
+            int size = 0;
+            int start = random.nextInt(rows * cols);
+            add(start);
+            int n = neighbours(start, false);
+            for (int i = 0; i < n; i++) {
+                frontier[size++] = neighbours[i];
+                inFrontier[neighbours[i]] = true;
+            }
+            while (size > 0) {
+                int pick = random.nextInt(size);
+                int cell = frontier[pick];
+                frontier[pick] = frontier[--size];
+                int linked = neighbours(cell, true);
+                connect(cell, neighbours[random.nextInt(linked)]);
+                add(cell);
+                n = neighbours(cell, false);
+                for (int i = 0; i < n; i++) {
+                    if (!inFrontier[neighbours[i]]) {
+                        inFrontier[neighbours[i]] = true;
+                        frontier[size++] = neighbours[i];
+                    }
+                }
+            }
+        }
+
+        void wilson(RandomGenerator random) {
+            int total = rows * cols;
+            int[] next = new int[total];
+            add(random.nextInt(total));
+            for (int origin = 0; origin < total; origin++) {
+                if (inMaze[origin]) {
+                    continue;
+                }
+                // Random walk until the maze is hit; overwriting next[] erases loops.
+                int cell = origin;
+                while (!inMaze[cell]) {
+                    int r = cell / cols;
+                    int c = cell % cols;
+                    int n = 0;
+                    if (r > 0) neighbours[n++] = cell - cols;
+                    if (r < rows - 1) neighbours[n++] = cell + cols;
+                    if (c > 0) neighbours[n++] = cell - 1;
+                    if (c < cols - 1) neighbours[n++] = cell + 1;
+                    next[cell] = neighbours[random.nextInt(n)];
+                    cell = next[cell];
+                }
+                cell = origin;
+                while (!inMaze[cell]) {
+                    add(cell);
+                    connect(cell, next[cell]);
+                    cell = next[cell];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Packed maze grid with separate terrain and occupancy layers.
+ *
+ * Terrain is one byte per cell in a flat row-major array; walkability, goals and
+ * entity occupancy are mirrored into long bitmasks so the hot checks in movement
+ * and rendering are single bit tests. Entities never overwrite terrain, so a
+ * monster walking over a decoration or an objective leaves it intact. Any size is
+ * supported; a 1000x1000 maze costs about 1.4 MB.
+ */
+final class MazeGrid {
+
+    static final byte FLOOR = 0;
+    static final byte WALL = 1;
+    static final byte WATER = 2;
+    static final byte DECORATION = 3;
+    static final byte CRYSTAL = 4;
+    static final byte ALTAR = 5;
+    static final byte SPIRE = 6;
+    static final byte EXIT = 7;
+    static final byte SAGE = 8;
+    // Hazards, driven by TerrainHazards.
+    /** Blocking water source that floods the floor around it in tides. */
+    static final byte SPRING = 9;
+    /** Flood water from a spring; blocks movement until it recedes. */
+    static final byte FLOOD = 10;
+    /** Floor that collapses into a pit a while after a player steps on it. */
+    static final byte CRACKED = 11;
+    /** A collapsed floor; blocks movement until the rubble settles back into cracked floor. */
+    static final byte PIT = 12;
+    /** Stuns the player who steps on it, then re-arms. */
+    static final byte TRAP = 13;
+    /** Pulses light that reveals the paths around it under fog of war. */
+    static final byte GLOWSTONE = 14;
+    static final int TILE_COUNT = 15;
+
+    private static final char[] TILE_CHARS = {'.', '#', 'W', 'T', 'A', 'S', 'C', 'E', 'G', '~', 'w', 'x', 'O', '^', '*'};
+    // Per-tile flags for the bulk builder, indexed by tile code.
+    private static final long[] BLOCKED_FLAG = {0, 1, 1, 0, 0, 0, 0, 0, 1, 1, 1, 0, 1, 0, 0};
+    private static final long[] GOAL_FLAG = {0, 0, 0, 0, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+
+    private final int rows;
+    private final int cols;
+    private final byte[] terrain;
+    private final long[] blocked;
+    private final long[] goal;
+    private final long[] occupied;
+    private long version;
+    private long changes;
+
+    MazeGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int cells = rows * cols;
+        terrain = new byte[cells];
+        blocked = new long[(cells + 63) >>> 6];
+        goal = new long[(cells + 63) >>> 6];
+        occupied = new long[(cells + 63) >>> 6];
+    }
+
+    /** Builds a grid from row-major tile codes in one pass over the bitmasks. */
+    static MazeGrid fromTerrain(int rows, int cols, byte[] tiles) {
+        MazeGrid grid = new MazeGrid(rows, cols);
+        System.arraycopy(tiles, 0, grid.terrain, 0, grid.terrain.length);
+        for (int word = 0; word < grid.blocked.length; word++) {
+            long blockedBits = 0;
+            long goalBits = 0;
+            int end = Math.min(tiles.length, (word + 1) << 6);
+            for (int i = word << 6; i < end; i++) {
+                byte tile = tiles[i];
+                blockedBits |= BLOCKED_FLAG[tile] << i;
+                goalBits |= GOAL_FLAG[tile] << i;
+            }
+            grid.blocked[word] = blockedBits;
+            grid.goal[word] = goalBits;
+        }
+        return grid;
+    }
+
+    static byte fromChar(char c) {
+        switch (c) {
+            case '#': return WALL;
+            case 'W': return WATER;
+            case 'T': return DECORATION;
+            case 'A': return CRYSTAL;
+            case 'S': return ALTAR;
+            case 'C': return SPIRE;
+            case 'E': return EXIT;
+            case 'G': return SAGE;
+            case '~': return SPRING;
+            case 'w': return FLOOD;
+            case 'x': return CRACKED;
+            case 'O': return PIT;
+            case '^': return TRAP;
+            case '*': return GLOWSTONE;
+            default: return FLOOR;
+        }
+    }
+
+    static char toChar(byte tile) {
+        return TILE_CHARS[tile];
+    }
+
+    /** True for tiles nothing can stand on: walls, water, springs, floods, pits and the sage. */
+    static boolean isBlocking(byte tile) {
+        return BLOCKED_FLAG[tile] != 0;
+    }
+
+    /** Blocking tiles that a hazard timer turns walkable again: flood water and pits. */
+    static boolean isTransient(byte tile) {
+        return tile == FLOOD || tile == PIT;
+    }
+
+    static boolean isValidTile(byte tile) {
+        return tile >= 0 && tile < TILE_COUNT;
+    }
+
+    /** The objective tile of a level theme: 1 Crystal, 2 Altar, 3 Spire. */
+    static byte objectiveTile(int theme) {
+        return theme == 1 ? CRYSTAL : theme == 2 ? ALTAR : SPIRE;
+    }
+
+    static boolean isObjective(byte tile) {
+        return tile == CRYSTAL || tile == ALTAR || tile == SPIRE;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int cols() {
+        return cols;
+    }
+
+    /**
+     * Bumped whenever walkability changes; lets path caches detect stale data. Transient
+     * tiles do not count, so a flood coming and going does not throw away every path:
+     * caches route through them ({@link #isPassable}) and movement checks {@link #isWalkable}.
+     */
+    long version() {
+        return version;
+    }
+
+    int index(int x, int y) {
+        return x * cols + y;
+    }
+
+    boolean inBounds(int x, int y) {
+        return x >= 0 && x < rows && y >= 0 && y < cols;
+    }
+
+    byte get(int x, int y) {
+        return terrain[x * cols + y];
+    }
+
+    byte get(int index) {
+        return terrain[index];
+    }
+
+    void set(int x, int y, byte tile) {
+        int i = x * cols + y;
+        byte previous = terrain[i];
+        terrain[i] = tile;
+        changes++;
+        boolean isBlocked = isBlocking(tile);
+        boolean wasPassable = !testBit(blocked, i) || isTransient(previous);
+        if (wasPassable != (!isBlocked || isTransient(tile))) {
+            version++;
+        }
+        setBit(blocked, i, isBlocked);
+        setBit(goal, i, isObjective(tile) || tile == EXIT);
+    }
+
+    /** Bumped on every terrain write; lets observers skip diffing an unchanged grid. */
+    long changes() {
+        return changes;
+    }
+
+    /** Copies the terrain layer, row-major, into target. */
+    void copyTerrain(byte[] target) {
+        System.arraycopy(terrain, 0, target, 0, terrain.length);
+    }
+
+    /** Copies the rows x cols window whose top-left tile is (x0, y0), row-major, into target. */
+    void copyTerrain(int x0, int y0, int rows, int cols, byte[] target) {
+        for (int x = 0; x < rows; x++) {
+            System.arraycopy(terrain, (x0 + x) * this.cols + y0, target, x * cols, cols);
+        }
+    }
+
+    /** True when (x, y) is inside the grid and its terrain can be walked on. */
+    boolean isWalkable(int x, int y) {
+        return x >= 0 && x < rows && y >= 0 && y < cols && !testBit(blocked, x * cols + y);
+    }
+
+    boolean isWalkable(int index) {
+        return !testBit(blocked, index);
+    }
+
+    /** True when the cell is walkable or only blocked by a transient hazard; what path caches search through. */
+    boolean isPassable(int index) {
+        return !testBit(blocked, index) || isTransient(terrain[index]);
+    }
+
+    boolean isGoal(int x, int y) {
+        return testBit(goal, x * cols + y);
+    }
+
+    boolean isOccupied(int x, int y) {
+        return testBit(occupied, x * cols + y);
+    }
+
+    boolean isOccupied(int index) {
+        return testBit(occupied, index);
+    }
+
+    void setOccupied(int x, int y, boolean value) {
+        setBit(occupied, x * cols + y, value);
+    }
+
+    void clearOccupancy() {
+        Arrays.fill(occupied, 0L);
+    }
+
+    private static boolean testBit(long[] words, int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] words, int i, boolean value) {
+        if (value) {
+            words[i >>> 6] |= 1L << i;
+        } else {
+            words[i >>> 6] &= ~(1L << i);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event spanning one paintComponent pass of the game panel on the EDT. */
+@Name("com.mycompany.maze.MazePaint")
+@Label("Maze Paint")
+@Category("Maze")
+@Description("One repaint of the maze panel")
+final class MazePaintEvent extends jdk.jfr.Event {
+
+    @Label("Repaint Area")
+    @Description("Pixels inside the clip rectangle")
+    int dirtyPixels;
+
+    @Label("Cells Painted")
+    int cellsPainted;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,331 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Paints a {@link FrameSnapshot} with tiles from a {@link TileAtlas}.
+ *
+ * Independent of any component, so the game panel and offscreen targets (benchmarks,
+ * screenshots) share one code path. Only cells touching the clip are drawn. Under
+ * fog of war, cells never seen are left black and skipped; remembered cells show
+ * their terrain dimmed, without monsters or effects.
+ *
+ * Terrain goes first, then sprites, then sparks, so a sprite sliding in from a
+ * neighbouring cell stays on top of that cell's ground. Glow halos, walk-cycle poses
+ * and sparks all come from the atlas; nothing here draws a shape per sprite.
+ *
+ * Cells are laid out snapshot.cellSize pixels apart (the zoom level). Drawing happens in the
+ * atlas design space scaled to that size, and the atlas is rasterized at the
+ * resulting device resolution, so every tile is still a 1:1 blit on HiDPI screens.
+ *
+ * Tiles are antialiased once, when the atlas is rasterized, so painting them needs no
+ * antialiasing at all; the {@link Quality} tier decides what is still smoothed per frame.
+ *
+ * A lazy renderer (one built with an onAtlasReady callback) never rasterizes a theme's
+ * first atlas on the painting thread: that is left to the {@link Assets} thread, and
+ * meanwhile cells are painted as flat placeholder colours. A new zoom or screen scale
+ * for a theme already shown is still rasterized in place, as the swap would flicker.
+ */
+final class MazeRenderer {
+
+    /**
+     * Per-frame smoothing. FAST paints everything with antialiasing off and
+     * nearest-neighbour blits. BALANCED keeps terrain that way but smooths sprites
+     * and sparks, which land between device pixels while they slide or when zoomed.
+     * HIGH antialiases every primitive, as the game always did.
+     */
+    enum Quality { FAST, BALANCED, HIGH }
+
+    /** How far glow halos reach into neighbouring cells, in design units. */
+    static final int GLOW_BLEED = 20;
+    private static final int SIZE = TileAtlas.SIZE;
+    // Screen step per facing (up, right, down, left).
+    private static final int[] DIRECTION_DX = {0, 1, 0, -1};
+    private static final int[] DIRECTION_DY = {-1, 0, 1, 0};
+    // Exit light at each step of the glow alpha from 0 to 1, so painting it allocates nothing.
+    private static final Color[] EXIT_LIGHT = new Color[32];
+    static {
+        for (int i = 0; i < EXIT_LIGHT.length; i++) {
+            EXIT_LIGHT[i] = new Color(255, 255, 0, i * 255 / (EXIT_LIGHT.length - 1));
+        }
+    }
+
+    private final Color pathStoneGray = new Color(169, 169, 169);
+    private final Color pathStoneBrown = new Color(139, 69, 19);
+    private final Color rememberedShade = new Color(0, 0, 0, 150);
+    // Placeholders while an atlas loads: ground per theme, then one colour per tile code.
+    private static final Color[] PLACEHOLDER_GROUND = {Color.BLACK, new Color(144, 238, 144), new Color(50, 150, 50), new Color(0, 50, 100)};
+    private static final Color[] PLACEHOLDER_TILE = {null, new Color(110, 110, 150), new Color(0, 150, 220), new Color(0, 110, 0),
+            Color.YELLOW, Color.WHITE, new Color(255, 200, 0), new Color(255, 215, 0), new Color(200, 0, 200),
+            new Color(20, 80, 180), new Color(30, 100, 210), new Color(120, 100, 80), Color.BLACK, Color.GRAY, new Color(255, 240, 150)};
+    private static final Color PLACEHOLDER_PLAYER = new Color(255, 220, 200);
+
+    private final Runnable onAtlasReady;
+    // Atlases by theme; written by the asset thread for lazy renderers.
+    private final AtomicReferenceArray<TileAtlas> atlases = new AtomicReferenceArray<>(4);
+    private final Set<Integer> loading = new HashSet<>();
+    private volatile GraphicsConfiguration lastConfig;
+    private volatile int lastPixels;
+    private volatile int prefetchTheme;
+    private boolean placeholder;
+    private Quality quality = Quality.BALANCED;
+
+    private static Color exitLight(float glow) {
+        int step = Math.round(glow * (EXIT_LIGHT.length - 1));
+        return EXIT_LIGHT[Math.max(0, Math.min(EXIT_LIGHT.length - 1, step))];
+    }
+
+    /** How far glow halos reach into neighbouring cells at the given zoom, in pixels. */
+    static int glowBleed(int cellSize) {
+        return (GLOW_BLEED * cellSize + SIZE - 1) / SIZE;
+    }
+
+    /** A renderer that rasterizes atlases where it paints, as offscreen targets want. */
+    MazeRenderer() {
+        this(null);
+    }
+
+    /** @param onAtlasReady called on the asset thread when a background atlas is done; null to load in place */
+    MazeRenderer(Runnable onAtlasReady) {
+        this.onAtlasReady = onAtlasReady;
+    }
+
+    /** True when the last paint used placeholders because its atlas was still loading. */
+    boolean isPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * Lazy renderers: rasterizes the atlas of a theme on the asset thread, at the scale
+     * of the last paint, so a level change finds it ready. Before the first paint the
+     * scale is unknown, so the request waits for it.
+     */
+    void prefetch(int theme) {
+        if (onAtlasReady == null) {
+            return;
+        }
+        if (lastPixels > 0) {
+            load(theme, lastConfig, lastPixels);
+        } else {
+            prefetchTheme = theme;
+        }
+    }
+
+    Quality quality() {
+        return quality;
+    }
+
+    void setQuality(Quality quality) {
+        this.quality = quality;
+    }
+
+    /**
+     * Paints the cells of the snapshot that touch clip (everything when clip is null)
+     * and returns how many cells were drawn; unseen cells do not count. Window cell
+     * (0, 0) is drawn at the origin of g2d, and clip is in the same pixel space.
+     */
+    int paint(Graphics2D g2d, FrameSnapshot snapshot, Rectangle clip, GraphicsConfiguration config) {
+        smooth(g2d, quality == Quality.HIGH);
+        int level = snapshot.theme;
+        int cellSize = snapshot.cellSize;
+        float glow = snapshot.glowAlpha;
+
+        // Only cells touching the dirty region are painted; the bleed covers glow halos drawn by neighbours.
+        int firstRow = 0, lastRow = snapshot.rows - 1, firstCol = 0, lastCol = snapshot.cols - 1;
+        if (clip != null) {
+            int bleed = glowBleed(cellSize);
+            firstRow = Math.max(0, Math.floorDiv(clip.y - bleed, cellSize));
+            lastRow = Math.min(snapshot.rows - 1, Math.floorDiv(clip.y + clip.height + bleed, cellSize));
+            firstCol = Math.max(0, Math.floorDiv(clip.x - bleed, cellSize));
+            lastCol = Math.min(snapshot.cols - 1, Math.floorDiv(clip.x + clip.width + bleed, cellSize));
+        }
+        if (snapshot.sight != null) {
+            // One fill covers every unseen cell, so the loop can skip them outright.
+            g2d.setColor(Color.BLACK);
+            if (clip != null) {
+                g2d.fill(clip);
+            } else {
+                g2d.fillRect(0, 0, snapshot.cols * cellSize, snapshot.rows * cellSize);
+            }
+        }
+
+        AffineTransform pixelSpace = g2d.getTransform();
+        g2d.scale(cellSize / (double) SIZE, cellSize / (double) SIZE);
+        TileAtlas tiles = atlas(level, config, (int) Math.round(SIZE * g2d.getTransform().getScaleX()));
+        placeholder = tiles == null;
+        if (tiles == null) {
+            int painted = paintPlaceholder(g2d, snapshot, firstRow, lastRow, firstCol, lastCol);
+            g2d.setTransform(pixelSpace);
+            return painted;
+        }
+        BufferedImage halo = tiles.halo(TileAtlas.glowStep(glow));
+        int painted = 0;
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                byte sight = snapshot.sight(i, j);
+                if (sight == FrameSnapshot.UNSEEN) {
+                    continue;
+                }
+                painted++;
+                boolean visible = sight == FrameSnapshot.VISIBLE;
+                int x = j * SIZE;
+                int y = i * SIZE;
+                // Patterns follow maze coordinates so they scroll with the view.
+                int mazeParity = snapshot.originX + i + snapshot.originY + j;
+
+                blit(g2d, tiles.ground(), x, y);
+
+                byte tile = snapshot.terrain(i, j);
+                if (tile == MazeGrid.WALL || tile == MazeGrid.WATER) {
+                    boolean isBuilding = level == 1 && mazeParity % 2 == 0;
+                    blit(g2d, tiles.wall(tile == MazeGrid.WATER ? false : isBuilding), x, y);
+                } else if (tile == MazeGrid.DECORATION) {
+                    blit(g2d, tiles.decoration(), x, y);
+                } else if (MazeGrid.isObjective(tile)) {
+                    if (visible && snapshot.isGlowing(i, j)) {
+                        g2d.drawImage(halo, x - GLOW_BLEED, y - GLOW_BLEED, TileAtlas.HALO_SIZE, TileAtlas.HALO_SIZE, null);
+                    }
+                    blit(g2d, tiles.objective(tile), x, y);
+                } else if (tile == MazeGrid.EXIT) {
+                    blit(g2d, tiles.exitFrame(), x, y);
+                    if (visible) {
+                        g2d.setColor(exitLight(glow));
+                        g2d.fillOval(x + 20, y + 30, 5, 5);
+                    }
+                } else if (tile == MazeGrid.SAGE) {
+                    blit(g2d, tiles.sage(), x, y);
+                } else if (tile >= MazeGrid.SPRING) {
+                    if (tile == MazeGrid.GLOWSTONE && visible) {
+                        // A steady, faint halo: glowstones are everywhere, so they do not animate.
+                        g2d.drawImage(tiles.halo(0), x - GLOW_BLEED, y - GLOW_BLEED, TileAtlas.HALO_SIZE, TileAtlas.HALO_SIZE, null);
+                    }
+                    blit(g2d, tiles.hazard(tile), x, y);
+                }
+
+                if (tile == MazeGrid.FLOOR || tile == MazeGrid.DECORATION) {
+                    if (mazeParity % 3 == 0) {
+                        g2d.setColor(level == 1 ? pathStoneGray : pathStoneBrown);
+                        g2d.fillRect(x + 10, y + 20, SIZE - 20, 10);
+                    }
+                }
+
+                if (!visible) {
+                    g2d.setColor(rememberedShade);
+                    g2d.fillRect(x, y, SIZE, SIZE);
+                }
+            }
+        }
+        if (quality == Quality.BALANCED) {
+            smooth(g2d, true);
+        }
+        // A sliding sprite reaches one cell back, so sprites just outside the dirty range are drawn too.
+        for (int i = Math.max(0, firstRow - 1); i <= Math.min(snapshot.rows - 1, lastRow + 1); i++) {
+            for (int j = Math.max(0, firstCol - 1); j <= Math.min(snapshot.cols - 1, lastCol + 1); j++) {
+                byte sprite = snapshot.sprite(i, j);
+                if (sprite == FrameSnapshot.NONE) {
+                    continue;
+                }
+                int facing = snapshot.facing(i, j);
+                int trail = snapshot.slide(i, j) * SIZE / SpriteMotion.SLIDE_STEPS;
+                int x = j * SIZE - DIRECTION_DX[facing] * trail;
+                int y = i * SIZE - DIRECTION_DY[facing] * trail;
+                int pose = snapshot.pose(i, j);
+                blit(g2d, sprite == FrameSnapshot.PLAYER ? tiles.player(facing, pose) : tiles.monster(facing, pose), x, y);
+            }
+        }
+        if (snapshot.sparks != null) {
+            float[] sparks = snapshot.sparks;
+            for (int k = 0; k < sparks.length; k += 3) {
+                if (sparks[k] >= firstRow && sparks[k] < lastRow + 1 && sparks[k + 1] >= firstCol && sparks[k + 1] < lastCol + 1) {
+                    int x = (int) (sparks[k + 1] * SIZE) - TileAtlas.SPARK_SIZE / 2;
+                    int y = (int) (sparks[k] * SIZE) - TileAtlas.SPARK_SIZE / 2;
+                    g2d.drawImage(tiles.spark((int) sparks[k + 2]), x, y, TileAtlas.SPARK_SIZE, TileAtlas.SPARK_SIZE, null);
+                }
+            }
+        }
+        g2d.setTransform(pixelSpace);
+        return painted;
+    }
+
+    private static void smooth(Graphics2D g2d, boolean on) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                on ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                on ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    /** Draws a tile over one design-space cell; with a matching atlas this is a 1:1 device blit. */
+    private static void blit(Graphics2D g2d, Image tile, int x, int y) {
+        g2d.drawImage(tile, x, y, SIZE, SIZE, null);
+    }
+
+    /** Flat colours for terrain and sprites, for the frames before the atlas is ready. */
+    private static int paintPlaceholder(Graphics2D g2d, FrameSnapshot snapshot, int firstRow, int lastRow, int firstCol, int lastCol) {
+        int painted = 0;
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                if (snapshot.sight(i, j) == FrameSnapshot.UNSEEN) {
+                    continue;
+                }
+                painted++;
+                byte tile = snapshot.terrain(i, j);
+                g2d.setColor(tile == MazeGrid.FLOOR ? PLACEHOLDER_GROUND[snapshot.theme] : PLACEHOLDER_TILE[tile]);
+                g2d.fillRect(j * SIZE, i * SIZE, SIZE, SIZE);
+                byte sprite = snapshot.sprite(i, j);
+                if (sprite != FrameSnapshot.NONE) {
+                    g2d.setColor(sprite == FrameSnapshot.PLAYER ? PLACEHOLDER_PLAYER : Color.RED);
+                    g2d.fillRect(j * SIZE + SIZE / 4, i * SIZE + SIZE / 4, SIZE / 2, SIZE / 2);
+                }
+            }
+        }
+        return painted;
+    }
+
+    /** The atlas to paint with, or null while a lazy renderer loads the theme's first one. */
+    private TileAtlas atlas(int level, GraphicsConfiguration config, int pixels) {
+        lastConfig = config;
+        lastPixels = pixels;
+        TileAtlas tiles = atlases.get(level);
+        if (tiles == null || !tiles.matches(level, config, pixels)) {
+            if (onAtlasReady == null || tiles != null) {
+                tiles = new TileAtlas(config, level, pixels);
+                atlases.set(level, tiles);
+            } else {
+                load(level, config, pixels);
+            }
+        }
+        int wanted = prefetchTheme;
+        if (wanted != 0) {
+            prefetchTheme = 0;
+            load(wanted, config, pixels);
+        }
+        return tiles;
+    }
+
+    private void load(int level, GraphicsConfiguration config, int pixels) {
+        TileAtlas tiles = atlases.get(level);
+        if (tiles != null && tiles.matches(level, config, pixels)) {
+            return;
+        }
+        synchronized (loading) {
+            if (!loading.add(level)) {
+                return;
+            }
+        }
+        Assets.load(() -> {
+            try {
+                atlases.set(level, new TileAtlas(config, level, pixels));
+            } finally {
+                synchronized (loading) {
+                    loading.remove(level);
+                }
+            }
+            onAtlasReady.run();
+        });
+    }
+}
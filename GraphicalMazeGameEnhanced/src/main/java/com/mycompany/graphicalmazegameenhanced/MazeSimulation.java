@@ -0,0 +1,679 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Headless core of The Cursed Labyrinth.
+ *
+ * Owns the maze, its entities (the player, sages and monsters, in an {@link EntityTable})
+ * and the story progression, and advances them one tick per {@link #step(Input)}. It has no AWT or Swing dependency, so it
+ * can run under java.awt.headless=true for batch play and regression runs; the
+ * Swing frame is just one renderer reading its state. Story text is reported
+ * through a {@link Listener}; not thread-safe, drive it from a single thread.
+ *
+ * For co-op, {@link #addPlayer()} adds more players, each in its own slot, and
+ * {@link #step(Input[])} takes one input per slot. Players share the objective item
+ * and the dialogue; any player can open the exit, which brings everyone to the next
+ * level's start, and a monster catching any player ends the game for all. Monsters
+ * pursue the lead player (the lowest occupied slot), and the camera, sight and story
+ * triggers follow it too. Saves hold the lead player only.
+ *
+ * Hazard tiles (springs, cracked floors, traps, glowstones) are timed by
+ * {@link TerrainHazards}, which runs before the monsters every tick and only touches
+ * cells with something due.
+ */
+final class MazeSimulation {
+
+    static final int ROWS = 10;
+    static final int COLS = 10;
+    /** Chebyshev distance at which the objective glows and story hints fire. */
+    static final int NEAR = 2;
+
+    /** Player command applied at the start of a tick. */
+    enum Input { NONE, UP, LEFT, DOWN, RIGHT, INTERACT }
+
+    enum Status { PLAYING, WON, LOST }
+
+    /** Receives story log text as the simulation produces it. */
+    interface Listener {
+        void story(String text);
+    }
+
+    private final int ticksPerMonsterMove;
+    private final RandomGenerator random;
+    private final MonsterAi monsterAi = new MonsterAi();
+    private final TerrainHazards hazards;
+    private Listener listener = text -> { };
+    private FieldOfView fieldOfView;
+    private LevelPack levels = LevelPack.builtIn();
+    private MazeGenerator generator;
+    private int generatedCellRows;
+    private int generatedCellCols;
+
+    private int currentLevel = 1;
+    private LevelPack.Level levelData;
+    private MazeGrid grid;
+    private EntityTable entities;
+    // Entity of each player slot, or -1 for an empty slot; slot 0 is the single player.
+    private int[] players = {0};
+    private int player;
+    private int startX;
+    private int startY;
+    private int objectiveCell = -1;
+    private int exitCell = -1;
+    private boolean hasObjectiveItem = false;
+    private int sageInteractionStage = 0;
+    private String currentObjective = "Find the Sage for guidance on the curse.";
+    private long tickCount = 0;
+    private Status status = Status.PLAYING;
+
+    /**
+     * @param ticksPerMonsterMove monsters take one step every this many ticks (1 = every step)
+     * @param random source for monster moves, decorations and story flavour text
+     */
+    MazeSimulation(int ticksPerMonsterMove, RandomGenerator random) {
+        this.ticksPerMonsterMove = Math.max(1, ticksPerMonsterMove);
+        this.random = random;
+        this.hazards = new TerrainHazards(this.ticksPerMonsterMove);
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Turns fog of war on with the given sight radius, or off with 0. Sight never
+     * affects the rules or the state hash, so it can be toggled during a replay.
+     */
+    void setSightRadius(int radius) {
+        fieldOfView = radius > 0 ? new FieldOfView(radius) : null;
+        updateFieldOfView();
+    }
+
+    /** What the player can see and has seen, or null when fog of war is off. */
+    FieldOfView fieldOfView() {
+        return fieldOfView;
+    }
+
+    /**
+     * Plays the levels of the given pack from the next {@link #loadLevel(int)} on;
+     * null goes back to the built-in levels. With a generator set, the pack still
+     * supplies each level's theme and story while the generator makes the layout.
+     */
+    void useLevelPack(LevelPack pack) {
+        this.levels = pack == null ? LevelPack.builtIn() : pack;
+    }
+
+    /**
+     * Switches to procedural levels: every later {@link #loadLevel(int)} generates a
+     * cellRows x cellCols maze in that level's theme instead of using the pack's layout.
+     * Pass null to go back to the built-in levels.
+     */
+    void useGenerator(MazeGenerator generator, int cellRows, int cellCols) {
+        this.generator = generator;
+        this.generatedCellRows = cellRows;
+        this.generatedCellCols = cellCols;
+    }
+
+    /**
+     * Advances the game by one tick: applies the input, fires the hazard timers due,
+     * then moves the monsters when their cadence is due. Does nothing once the game
+     * is won or lost. A stunned player's input is ignored.
+     */
+    Status step(Input input) {
+        if (status != Status.PLAYING) {
+            return status;
+        }
+        tickCount++;
+        applyInput(player, input);
+        finishTick();
+        return status;
+    }
+
+    /**
+     * Co-op tick: applies inputs[slot] for every occupied slot (null means no input),
+     * in slot order, then moves the monsters as {@link #step(Input)} does. Inputs after
+     * one that changes the level are dropped.
+     */
+    Status step(Input[] inputs) {
+        if (status != Status.PLAYING) {
+            return status;
+        }
+        tickCount++;
+        MazeGrid level = grid;
+        for (int slot = 0; slot < inputs.length && slot < players.length; slot++) {
+            if (status != Status.PLAYING || grid != level) {
+                break;
+            }
+            if (inputs[slot] != null && players[slot] >= 0) {
+                applyInput(players[slot], inputs[slot]);
+            }
+        }
+        finishTick();
+        return status;
+    }
+
+    private void finishTick() {
+        if (status == Status.PLAYING && hazards.advance(tickCount, entities, players, fieldOfView) >= 0) {
+            lose("Tragic End: The floor gives way beneath Elara, and the labyrinth swallows her whole.\n");
+        }
+        if (status == Status.PLAYING && tickCount % ticksPerMonsterMove == 0) {
+            moveMonsters();
+            checkStoryTriggers();
+            if (isPlayerOnMonster()) {
+                loseGame();
+            }
+        }
+        updateFieldOfView();
+    }
+
+    /** Adds a co-op player at the current level's start and returns its slot. */
+    int addPlayer() {
+        int slot = 0;
+        while (slot < players.length && players[slot] >= 0) {
+            slot++;
+        }
+        if (slot == players.length) {
+            players = Arrays.copyOf(players, slot + 1);
+        }
+        players[slot] = entities.add(EntityTable.PLAYER, startX, startY, 2);
+        player = leadPlayer();
+        return slot;
+    }
+
+    /** Takes a co-op player out of the game; its slot can be reused by the next {@link #addPlayer()}. */
+    void removePlayer(int slot) {
+        if (players[slot] >= 0) {
+            entities.remove(players[slot]);
+            players[slot] = -1;
+            player = leadPlayer();
+        }
+    }
+
+    /** Number of player slots, occupied or not. */
+    int playerSlots() {
+        return players.length;
+    }
+
+    /** Entity of the player in slot, or -1 when the slot is empty. */
+    int playerEntity(int slot) {
+        return players[slot];
+    }
+
+    private int leadPlayer() {
+        for (int entity : players) {
+            if (entity >= 0) {
+                return entity;
+            }
+        }
+        return -1;
+    }
+
+    void loadLevel(int level) {
+        try {
+            LevelPack.Level data = levels.level(level);
+            currentLevel = level;
+            levelData = data;
+            hasObjectiveItem = false;
+            sageInteractionStage = 0;
+            int decorations = data.decorations;
+            if (generator != null) {
+                loadGeneratedLayout(level);
+                // Keep the decoration density of the pack's layout.
+                decorations = (int) ((long) decorations * grid.rows() * grid.cols() / (data.rows * data.cols));
+            } else {
+                loadPackedLayout(data);
+            }
+            currentObjective = data.objective;
+            story(data.intro + "\n");
+            story("Current Objective: " + currentObjective + "\n");
+            addRandomDecorations(decorations);
+            hazards.start(grid, tickCount);
+            updateFieldOfView();
+        } catch (Exception e) {
+            story("Error loading level: " + e.getMessage() + "\n");
+        }
+    }
+
+    /** Recomputes sight when fog of war is on; a no-op unless the player moved or walls changed. */
+    private void updateFieldOfView() {
+        if (fieldOfView != null && grid != null) {
+            fieldOfView.update(grid, playerX(), playerY());
+        }
+    }
+
+    private void loadPackedLayout(LevelPack.Level data) {
+        grid = MazeGrid.fromTerrain(data.rows, data.cols, data.terrain);
+        locateGoals();
+        spawnEntities(data.monsterCount());
+        for (int i = 0; i < data.spawns.length; i += 4) {
+            spawnMonster(data.spawns[i], data.spawns[i + 1], data.spawns[i + 2], data.spawns[i + 3]);
+        }
+        spawnPlayers(data.startX, data.startY, 2);
+    }
+
+    private void loadGeneratedLayout(int level) {
+        // Perfect mazes have no loops to slip past a monster, so they get fewer than the
+        // built-in levels: level + 1 per 64 cells.
+        int monsterCount = Math.max(level + 1, (level + 1) * generatedCellRows * generatedCellCols / 64);
+        MazeGenerator.Level generated = generator.generate(level, levelData.theme, generatedCellRows, generatedCellCols, monsterCount);
+        grid = generated.grid;
+        locateGoals();
+        int spawnCount = generated.spawns.length / 3;
+        spawnEntities(spawnCount);
+        for (int i = 0; i < spawnCount; i++) {
+            spawnMonster(generated.spawns[i * 3], generated.spawns[i * 3 + 1], 2, generated.spawns[i * 3 + 2]);
+        }
+        spawnPlayers(generated.startX, generated.startY, 2);
+    }
+
+    /**
+     * Starts the entity table for the current grid with a sage on every sage tile;
+     * monsters are spawned next, in their saved or level order, then the players.
+     */
+    private void spawnEntities(int monsterCount) {
+        entities = new EntityTable(grid, monsterCount + players.length + 1);
+        for (int i = 0; i < grid.rows() * grid.cols(); i++) {
+            if (grid.get(i) == MazeGrid.SAGE) {
+                entities.add(EntityTable.SAGE, i / grid.cols(), i % grid.cols(), 2);
+            }
+        }
+    }
+
+    /** Puts every occupied player slot on (x, y), which also becomes where new players join. */
+    private void spawnPlayers(int x, int y, int facing) {
+        startX = x;
+        startY = y;
+        for (int slot = 0; slot < players.length; slot++) {
+            if (players[slot] >= 0) {
+                players[slot] = entities.add(EntityTable.PLAYER, x, y, facing);
+            }
+        }
+        player = leadPlayer();
+    }
+
+    /** Adds a monster; patrollers walk between their spawn cell and the level objective. */
+    private void spawnMonster(int x, int y, int facing, int mode) {
+        int monster = entities.add(EntityTable.MONSTER, x, y, facing);
+        entities.setMode(monster, mode);
+        if (mode == MonsterAi.PATROL && objectiveCell >= 0) {
+            entities.setPatrol(monster, objectiveCell);
+        }
+    }
+
+    /** Caches the objective and exit cells for patrols and story triggers; call before spawning. */
+    private void locateGoals() {
+        objectiveCell = findTile(objectiveTile());
+        exitCell = findTile(MazeGrid.EXIT);
+    }
+
+    /** Row-major index of the first cell with the given terrain, or -1. */
+    private int findTile(byte tile) {
+        for (int i = 0; i < grid.rows() * grid.cols(); i++) {
+            if (grid.get(i) == tile) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void addRandomDecorations(int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                int rx = random.nextInt(grid.rows());
+                int ry = random.nextInt(grid.cols());
+                if (grid.get(rx, ry) == MazeGrid.FLOOR && !isPlayerAt(rx, ry) && !isMonsterAt(rx, ry)) {
+                    grid.set(rx, ry, MazeGrid.DECORATION);
+                }
+            }
+        } catch (Exception e) {
+            story("Error adding decorations: " + e.getMessage() + "\n");
+        }
+    }
+
+    private void applyInput(int mover, Input input) {
+        if (hazards.isStunned(mover, tickCount)) {
+            return;
+        }
+        int newX = entities.x(mover);
+        int newY = entities.y(mover);
+        int newFacing = entities.facing(mover);
+
+        switch (input) {
+            case UP: newX--; newFacing = 0; break;
+            case LEFT: newY--; newFacing = 3; break;
+            case DOWN: newX++; newFacing = 2; break;
+            case RIGHT: newY++; newFacing = 1; break;
+            case INTERACT: interactWithSage(mover); return;
+            default: return;
+        }
+
+        if (isValidMove(newX, newY)) {
+            byte target = grid.get(newX, newY);
+            if (target == objectiveTile()) {
+                hasObjectiveItem = true;
+                grid.set(newX, newY, MazeGrid.FLOOR);
+                story("You acquired the " + levelData.item + "! Power surges through you.\nNew Objective: Find the exit door.\n");
+                currentObjective = "Find the exit door.";
+            }
+
+            if (target == MazeGrid.EXIT) {
+                if (hasObjectiveItem) {
+                    if (currentLevel < levels.size()) {
+                        loadLevel(currentLevel + 1);
+                    } else {
+                        winGame();
+                    }
+                    return;
+                } else {
+                    story("The exit door is sealed without the required item. Find it first!\n");
+                    return;
+                }
+            }
+
+            if (entities.isHostileAt(newX, newY)) {
+                loseGame();
+                return;
+            }
+
+            entities.move(mover, newX, newY, newFacing);
+
+            if (isPlayerOnMonster()) {
+                loseGame();
+            } else {
+                int reacted = hazards.entered(mover, newX, newY, tickCount);
+                if (reacted == MazeGrid.CRACKED) {
+                    story("The floor cracks under your feet. Keep moving!\n");
+                } else if (reacted == MazeGrid.TRAP) {
+                    story("A trap snaps shut around your ankle! You are stunned.\n");
+                }
+            }
+        }
+    }
+
+    boolean isValidMove(int x, int y) {
+        return grid.isWalkable(x, y);
+    }
+
+    /** The terrain tile this level's objective is placed on. */
+    byte objectiveTile() {
+        return MazeGrid.objectiveTile(levelData.theme);
+    }
+
+    void moveMonsters() {
+        try {
+            monsterAi.step(grid, entities, playerX(), playerY(), random);
+        } catch (Exception e) {
+            story("Error moving monsters: " + e.getMessage() + "\n");
+        }
+    }
+
+    /** True when a solid entity (a monster) stands on (x, y). */
+    boolean isMonsterAt(int x, int y) {
+        return grid.isOccupied(x, y);
+    }
+
+    /** True when a monster has caught any of the players. */
+    private boolean isPlayerOnMonster() {
+        for (int entity : players) {
+            if (entity >= 0 && entities.isHostileAt(entities.x(entity), entities.y(entity))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPlayerAt(int x, int y) {
+        return player >= 0 && x == playerX() && y == playerY();
+    }
+
+    /** Talks to the first sage next to the speaker; all sages of a level share one dialogue. */
+    private void interactWithSage(int speaker) {
+        for (int i = 0; i < entities.memberCount(EntityTable.TALKS); i++) {
+            int sage = entities.member(EntityTable.TALKS, i);
+            int dx = Math.abs(entities.x(speaker) - entities.x(sage));
+            int dy = Math.abs(entities.y(speaker) - entities.y(sage));
+            if (dx <= 1 && dy <= 1 && (dx + dy > 0)) {
+                talk();
+                return;
+            }
+        }
+    }
+
+    private void talk() {
+        String message = "";
+        switch (sageInteractionStage) {
+            case 0:
+                message = levelData.sageGreeting;
+                currentObjective = levelData.sageObjective;
+                sageInteractionStage = 1;
+                break;
+            case 1:
+                message = levelData.sageHint;
+                sageInteractionStage = 2;
+                break;
+            case 2:
+                message = "Sage: 'You're close, Elara. With the item, find the exit door.'";
+                sageInteractionStage = 3;
+                break;
+            case 3:
+                message = "Sage: 'Go now, your destiny awaits.'";
+                break;
+        }
+        story(message + "\n");
+    }
+
+    private void checkStoryTriggers() {
+        if (!hasObjectiveItem && objectiveCell >= 0 && isPlayerNear(objectiveCell)) {
+            if (random.nextInt(10) == 0) {
+                story("A radiant glow pulses nearby... the objective is close.\n");
+            }
+        }
+        if (exitCell >= 0 && isPlayerNear(exitCell)) {
+            if (random.nextInt(10) == 0) {
+                story("The air hums near the exit door. Cosmic whispers urge you forward.\n");
+            }
+        }
+    }
+
+    private boolean isPlayerNear(int cell) {
+        return isNear(playerX(), playerY(), cell / grid.cols(), cell % grid.cols());
+    }
+
+    /** The proximity used by story triggers and the objective glow: within NEAR cells on both axes. */
+    static boolean isNear(int x1, int y1, int x2, int y2) {
+        return Math.abs(x1 - x2) <= NEAR && Math.abs(y1 - y2) <= NEAR;
+    }
+
+    private void winGame() {
+        status = Status.WON;
+        story("Final Epilogue: The Crystal ignites the Celestial Spire, shattering the curse. Light floods the ruins, and the stars align in harmony. Elara, now a cosmic guardian, sees visions of new realms to explore. Her legend will echo through the ages.\n");
+    }
+
+    private void loseGame() {
+        lose("Tragic End: A wraith's grasp consumes you. The curse claims another soul, and Elara fades into the cosmic void.\n");
+    }
+
+    private void lose(String epilogue) {
+        status = Status.LOST;
+        story(epilogue);
+    }
+
+    private void story(String text) {
+        listener.story(text);
+    }
+
+    /** Copies the saveable state; call on the thread that drives the simulation. */
+    SaveState snapshot() {
+        int count = entities.count(EntityTable.MONSTER);
+        int[] monsterX = new int[count];
+        int[] monsterY = new int[count];
+        int[] monsterFacing = new int[count];
+        int[] monsterMode = new int[count];
+        for (int e = 0, m = 0; e < entities.count(); e++) {
+            if (entities.kind(e) == EntityTable.MONSTER) {
+                monsterX[m] = entities.x(e);
+                monsterY[m] = entities.y(e);
+                monsterFacing[m] = entities.facing(e);
+                monsterMode[m++] = entities.mode(e);
+            }
+        }
+        byte[] terrain = new byte[grid.rows() * grid.cols()];
+        grid.copyTerrain(terrain);
+        // Sages are rebuilt from the terrain on restore; the first one is kept for older readers.
+        boolean hasSage = entities.memberCount(EntityTable.TALKS) > 0;
+        int sage = hasSage ? entities.member(EntityTable.TALKS, 0) : -1;
+        return new SaveState(currentLevel, playerX(), playerY(), playerFacing(), hasObjectiveItem, sageInteractionStage,
+                hasSage ? entities.x(sage) : -1, hasSage ? entities.y(sage) : -1, tickCount, monsterX, monsterY, monsterFacing, monsterMode,
+                grid.rows(), grid.cols(), terrain, currentObjective);
+    }
+
+    /**
+     * Replaces the game state with a saved one. The state is validated and the new
+     * grid built before anything is assigned, so a bad save leaves the game untouched.
+     * Throws IllegalArgumentException for an invalid state or a level number that is
+     * not in the current level pack, as a save from a longer pack would have.
+     */
+    void restore(SaveState state) {
+        state.validate();
+        if (state.level > levels.size()) {
+            throw new IllegalArgumentException("The save is on level " + state.level + ", but the level pack has "
+                    + levels.size() + (levels.size() == 1 ? " level" : " levels"));
+        }
+        LevelPack.Level restoredLevel = levels.level(state.level);
+        MazeGrid restoredGrid = MazeGrid.fromTerrain(state.rows, state.cols, state.terrain);
+
+        currentLevel = state.level;
+        levelData = restoredLevel;
+        grid = restoredGrid;
+        hasObjectiveItem = state.hasObjectiveItem;
+        sageInteractionStage = state.sageStage;
+        tickCount = state.tickCount;
+        currentObjective = state.objective;
+        status = Status.PLAYING;
+        locateGoals();
+        players = new int[]{0};
+        spawnEntities(state.monsterCount());
+        for (int m = 0; m < state.monsterCount(); m++) {
+            spawnMonster(state.monsterX[m], state.monsterY[m], state.monsterFacing[m], state.monsterMode[m]);
+        }
+        spawnPlayers(state.playerX, state.playerY, state.playerFacing);
+        hazards.start(grid, tickCount);
+        updateFieldOfView();
+    }
+
+    /**
+     * Hash of the full game state (terrain, player, monsters, progress), for checking
+     * that a replay ended exactly where the recorded session did.
+     */
+    long stateHash() {
+        long h = 0xCBF29CE484222325L;
+        h = mix(h, currentLevel);
+        h = mix(h, playerX());
+        h = mix(h, playerY());
+        h = mix(h, playerFacing());
+        h = mix(h, hasObjectiveItem ? 1 : 0);
+        h = mix(h, sageInteractionStage);
+        h = mix(h, tickCount);
+        h = mix(h, status.ordinal());
+        long hazardHash = hazards.hash();
+        if (hazardHash != 0) {
+            h = mix(h, hazardHash);
+        }
+        for (int i = 0; i < entities.memberCount(EntityTable.THINKS); i++) {
+            int m = entities.member(EntityTable.THINKS, i);
+            h = mix(h, entities.x(m));
+            h = mix(h, entities.y(m));
+            h = mix(h, entities.facing(m));
+            h = mix(h, entities.mode(m));
+        }
+        for (int i = 0; i < grid.rows() * grid.cols(); i++) {
+            h = mix(h, grid.get(i));
+        }
+        return h;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+
+    int level() {
+        return currentLevel;
+    }
+
+    /** The pack levels are played from. */
+    LevelPack levels() {
+        return levels;
+    }
+
+    /** Number of levels in the current pack; finishing the last one wins the game. */
+    int levelCount() {
+        return levels.size();
+    }
+
+    /** Look and objective of the current level: 1 Crystal, 2 Altar, 3 Spire. */
+    int theme() {
+        return levelData.theme;
+    }
+
+    int rows() {
+        return grid.rows();
+    }
+
+    int cols() {
+        return grid.cols();
+    }
+
+    MazeGrid grid() {
+        return grid;
+    }
+
+    /**
+     * Classic single-character view of a cell: 'P' for the player, 'M' for a monster
+     * standing on plain ground, otherwise the terrain character.
+     */
+    char cell(int x, int y) {
+        if (isPlayerAt(x, y)) {
+            return 'P';
+        }
+        byte tile = grid.get(x, y);
+        if (grid.isOccupied(x, y) && !grid.isGoal(x, y)) {
+            return 'M';
+        }
+        return MazeGrid.toChar(tile);
+    }
+
+    int playerX() {
+        return entities.x(player);
+    }
+
+    int playerY() {
+        return entities.y(player);
+    }
+
+    int playerFacing() {
+        return entities.facing(player);
+    }
+
+    /** Live entity storage; callers must not modify it. */
+    EntityTable entities() {
+        return entities;
+    }
+
+    boolean hasObjectiveItem() {
+        return hasObjectiveItem;
+    }
+
+    String objective() {
+        return currentObjective;
+    }
+
+    long tickCount() {
+        return tickCount;
+    }
+
+    Status status() {
+        return status;
+    }
+}
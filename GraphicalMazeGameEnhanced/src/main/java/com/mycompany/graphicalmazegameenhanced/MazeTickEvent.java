@@ -0,0 +1,26 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event spanning one simulation tick on the game loop thread. */
+@Name("com.mycompany.maze.MazeTick")
+@Label("Maze Tick")
+@Category("Maze")
+@Description("One fixed-timestep simulation tick")
+final class MazeTickEvent extends jdk.jfr.Event {
+
+    @Label("Tick")
+    long tick;
+
+    @Label("Level")
+    int level;
+
+    @Label("Input")
+    String input;
+
+    @Label("Monsters")
+    int monsters;
+}
@@ -0,0 +1,128 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Overview of the whole maze, one pixel per tile, drawn in the top-right corner.
+ *
+ * The image is kept up to date on the game loop thread. It is rebuilt only when the
+ * grid changes (a new level, a load, walls opening) or fog of war is toggled; under
+ * fog, cells are revealed from the ones the field of view just lit, so a step costs
+ * the sight area, not the maze. The EDT draws it scaled into a small box with the
+ * player and the camera window on top. The monitor keeps the two threads off the
+ * pixels at the same time. Nothing is drawn while the whole maze is on screen.
+ */
+final class MiniMap {
+
+    /** Largest side of the drawn map, in pixels. */
+    static final int BOX = 140;
+    private static final int MARGIN = 8;
+    private static final int BORDER = 2;
+    private static final int MAX_SCALE = 8;
+    private static final int UNSEEN = 0x000000;
+    private static final int FLOOR = 0x6b6b6b;
+    // Indexed by tile code; objectives and the hazards that come and go are drawn as floor,
+    // so picking one up or a flood receding needs no update.
+    private static final int[] COLOURS = {FLOOR, 0x2a2a2a, 0x2e5fb8, FLOOR, FLOOR, FLOOR, FLOOR, 0xd4af37, 0x9b59b6,
+            0x2e5fb8, FLOOR, FLOOR, FLOOR, FLOOR, 0xf4e07a};
+
+    private final Color frameColour = new Color(0, 0, 0, 170);
+    private BufferedImage image;
+    private int[] pixels;
+    private MazeGrid grid;
+    private long gridVersion;
+    private FieldOfView fieldOfView;
+    private int revealedX = -1;
+    private int revealedY = -1;
+    // How many of the field of view's revealed cells are drawn.
+    private int revealedCells;
+
+    /** Brings the image up to date; returns true when any pixel changed. Game loop thread. */
+    synchronized boolean update(MazeGrid grid, FieldOfView fieldOfView, int playerX, int playerY) {
+        if (grid != this.grid || grid.version() != gridVersion || fieldOfView != this.fieldOfView) {
+            rebuild(grid, fieldOfView);
+            revealedX = playerX;
+            revealedY = playerY;
+            return true;
+        }
+        if (fieldOfView == null) {
+            return false;
+        }
+        boolean changed = false;
+        // Cells lit by glowstones, wherever the player is.
+        for (; revealedCells < fieldOfView.revealedCount(); revealedCells++) {
+            int cell = fieldOfView.revealedCell(revealedCells);
+            pixels[cell] = COLOURS[grid.get(cell)];
+            changed = true;
+        }
+        if (playerX == revealedX && playerY == revealedY) {
+            return changed;
+        }
+        revealedX = playerX;
+        revealedY = playerY;
+        for (int i = 0; i < fieldOfView.visibleCount(); i++) {
+            int cell = fieldOfView.visibleCell(i);
+            pixels[cell] = COLOURS[grid.get(cell)];
+        }
+        return true;
+    }
+
+    /** Where the map goes in a panel of the given width, border included. */
+    synchronized Rectangle bounds(int panelWidth) {
+        if (grid == null) {
+            return new Rectangle();
+        }
+        double scale = scale();
+        int width = (int) Math.ceil(grid.cols() * scale) + 2 * BORDER;
+        return new Rectangle(panelWidth - MARGIN - width, MARGIN, width, (int) Math.ceil(grid.rows() * scale) + 2 * BORDER);
+    }
+
+    /** True unless the frame already shows the whole maze. */
+    synchronized boolean isShown(FrameSnapshot frame) {
+        return grid != null && (frame.rows < grid.rows() || frame.cols < grid.cols());
+    }
+
+    /** Draws the map, the camera window and the player. EDT. */
+    synchronized void draw(Graphics2D g2d, FrameSnapshot frame, int panelWidth) {
+        if (!isShown(frame)) {
+            return;
+        }
+        Rectangle box = bounds(panelWidth);
+        double scale = scale();
+        int x = box.x + BORDER;
+        int y = box.y + BORDER;
+        g2d.setColor(frameColour);
+        g2d.fill(box);
+        g2d.drawImage(image, x, y, box.width - 2 * BORDER, box.height - 2 * BORDER, null);
+        g2d.setColor(Color.WHITE);
+        g2d.drawRect(x + (int) (frame.originY * scale), y + (int) (frame.originX * scale),
+                Math.max(1, (int) (frame.cols * scale) - 1), Math.max(1, (int) (frame.rows * scale) - 1));
+        int dot = Math.max(3, (int) scale);
+        g2d.setColor(Color.YELLOW);
+        g2d.fillRect(x + (int) ((frame.playerY + 0.5) * scale) - dot / 2, y + (int) ((frame.playerX + 0.5) * scale) - dot / 2, dot, dot);
+    }
+
+    /** Pixels per tile; below one, mazes bigger than the box are sampled down by drawImage. */
+    private double scale() {
+        return Math.min(MAX_SCALE, BOX / (double) Math.max(grid.rows(), grid.cols()));
+    }
+
+    private void rebuild(MazeGrid grid, FieldOfView fieldOfView) {
+        this.grid = grid;
+        this.gridVersion = grid.version();
+        this.fieldOfView = fieldOfView;
+        revealedCells = fieldOfView == null ? 0 : fieldOfView.revealedCount();
+        if (image == null || image.getHeight() != grid.rows() || image.getWidth() != grid.cols()) {
+            image = new BufferedImage(grid.cols(), grid.rows(), BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        for (int x = 0; x < grid.rows(); x++) {
+            for (int y = 0; y < grid.cols(); y++) {
+                boolean known = fieldOfView == null || fieldOfView.isExplored(x, y);
+                pixels[grid.index(x, y)] = known ? COLOURS[grid.get(x, y)] : UNSEEN;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * The AI system: moves every THINKS entity one step per call according to its mode.
+ *
+ * - WANDER: a random direction, as the guardians always did.
+ * - PATROL: walks back and forth between its spawn cell and a post.
+ * - PURSUE: chases the player once within PURSUIT_RANGE steps, otherwise wanders.
+ *
+ * Pursuers share a single flow field toward the player, rebuilt only when the
+ * player changes cell and only out to PURSUIT_RANGE, so its cost is bounded by the
+ * range rather than the maze size. Patrol fields are cached per target and dropped when the
+ * terrain changes or a new grid (another level, a loaded game) comes in, so a tick
+ * costs O(monsters) almost every time.
+ */
+final class MonsterAi {
+
+    static final int WANDER = 0;
+    static final int PATROL = 1;
+    static final int PURSUE = 2;
+
+    static final int PURSUIT_RANGE = 5;
+    private static final int PATROL_CACHE_SIZE = 64;
+    private static final int[][] DIRECTIONS = {{-1, 0, 0}, {0, 1, 1}, {1, 0, 2}, {0, -1, 3}};
+
+    // The grid the cached fields were built for; versions restart with every new grid.
+    private MazeGrid fieldGrid;
+    private FlowField playerField;
+    private long patrolVersion = -1;
+    private final Map<Integer, FlowField> patrolFields = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, FlowField> eldest) {
+            return size() > PATROL_CACHE_SIZE;
+        }
+    };
+
+    void step(MazeGrid grid, EntityTable entities, int playerX, int playerY, RandomGenerator random) {
+        if (grid != fieldGrid) {
+            fieldGrid = grid;
+            playerField = null;
+            patrolFields.clear();
+            patrolVersion = grid.version();
+        }
+        int playerCell = grid.index(playerX, playerY);
+        int thinkers = entities.memberCount(EntityTable.THINKS);
+        boolean anyPursuer = false;
+        for (int i = 0; i < thinkers && !anyPursuer; i++) {
+            anyPursuer = entities.mode(entities.member(EntityTable.THINKS, i)) == PURSUE;
+        }
+        if (anyPursuer) {
+            if (playerField == null || !playerField.isFor(playerCell, grid.version())) {
+                if (playerField == null) {
+                    playerField = new FlowField(grid.rows() * grid.cols());
+                }
+                playerField.compute(grid, playerCell, PURSUIT_RANGE);
+            }
+        }
+        if (patrolVersion != grid.version()) {
+            patrolFields.clear();
+            patrolVersion = grid.version();
+        }
+
+        for (int i = 0; i < thinkers; i++) {
+            int m = entities.member(EntityTable.THINKS, i);
+            int cell = grid.index(entities.x(m), entities.y(m));
+            int mode = entities.mode(m);
+            if (mode == PURSUE && playerField.distance(cell) <= PURSUIT_RANGE) {
+                descend(grid, entities, m, playerField, playerCell, playerX, playerY);
+            } else if (mode == PATROL) {
+                if (cell == entities.patrolTarget(m)) {
+                    entities.turnAround(m);
+                }
+                descend(grid, entities, m, patrolField(grid, entities.patrolTarget(m)), -1, playerX, playerY);
+            } else {
+                wander(grid, entities, m, playerX, playerY, random);
+            }
+        }
+    }
+
+    private FlowField patrolField(MazeGrid grid, int target) {
+        FlowField field = patrolFields.get(target);
+        if (field == null) {
+            field = new FlowField(grid.rows() * grid.cols());
+            field.compute(grid, target);
+            patrolFields.put(target, field);
+        }
+        return field;
+    }
+
+    /** Steps to the free neighbour closest to the field's target; may enter goalCell even if it holds the player. */
+    private static void descend(MazeGrid grid, EntityTable entities, int m, FlowField field, int goalCell, int playerX, int playerY) {
+        int x = entities.x(m);
+        int y = entities.y(m);
+        int best = field.distance(grid.index(x, y));
+        int bestDir = -1;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int nx = x + DIRECTIONS[d][0];
+            int ny = y + DIRECTIONS[d][1];
+            if (!grid.isWalkable(nx, ny)) {
+                continue;
+            }
+            int next = grid.index(nx, ny);
+            boolean blocked = grid.isOccupied(next) || (next != goalCell && nx == playerX && ny == playerY);
+            if (!blocked && field.distance(next) < best) {
+                best = field.distance(next);
+                bestDir = d;
+            }
+        }
+        if (bestDir >= 0) {
+            entities.move(m, x + DIRECTIONS[bestDir][0], y + DIRECTIONS[bestDir][1], DIRECTIONS[bestDir][2]);
+        }
+    }
+
+    private static void wander(MazeGrid grid, EntityTable entities, int m, int playerX, int playerY, RandomGenerator random) {
+        int[] dir = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+        int newX = entities.x(m) + dir[0];
+        int newY = entities.y(m) + dir[1];
+        if (grid.isWalkable(newX, newY) && !grid.isOccupied(newX, newY) && !(newX == playerX && newY == playerY)) {
+            entities.move(m, newX, newY, dir[2]);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Turns the key events of one tick into at most one simulation input.
+ *
+ * Drained from an {@link InputRing} on the game loop thread once per tick. The
+ * player moves at most once every ticksPerMove ticks whatever the OS key repeat
+ * does: a fresh press is buffered (up to MAX_TAPS of them) and applied as soon as
+ * the move rate allows, so quick taps are never lost, and a held direction keeps
+ * moving at the configured rate, the most recently pressed one winning. Repeat
+ * presses of a held key add nothing, and a repeat's release and press landing in
+ * one tick cancel out. Interact is a press, not a hold, and does not use up the
+ * move. Other keys are passed on as commands on every press, repeats included.
+ *
+ * For latency measurement, the press behind the latest input is remembered until
+ * it has been taken with {@link #takePressNanos()}.
+ */
+final class MovementInput {
+
+    private static final int MAX_TAPS = 2;
+    private static final int DIRECTIONS = 4;
+    private static final MazeSimulation.Input[] INPUTS = MazeSimulation.Input.values();
+
+    private final InputRing ring;
+    private final int ticksPerMove;
+    private final IntConsumer commands;
+    // Per direction (UP, LEFT, DOWN, RIGHT in Input order): keys down, and when the latest of them went down.
+    private final int[] keysDown = new int[DIRECTIONS];
+    private final long[] pressedAt = new long[DIRECTIONS];
+    private final boolean[] held = new boolean[KeyEvent.VK_CONTEXT_MENU + 1];
+    // Releases seen this tick; applied after the drain unless the key is pressed again first.
+    private final boolean[] releasing = new boolean[held.length];
+    private final int[] releasingKeys = new int[16];
+    private int releasingCount;
+    private final MazeSimulation.Input[] taps = new MazeSimulation.Input[MAX_TAPS];
+    private final long[] tapNanos = new long[MAX_TAPS];
+    private int tapCount;
+    private boolean interact;
+    private long interactNanos;
+    private long pressSequence;
+    private long lastMoveTick = Long.MIN_VALUE / 2;
+    private long pressNanos;
+    private final InputRing.Sink sink = this::accept;
+
+    /** @param commands receives the key code of every non-movement key press */
+    MovementInput(InputRing ring, int ticksPerMove, IntConsumer commands) {
+        this.ring = ring;
+        this.ticksPerMove = Math.max(1, ticksPerMove);
+        this.commands = commands;
+    }
+
+    /** The movement or interaction a key stands for, or null for other keys. */
+    static MazeSimulation.Input inputFor(int keyCode) {
+        switch (keyCode) {
+            case KeyEvent.VK_W: case KeyEvent.VK_UP: return MazeSimulation.Input.UP;
+            case KeyEvent.VK_A: case KeyEvent.VK_LEFT: return MazeSimulation.Input.LEFT;
+            case KeyEvent.VK_S: case KeyEvent.VK_DOWN: return MazeSimulation.Input.DOWN;
+            case KeyEvent.VK_D: case KeyEvent.VK_RIGHT: return MazeSimulation.Input.RIGHT;
+            case KeyEvent.VK_SPACE: return MazeSimulation.Input.INTERACT;
+            default: return null;
+        }
+    }
+
+    /** Drains this tick's key events and returns the input to apply on the given tick. */
+    MazeSimulation.Input next(long tick) {
+        ring.drain(sink);
+        for (int i = 0; i < releasingCount; i++) {
+            int key = releasingKeys[i];
+            if (releasing[key]) {
+                releasing[key] = false;
+                held[key] = false;
+                MazeSimulation.Input input = inputFor(key);
+                if (input != null && input != MazeSimulation.Input.INTERACT) {
+                    keysDown[input.ordinal() - 1]--;
+                }
+            }
+        }
+        releasingCount = 0;
+        if (interact) {
+            interact = false;
+            pressNanos = interactNanos;
+            return MazeSimulation.Input.INTERACT;
+        }
+        if (tick - lastMoveTick < ticksPerMove) {
+            return MazeSimulation.Input.NONE;
+        }
+        if (tapCount > 0) {
+            MazeSimulation.Input tap = taps[0];
+            pressNanos = tapNanos[0];
+            tapCount--;
+            System.arraycopy(taps, 1, taps, 0, tapCount);
+            System.arraycopy(tapNanos, 1, tapNanos, 0, tapCount);
+            lastMoveTick = tick;
+            return tap;
+        }
+        int latest = -1;
+        for (int d = 0; d < DIRECTIONS; d++) {
+            if (keysDown[d] > 0 && (latest < 0 || pressedAt[d] > pressedAt[latest])) {
+                latest = d;
+            }
+        }
+        if (latest < 0) {
+            return MazeSimulation.Input.NONE;
+        }
+        lastMoveTick = tick;
+        return INPUTS[latest + 1];
+    }
+
+    /** When the press behind a recent input happened, once; 0 when there is none new. */
+    long takePressNanos() {
+        long nanos = pressNanos;
+        pressNanos = 0;
+        return nanos;
+    }
+
+    private void accept(int keyCode, boolean pressed, long timeNanos) {
+        if (keyCode == InputRing.RELEASE_ALL) {
+            Arrays.fill(held, false);
+            Arrays.fill(releasing, false);
+            Arrays.fill(keysDown, 0);
+            releasingCount = 0;
+            return;
+        }
+        MazeSimulation.Input input = inputFor(keyCode);
+        if (input == null) {
+            if (pressed) {
+                commands.accept(keyCode);
+            }
+            if (keyCode >= 0 && keyCode < held.length) {
+                held[keyCode] = pressed;
+            }
+            return;
+        }
+        if (!pressed) {
+            if (held[keyCode] && !releasing[keyCode] && releasingCount < releasingKeys.length) {
+                releasing[keyCode] = true;
+                releasingKeys[releasingCount++] = keyCode;
+            }
+            return;
+        }
+        if (held[keyCode]) {
+            // The OS repeating a key that is down, possibly as a release and press pair.
+            releasing[keyCode] = false;
+            return;
+        }
+        held[keyCode] = true;
+        if (input == MazeSimulation.Input.INTERACT) {
+            interact = true;
+            interactNanos = timeNanos;
+            return;
+        }
+        int d = input.ordinal() - 1;
+        keysDown[d]++;
+        pressedAt[d] = ++pressSequence;
+        if (tapCount < MAX_TAPS) {
+            taps[tapCount] = input;
+            tapNanos[tapCount] = timeNanos;
+            tapCount++;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.SplittableRandom;
+
+/**
+ * Pooled sparks around glowing objectives.
+ *
+ * A fixed pool of CAPACITY particles in parallel float arrays: emitting takes the
+ * next free slot and a dead particle is swapped with the last live one, so nothing
+ * is allocated while particles come and go. Positions are in maze cells. Sparks
+ * spawn near the centre of their cell and drift slowly, never leaving it, so the
+ * objective's dirty rectangle always covers them. Runs on the game loop thread with
+ * its own random, so effects never disturb the simulation's.
+ */
+final class Particles {
+
+    static final int CAPACITY = 256;
+    /** Sparks per second from each glowing cell. */
+    private static final double RATE = 40;
+    private static final float LIFETIME = 0.6f;
+    private static final float JITTER = 0.2f;
+    /** Cells per second. */
+    private static final float SPEED = 0.3f;
+
+    private final float[] x = new float[CAPACITY];
+    private final float[] y = new float[CAPACITY];
+    private final float[] vx = new float[CAPACITY];
+    private final float[] vy = new float[CAPACITY];
+    private final float[] age = new float[CAPACITY];
+    private final SplittableRandom random = new SplittableRandom();
+    private int live;
+    private double seconds;
+
+    /** Ages and moves every particle by the time since the last frame; emissions this frame use the same span. */
+    void advance(double elapsed) {
+        seconds = Math.min(elapsed, 0.25);
+        float dt = (float) seconds;
+        int i = 0;
+        while (i < live) {
+            age[i] += dt;
+            if (age[i] >= LIFETIME) {
+                live--;
+                x[i] = x[live];
+                y[i] = y[live];
+                vx[i] = vx[live];
+                vy[i] = vy[live];
+                age[i] = age[live];
+            } else {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+                i++;
+            }
+        }
+    }
+
+    /** Emits this frame's share of sparks from maze cell (cellX, cellY) while the pool has room. */
+    void emit(int cellX, int cellY) {
+        int count = (int) (RATE * seconds + random.nextDouble());
+        for (int k = 0; k < count && live < CAPACITY; k++) {
+            x[live] = cellX + 0.5f + (random.nextFloat() * 2 - 1) * JITTER;
+            y[live] = cellY + 0.5f + (random.nextFloat() * 2 - 1) * JITTER;
+            vx[live] = (random.nextFloat() * 2 - 1) * SPEED;
+            vy[live] = (random.nextFloat() * 2 - 1) * SPEED;
+            age[live] = 0;
+            live++;
+        }
+    }
+
+    /**
+     * Sparks inside the window as (row, col, step) triples in window cells, step being
+     * the brightness in atlas spark steps; null when there are none.
+     */
+    float[] window(int originX, int originY, int rows, int cols) {
+        int inside = 0;
+        for (int i = 0; i < live; i++) {
+            if (isInside(i, originX, originY, rows, cols)) {
+                inside++;
+            }
+        }
+        if (inside == 0) {
+            return null;
+        }
+        float[] sparks = new float[inside * 3];
+        int k = 0;
+        for (int i = 0; i < live; i++) {
+            if (isInside(i, originX, originY, rows, cols)) {
+                sparks[k++] = x[i] - originX;
+                sparks[k++] = y[i] - originY;
+                sparks[k++] = (int) ((1 - age[i] / LIFETIME) * TileAtlas.SPARK_STEPS * 0.999f);
+            }
+        }
+        return sparks;
+    }
+
+    int live() {
+        return live;
+    }
+
+    private boolean isInside(int i, int originX, int originY, int rows, int cols) {
+        return x[i] >= originX && x[i] < originX + rows && y[i] >= originY && y[i] < originY + cols;
+    }
+}
@@ -0,0 +1,71 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded session headlessly.
+ *
+ * Rebuilds the simulation from the journal header and feeds it the recorded inputs
+ * tick by tick. By default it runs as fast as it can (fast-forward) and repeats the
+ * replay to measure ticks per second; with a tick rate it paces itself in real time
+ * and prints the story log as it goes. Either way the final state hash is compared
+ * with the one recorded, and the process exits with status 1 on a mismatch.
+ *
+ * Usage: ReplayRunner journal [repeat] | ReplayRunner journal --realtime [ticksPerSecond]
+ */
+public final class ReplayRunner {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayRunner journal [repeat] | ReplayRunner journal --realtime [ticksPerSecond]");
+            System.exit(2);
+        }
+        InputJournal.Replay replay = InputJournal.read(Paths.get(args[0]));
+        boolean realtime = args.length > 1 && args[1].equals("--realtime");
+        int repeat = !realtime && args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int ticksPerSecond = realtime && args.length > 2 ? Integer.parseInt(args[2]) : 60;
+
+        MazeSimulation simulation = null;
+        long start = System.nanoTime();
+        for (int run = 0; run < repeat; run++) {
+            simulation = run(replay, realtime ? ticksPerSecond : 0);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long ticks = replay.finalTick() * repeat;
+        System.out.printf("Replayed %d ticks (%d inputs) x%d in %.3f s: %.0f ticks/s%n",
+                replay.finalTick(), replay.inputCount(), repeat, seconds, ticks / seconds);
+        System.out.printf("Final: %s, level %d, player (%d,%d), state hash %016x%n", simulation.status(),
+                simulation.level(), simulation.playerX(), simulation.playerY(), simulation.stateHash());
+        if (!replay.isComplete()) {
+            System.out.println("Journal has no end marker (session did not close cleanly); nothing to verify.");
+        } else if (replay.finalHash() == simulation.stateHash()) {
+            System.out.println("MATCH: replay reproduced the recorded final state.");
+        } else {
+            System.out.printf("MISMATCH: recorded hash %016x%n", replay.finalHash());
+            System.exit(1);
+        }
+    }
+
+    /** Runs one replay; ticksPerSecond 0 means fast-forward with the story log muted. */
+    static MazeSimulation run(InputJournal.Replay replay, int ticksPerSecond) {
+        replay.rewind();
+        MazeSimulation simulation = replay.header.newSimulation();
+        if (ticksPerSecond > 0) {
+            simulation.setListener(System.out::print);
+        }
+        simulation.loadLevel(1);
+        long tickNanos = ticksPerSecond > 0 ? 1_000_000_000L / ticksPerSecond : 0;
+        long next = System.nanoTime();
+        while (simulation.tickCount() < replay.finalTick() && simulation.status() == MazeSimulation.Status.PLAYING) {
+            simulation.step(replay.inputAt(simulation.tickCount() + 1));
+            if (tickNanos > 0) {
+                next += tickNanos;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+        return simulation;
+    }
+}
@@ -0,0 +1,325 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary save-game codec.
+ *
+ * Layout: a 16-byte header (magic "MAZE", format version, reserved, payload length,
+ * CRC32 of the payload) followed by the payload. Integers in the payload are zigzag
+ * varints and the maze is packed two tiles per byte, so even a 1000x1000 maze is
+ * about 500 KB. Files are written to a temporary sibling, forced to disk and renamed
+ * over the target, so a crash mid-save never leaves a torn file behind. Files that do
+ * not start with the magic are read as the old line-based text format.
+ */
+final class SaveFile {
+
+    static final int MAGIC = 0x4D415A45; // "MAZE"
+    /** Version 2: the built-in levels have hazard tiles, which version 1 readers do not know. */
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+
+    private SaveFile() {
+    }
+
+    static void write(Path path, SaveState state) throws IOException {
+        SaveLoadEvent event = new SaveLoadEvent();
+        event.begin();
+        event.operation = "save";
+        event.file = path.toString();
+        try {
+            ByteBuffer payload = encode(state);
+            event.bytes = HEADER_BYTES + payload.remaining();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                    .putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteBuffer[] buffers = {header, payload};
+                    while (payload.hasRemaining()) {
+                        channel.write(buffers);
+                    }
+                    channel.force(false);
+                }
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The slot itself is untouched; do not leave the half-written copy beside it.
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException cleanup) {
+                    e.addSuppressed(cleanup);
+                }
+                throw e;
+            }
+            event.success = true;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /** Reads a binary save, or imports a legacy text save. The result is already validated. */
+    static SaveState read(Path path) throws IOException {
+        SaveLoadEvent event = new SaveLoadEvent();
+        event.begin();
+        event.operation = "load";
+        event.file = path.toString();
+        try {
+            ByteBuffer data;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Save file is too large: " + size + " bytes");
+                }
+                data = ByteBuffer.allocate((int) size);
+                while (data.hasRemaining() && channel.read(data) >= 0) {
+                    // keep reading until the buffer is full or the file ends
+                }
+                data.flip();
+            }
+            event.bytes = data.remaining();
+            SaveState state = data.remaining() >= 4 && data.getInt(0) == MAGIC ? decode(data) : readLegacy(data);
+            try {
+                state.validate();
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Save file is corrupted: " + e.getMessage(), e);
+            }
+            event.success = true;
+            return state;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static ByteBuffer encode(SaveState state) {
+        byte[] objective = state.objective.getBytes(StandardCharsets.UTF_8);
+        int tiles = state.rows * state.cols;
+        ByteBuffer out = ByteBuffer.allocate(96 + state.monsterCount() * 20 + (tiles + 1) / 2 + objective.length);
+        putVarint(out, state.level);
+        putVarint(out, state.playerX);
+        putVarint(out, state.playerY);
+        putVarint(out, state.playerFacing);
+        putVarint(out, state.hasObjectiveItem ? 1 : 0);
+        putVarint(out, state.sageStage);
+        putVarint(out, state.sageX);
+        putVarint(out, state.sageY);
+        putVarlong(out, state.tickCount);
+        putVarint(out, state.monsterCount());
+        for (int m = 0; m < state.monsterCount(); m++) {
+            putVarint(out, state.monsterX[m]);
+            putVarint(out, state.monsterY[m]);
+            putVarint(out, state.monsterFacing[m]);
+            putVarint(out, state.monsterMode[m]);
+        }
+        putVarint(out, state.rows);
+        putVarint(out, state.cols);
+        byte[] terrain = state.terrain;
+        byte[] packed = new byte[(tiles + 1) / 2];
+        for (int i = 0; i + 1 < tiles; i += 2) {
+            packed[i >> 1] = (byte) (terrain[i] | terrain[i + 1] << 4);
+        }
+        if ((tiles & 1) != 0) {
+            packed[tiles >> 1] = terrain[tiles - 1];
+        }
+        out.put(packed);
+        putVarint(out, objective.length);
+        out.put(objective);
+        return out.flip();
+    }
+
+    private static SaveState decode(ByteBuffer data) throws IOException {
+        try {
+            data.getInt();
+            int version = data.getShort();
+            data.getShort();
+            int length = data.getInt();
+            int expectedCrc = data.getInt();
+            if (version > VERSION) {
+                throw new IOException("Save file version " + version + " is newer than supported version " + VERSION);
+            }
+            if (version < 1) {
+                throw new IOException("Save file is corrupted: invalid version " + version);
+            }
+            if (length != data.remaining()) {
+                throw new IOException("Save file is truncated: expected " + length + " payload bytes, found " + data.remaining());
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Save file is corrupted: checksum mismatch");
+            }
+
+            int level = getVarint(data);
+            int playerX = getVarint(data);
+            int playerY = getVarint(data);
+            int playerFacing = getVarint(data);
+            boolean hasObjectiveItem = getVarint(data) != 0;
+            int sageStage = getVarint(data);
+            int sageX = getVarint(data);
+            int sageY = getVarint(data);
+            long tickCount = getVarlong(data);
+            int monsterCount = checkedCount(getVarint(data), data.remaining());
+            int[] monsterX = new int[monsterCount];
+            int[] monsterY = new int[monsterCount];
+            int[] monsterFacing = new int[monsterCount];
+            int[] monsterMode = new int[monsterCount];
+            for (int m = 0; m < monsterCount; m++) {
+                monsterX[m] = getVarint(data);
+                monsterY[m] = getVarint(data);
+                monsterFacing[m] = getVarint(data);
+                monsterMode[m] = getVarint(data);
+            }
+            int rows = getVarint(data);
+            int cols = getVarint(data);
+            if (rows < 1 || cols < 1 || (long) rows * cols > 2L * data.remaining()) {
+                throw new IOException("Save file is corrupted: invalid maze size " + rows + "x" + cols);
+            }
+            int tiles = rows * cols;
+            byte[] terrain = new byte[tiles];
+            byte[] packed = new byte[(tiles + 1) / 2];
+            data.get(packed);
+            for (int i = 0; i + 1 < tiles; i += 2) {
+                int pair = packed[i >> 1];
+                terrain[i] = (byte) (pair & 0x0F);
+                terrain[i + 1] = (byte) ((pair >> 4) & 0x0F);
+            }
+            if ((tiles & 1) != 0) {
+                terrain[tiles - 1] = (byte) (packed[tiles >> 1] & 0x0F);
+            }
+            byte[] objective = new byte[checkedCount(getVarint(data), data.remaining())];
+            data.get(objective);
+            return new SaveState(level, playerX, playerY, playerFacing, hasObjectiveItem, sageStage, sageX, sageY,
+                    tickCount, monsterX, monsterY, monsterFacing, monsterMode, rows, cols, terrain,
+                    new String(objective, StandardCharsets.UTF_8));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Save file is truncated", e);
+        }
+    }
+
+    private static int checkedCount(int count, int remaining) throws IOException {
+        if (count < 0 || count > remaining) {
+            throw new IOException("Save file is corrupted: invalid count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Imports the old text format: level; "x,y,facing"; item flag; sage stage; monster
+     * count; one "x,y,facing[,mode]" line per monster; maze rows with 'P'/'M' markers;
+     * objective as the last line.
+     */
+    static SaveState readLegacy(ByteBuffer data) throws IOException {
+        String text = StandardCharsets.UTF_8.decode(data).toString();
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            int level = Integer.parseInt(reader.readLine().trim());
+            String[] playerData = reader.readLine().split(",");
+            int playerX = Integer.parseInt(playerData[0].trim());
+            int playerY = Integer.parseInt(playerData[1].trim());
+            int playerFacing = Integer.parseInt(playerData[2].trim());
+            boolean hasObjectiveItem = Boolean.parseBoolean(reader.readLine().trim());
+            int sageStage = Integer.parseInt(reader.readLine().trim());
+            int monsterCount = Integer.parseInt(reader.readLine().trim());
+            // Every monster takes a line, so a count beyond the text length is as corrupt as a negative one.
+            if (monsterCount < 0 || monsterCount > text.length()) {
+                throw new IOException("Legacy save has an invalid monster count " + monsterCount);
+            }
+            int[] monsterX = new int[monsterCount];
+            int[] monsterY = new int[monsterCount];
+            int[] monsterFacing = new int[monsterCount];
+            int[] monsterMode = new int[monsterCount];
+            for (int m = 0; m < monsterCount; m++) {
+                String[] fields = reader.readLine().split(",");
+                monsterX[m] = Integer.parseInt(fields[0].trim());
+                monsterY[m] = Integer.parseInt(fields[1].trim());
+                monsterFacing[m] = Integer.parseInt(fields[2].trim());
+                // Older saves have no fourth (AI mode) field; those monsters wander.
+                monsterMode[m] = fields.length > 3 ? Integer.parseInt(fields[3].trim()) : MonsterAi.WANDER;
+            }
+            List<String> lines = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+            if (lines.size() < 2) {
+                throw new IOException("Legacy save has no maze");
+            }
+            int rows = lines.size() - 1;
+            int cols = lines.get(0).length();
+            byte[] terrain = new byte[rows * cols];
+            int sageX = -1;
+            int sageY = -1;
+            for (int x = 0; x < rows; x++) {
+                String row = lines.get(x);
+                if (row.length() != cols) {
+                    throw new IOException("Legacy save has a ragged maze row " + x);
+                }
+                for (int y = 0; y < cols; y++) {
+                    byte tile = MazeGrid.fromChar(row.charAt(y));
+                    terrain[x * cols + y] = tile;
+                    if (tile == MazeGrid.SAGE) {
+                        sageX = x;
+                        sageY = y;
+                    }
+                }
+            }
+            return new SaveState(level, playerX, playerY, playerFacing, hasObjectiveItem, sageStage, sageX, sageY,
+                    0, monsterX, monsterY, monsterFacing, monsterMode, rows, cols, terrain, lines.get(rows));
+        } catch (NumberFormatException | NullPointerException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Legacy save is malformed", e);
+        }
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        putVarlong(out, value);
+    }
+
+    private static void putVarlong(ByteBuffer out, long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static int getVarint(ByteBuffer in) throws IOException {
+        long value = getVarlong(in);
+        if (value != (int) value) {
+            throw new IOException("Save file is corrupted: integer out of range");
+        }
+        return (int) value;
+    }
+
+    private static long getVarlong(ByteBuffer in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Save file is corrupted: varint too long");
+    }
+}
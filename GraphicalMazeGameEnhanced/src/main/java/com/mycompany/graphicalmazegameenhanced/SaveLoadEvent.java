@@ -0,0 +1,26 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JFR event spanning one save-file write or read. */
+@Name("com.mycompany.maze.SaveLoad")
+@Label("Save/Load")
+@Category("Maze")
+final class SaveLoadEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,76 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes save files on a background thread.
+ *
+ * Callers take a {@link SaveState} on the game thread and hand it over; encoding,
+ * writing and fsync happen on a single "maze-save" thread. Requests coalesce per
+ * file: while a save to a path is still queued, a newer state simply replaces it,
+ * so a burst of saves costs one write. Outcomes are reported through the listener
+ * from the save thread.
+ */
+final class SaveService {
+
+    /** Receives a short message once a save has finished or failed. */
+    interface Listener {
+        void saved(Path path, String message);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "maze-save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentHashMap<Path, SaveState> pending = new ConcurrentHashMap<>();
+    private final LatencyRecorder saveTimes = new LatencyRecorder(256);
+    private final Listener listener;
+
+    SaveService(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Queues a save; never blocks on I/O. */
+    void save(Path path, SaveState state) {
+        if (pending.put(path, state) == null) {
+            executor.execute(() -> write(path));
+        }
+    }
+
+    /** Time from picking up a queued state to the file being durable on disk. */
+    LatencyRecorder saveTimes() {
+        return saveTimes;
+    }
+
+    /** Waits for queued saves to finish; used before the process exits. */
+    void flush(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Path path) {
+        SaveState state = pending.remove(path);
+        if (state == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            SaveFile.write(path, state);
+            long nanos = System.nanoTime() - start;
+            saveTimes.record(nanos);
+            listener.saved(path, String.format("Saved to %s (%.1f ms)", path.getFileName(), nanos / 1e6));
+        } catch (IOException e) {
+            listener.saved(path, "Error saving game: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+/**
+ * Immutable copy of everything a save game holds.
+ *
+ * Taken from the simulation in one go on the thread that owns it, so it can be
+ * encoded anywhere afterwards, and validated as a whole before the simulation is
+ * touched on load. Monsters are parallel arrays; terrain is row-major MazeGrid codes
+ * with no entity markers.
+ */
+final class SaveState {
+
+    final int level;
+    final int playerX;
+    final int playerY;
+    final int playerFacing;
+    final boolean hasObjectiveItem;
+    final int sageStage;
+    final int sageX;
+    final int sageY;
+    final long tickCount;
+    final int[] monsterX;
+    final int[] monsterY;
+    final int[] monsterFacing;
+    final int[] monsterMode;
+    final int rows;
+    final int cols;
+    final byte[] terrain;
+    final String objective;
+
+    SaveState(int level, int playerX, int playerY, int playerFacing, boolean hasObjectiveItem,
+              int sageStage, int sageX, int sageY, long tickCount,
+              int[] monsterX, int[] monsterY, int[] monsterFacing, int[] monsterMode,
+              int rows, int cols, byte[] terrain, String objective) {
+        this.level = level;
+        this.playerX = playerX;
+        this.playerY = playerY;
+        this.playerFacing = playerFacing;
+        this.hasObjectiveItem = hasObjectiveItem;
+        this.sageStage = sageStage;
+        this.sageX = sageX;
+        this.sageY = sageY;
+        this.tickCount = tickCount;
+        this.monsterX = monsterX;
+        this.monsterY = monsterY;
+        this.monsterFacing = monsterFacing;
+        this.monsterMode = monsterMode;
+        this.rows = rows;
+        this.cols = cols;
+        this.terrain = terrain;
+        this.objective = objective;
+    }
+
+    int monsterCount() {
+        return monsterX.length;
+    }
+
+    /** Throws IllegalArgumentException when the state could not have come from a running game. */
+    void validate() {
+        if (level < 1) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        if (rows < 1 || cols < 1 || terrain.length != (long) rows * cols) {
+            throw new IllegalArgumentException("Invalid maze size " + rows + "x" + cols);
+        }
+        for (byte tile : terrain) {
+            if (!MazeGrid.isValidTile(tile)) {
+                throw new IllegalArgumentException("Invalid tile code " + tile);
+            }
+        }
+        checkCell("Player", playerX, playerY);
+        checkFacing(playerFacing);
+        for (int m = 0; m < monsterCount(); m++) {
+            checkCell("Monster", monsterX[m], monsterY[m]);
+            checkFacing(monsterFacing[m]);
+            if (monsterMode[m] < MonsterAi.WANDER || monsterMode[m] > MonsterAi.PURSUE) {
+                throw new IllegalArgumentException("Invalid monster mode " + monsterMode[m]);
+            }
+        }
+    }
+
+    private void checkCell(String what, int x, int y) {
+        if (x < 0 || x >= rows || y < 0 || y >= cols) {
+            throw new IllegalArgumentException(what + " position (" + x + "," + y + ") is outside the maze");
+        }
+    }
+
+    private static void checkFacing(int facing) {
+        if (facing < 0 || facing > 3) {
+            throw new IllegalArgumentException("Invalid facing " + facing);
+        }
+    }
+}
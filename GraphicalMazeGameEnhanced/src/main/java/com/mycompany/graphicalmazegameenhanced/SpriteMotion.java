@@ -0,0 +1,92 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Tracks entity steps between frames so sprites glide from cell to cell.
+ *
+ * The simulation moves entities a whole cell at a time. Each frame this compares
+ * every entity with where it stood last frame; a one-cell step starts a slide from
+ * the old cell, and the sprite is then drawn that far behind its cell (against its
+ * facing) and in walk-cycle poses until the slide ends. A slide lasts at most
+ * SLIDE_NANOS for the player and MONSTER_SLIDE_NANOS for everyone else, and never
+ * longer than the gap since the entity's previous step, so a held key or a fast
+ * monster keeps moving smoothly instead of falling behind. Anything else (a new
+ * level, a respawn) snaps. Runs on the game loop thread; state is primitive arrays
+ * indexed by entity row, and a new entity table resets it.
+ */
+final class SpriteMotion {
+
+    /** Slide distances are in 1/SLIDE_STEPS of a cell. */
+    static final int SLIDE_STEPS = 64;
+    private static final long SLIDE_NANOS = 120_000_000L;
+    private static final long MONSTER_SLIDE_NANOS = 250_000_000L;
+
+    private EntityTable table;
+    private int[] lastX = new int[0];
+    private int[] lastY = new int[0];
+    private long[] movedAt = new long[0];
+    private long[] duration = new long[0];
+    private int[] steps = new int[0];
+    private byte[] slide = new byte[0];
+    private byte[] pose = new byte[0];
+
+    /** Notes who stepped since the last frame and advances every slide to now. */
+    void update(EntityTable entities, long now) {
+        int count = entities.count();
+        int known = entities == table ? lastX.length : 0;
+        if (count > lastX.length || entities != table) {
+            int capacity = Math.max(count, lastX.length);
+            lastX = Arrays.copyOf(lastX, capacity);
+            lastY = Arrays.copyOf(lastY, capacity);
+            movedAt = Arrays.copyOf(movedAt, capacity);
+            duration = Arrays.copyOf(duration, capacity);
+            steps = Arrays.copyOf(steps, capacity);
+            slide = Arrays.copyOf(slide, capacity);
+            pose = Arrays.copyOf(pose, capacity);
+        }
+        table = entities;
+        for (int e = 0; e < count; e++) {
+            if (entities.kind(e) == EntityTable.REMOVED) {
+                continue;
+            }
+            int x = entities.x(e);
+            int y = entities.y(e);
+            if (e >= known) {
+                lastX[e] = x;
+                lastY[e] = y;
+                duration[e] = 0;
+                slide[e] = 0;
+                pose[e] = 0;
+                continue;
+            }
+            if (x != lastX[e] || y != lastY[e]) {
+                boolean adjacent = Math.abs(x - lastX[e]) + Math.abs(y - lastY[e]) == 1;
+                long limit = entities.kind(e) == EntityTable.PLAYER ? SLIDE_NANOS : MONSTER_SLIDE_NANOS;
+                duration[e] = adjacent ? Math.min(limit, now - movedAt[e]) : 0;
+                movedAt[e] = now;
+                steps[e]++;
+                lastX[e] = x;
+                lastY[e] = y;
+            }
+            double progress = duration[e] <= 0 ? 1 : (now - movedAt[e]) / (double) duration[e];
+            if (progress >= 1) {
+                slide[e] = 0;
+                pose[e] = 0;
+            } else {
+                slide[e] = (byte) Math.round((1 - progress) * SLIDE_STEPS);
+                pose[e] = (byte) (progress >= 0.5 ? 2 : (steps[e] & 1) == 0 ? 1 : 3);
+            }
+        }
+    }
+
+    /** How far behind its cell the entity is drawn, in 1/SLIDE_STEPS of a cell. */
+    int slide(int e) {
+        return e < slide.length ? slide[e] : 0;
+    }
+
+    /** Walk-cycle frame, 0 when standing. */
+    int pose(int e) {
+        return e < pose.length ? pose[e] : 0;
+    }
+}
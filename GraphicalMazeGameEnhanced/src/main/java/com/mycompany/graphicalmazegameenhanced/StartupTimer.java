@@ -0,0 +1,56 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Milestones of a cold start, reported in milliseconds since the JVM was launched.
+ *
+ * Marking is a clock read and a compare-and-set, so it can sit on the startup path
+ * of any thread; only the first mark of each milestone counts. The JVM start time
+ * comes from the management API, whose classes are loaded only when the report is
+ * built, after the first frame.
+ */
+final class StartupTimer {
+
+    enum Milestone {
+        /** The window painted for the first time, before any level existed. */
+        WINDOW("window"),
+        /** The first level was loaded. */
+        LEVEL("level loaded"),
+        /** The first maze frame was painted, possibly with placeholder tiles. */
+        FIRST_FRAME("first frame"),
+        /** The first frame with the real tiles was painted. */
+        TILES("tiles");
+
+        final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+    }
+
+    private final AtomicLongArray marks = new AtomicLongArray(Milestone.values().length);
+
+    /** Records the milestone unless it was reached before; returns whether this was the first time. */
+    boolean mark(Milestone milestone) {
+        return marks.compareAndSet(milestone.ordinal(), 0, System.currentTimeMillis());
+    }
+
+    boolean isReached(Milestone milestone) {
+        return marks.get(milestone.ordinal()) != 0;
+    }
+
+    /** E.g. "Startup: window 310 ms, level loaded 352 ms, first frame 371 ms, tiles 498 ms after JVM launch". */
+    String report() {
+        long launched = ManagementFactory.getRuntimeMXBean().getStartTime();
+        StringBuilder text = new StringBuilder("Startup:");
+        for (Milestone milestone : Milestone.values()) {
+            long mark = marks.get(milestone.ordinal());
+            if (mark != 0) {
+                text.append(text.length() > 8 ? ", " : " ").append(milestone.label).append(' ').append(mark - launched).append(" ms");
+            }
+        }
+        return text.append(" after JVM launch").toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded story log model for a JList.
+ *
+ * Lines live in a fixed ring buffer, so the oldest fall off once the cap is reached
+ * and memory stays flat however long the game runs. Text can be appended from any
+ * thread: it is queued, and a single EDT task moves everything queued so far into
+ * the ring and fires one list event for the whole batch. Long lines are wrapped
+ * when they arrive, so the view can use a fixed cell height and only paint the rows
+ * that are visible.
+ */
+final class StoryLog extends AbstractListModel<String> {
+
+    private final String[] lines;
+    private final int wrapColumns;
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable afterFlush;
+    private int head;
+    private int size;
+
+    /**
+     * @param capacity most lines kept
+     * @param wrapColumns lines longer than this are word-wrapped
+     * @param afterFlush runs on the EDT after each batch, e.g. to scroll to the end
+     */
+    StoryLog(int capacity, int wrapColumns, Runnable afterFlush) {
+        this.lines = new String[Math.max(1, capacity)];
+        this.wrapColumns = wrapColumns;
+        this.afterFlush = afterFlush;
+    }
+
+    /** Queues text (one or more '\n'-terminated lines); safe from any thread. */
+    void append(String text) {
+        pending.offer(text);
+        if (flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        int oldSize = size;
+        int added = 0;
+        String text;
+        while ((text = pending.poll()) != null) {
+            int start = 0;
+            while (start < text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                added += addWrapped(text, start, end);
+                start = end + 1;
+            }
+        }
+        if (added == 0) {
+            return;
+        }
+        if (oldSize + added <= lines.length) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        } else {
+            fireContentsChanged(this, 0, size - 1);
+        }
+        afterFlush.run();
+    }
+
+    private int addWrapped(String text, int start, int end) {
+        int count = 0;
+        do {
+            int cut = end;
+            if (end - start > wrapColumns) {
+                cut = text.lastIndexOf(' ', start + wrapColumns);
+                if (cut <= start) {
+                    cut = start + wrapColumns;
+                }
+            }
+            add(text.substring(start, cut));
+            count++;
+            start = cut < end && text.charAt(cut) == ' ' ? cut + 1 : cut;
+        } while (start < end);
+        return count;
+    }
+
+    private void add(String line) {
+        if (size < lines.length) {
+            lines[(head + size++) % lines.length] = line;
+        } else {
+            lines[head] = line;
+            head = (head + 1) % lines.length;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return lines[(head + index) % lines.length];
+    }
+}
@@ -0,0 +1,356 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+/**
+ * Timed terrain: springs that flood the floor around them in tides, cracked floors
+ * that collapse after a player steps on them, traps that stun, and glowstones that
+ * light up the paths around them.
+ *
+ * Hazards are event driven. Every pending change is a timer in a hashed timer wheel
+ * of WHEEL_SIZE slots, indexed by due tick; {@link #advance} walks only the slot of
+ * the current tick, so a tick costs one step per timer due, plus one skip per timer
+ * due a whole turn of the wheel or more later, however large the maze. Timers due
+ * on the same tick fire in the order they were scheduled, which keeps replays exact.
+ * Timers are parallel arrays linked into per-slot lists and recycled through a free
+ * list, so steady play allocates nothing.
+ *
+ * Durations are counted in beats, one beat being the monsters' step cadence, so
+ * hazards keep pace with the monsters at any tick rate. Flood water and pits are
+ * tiles of their own, so a saved game keeps them and {@link #start} times them
+ * again from the terrain; pending collapses, sprung traps and stuns are not saved.
+ */
+final class TerrainHazards {
+
+    static final int WHEEL_SIZE = 256;
+    /** Beats between two tides of a spring. */
+    static final int TIDE_BEATS = 24;
+    /** How many cells a tide reaches out from its spring. */
+    static final int TIDE_REACH = 3;
+    /** Beats for a tide to advance one more cell. */
+    static final int SPREAD_BEATS = 2;
+    /** Beats a flooded cell stays under water. */
+    static final int FLOOD_BEATS = 12;
+    /** Beats between stepping on a cracked floor and its collapse. */
+    static final int COLLAPSE_BEATS = 2;
+    /** Beats before a pit fills back up into cracked floor. */
+    static final int PIT_BEATS = 30;
+    static final int STUN_BEATS = 3;
+    /** Beats before a sprung trap can catch someone again. */
+    static final int REARM_BEATS = 15;
+    /** Beats between two pulses of a glowstone. */
+    static final int GLOW_BEATS = 6;
+    static final int GLOW_RADIUS = 3;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final int[][] DIRECTIONS = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+
+    // Timer kinds.
+    private static final byte TIDE = 0;
+    private static final byte SPREAD = 1;
+    private static final byte RECEDE = 2;
+    private static final byte COLLAPSE = 3;
+    private static final byte REFILL = 4;
+    private static final byte REARM = 5;
+    private static final byte PULSE = 6;
+
+    private final int ticksPerBeat;
+    private final int[] head = new int[WHEEL_SIZE];
+    private final int[] tail = new int[WHEEL_SIZE];
+    private long[] due = new long[64];
+    private int[] cell = new int[64];
+    private byte[] kind = new byte[64];
+    // Remaining reach of a SPREAD.
+    private int[] reach = new int[64];
+    // Next timer in the same slot, or in the free list.
+    private int[] next = new int[64];
+    private int free = -1;
+    private int used;
+    private int pending;
+    private int[] firing = new int[64];
+
+    private MazeGrid grid;
+    // Bound for the duration of advance().
+    private EntityTable entities;
+    private int[] players;
+    private long[] collapsing = new long[0];
+    private long[] sprung = new long[0];
+    // Stun end tick by entity.
+    private long[] stunnedUntil = new long[0];
+    private long tick;
+
+    /** @param ticksPerBeat ticks per monster step; hazard durations are multiples of it */
+    TerrainHazards(int ticksPerBeat) {
+        this.ticksPerBeat = Math.max(1, ticksPerBeat);
+        Arrays.fill(head, -1);
+    }
+
+    /**
+     * Drops every timer and times the hazards of a new or restored grid, starting
+     * at the given tick. Scans the grid once; later ticks only touch timed cells.
+     */
+    void start(MazeGrid grid, long tick) {
+        this.grid = grid;
+        this.tick = tick;
+        Arrays.fill(head, -1);
+        free = -1;
+        used = 0;
+        pending = 0;
+        int words = (grid.rows() * grid.cols() + 63) >>> 6;
+        collapsing = new long[words];
+        sprung = new long[words];
+        stunnedUntil = new long[0];
+        for (int i = 0; i < grid.rows() * grid.cols(); i++) {
+            byte tile = grid.get(i);
+            // Springs and glowstones are staggered by position so a big maze does not pulse in step.
+            if (tile == MazeGrid.SPRING) {
+                schedule(1 + i % beats(TIDE_BEATS), TIDE, i, TIDE_REACH);
+            } else if (tile == MazeGrid.FLOOD) {
+                schedule(beats(FLOOD_BEATS), RECEDE, i, 0);
+            } else if (tile == MazeGrid.PIT) {
+                schedule(beats(PIT_BEATS), REFILL, i, 0);
+            } else if (tile == MazeGrid.GLOWSTONE) {
+                schedule(1 + i % beats(GLOW_BEATS), PULSE, i, 0);
+            }
+        }
+    }
+
+    /** Timers still to fire. */
+    int pending() {
+        return pending;
+    }
+
+    boolean isStunned(int entity, long tick) {
+        return entity < stunnedUntil.length && stunnedUntil[entity] > tick;
+    }
+
+    /**
+     * Reacts to a player arriving on (x, y): a cracked floor starts to give way, an
+     * armed trap springs and stuns the player. Returns the tile that reacted, or -1.
+     */
+    int entered(int entity, int x, int y, long tick) {
+        this.tick = tick;
+        int i = grid.index(x, y);
+        byte tile = grid.get(i);
+        if (tile == MazeGrid.CRACKED && !testBit(collapsing, i)) {
+            setBit(collapsing, i, true);
+            schedule(beats(COLLAPSE_BEATS), COLLAPSE, i, 0);
+            return tile;
+        }
+        if (tile == MazeGrid.TRAP && !testBit(sprung, i)) {
+            setBit(sprung, i, true);
+            schedule(beats(REARM_BEATS), REARM, i, 0);
+            if (entity >= stunnedUntil.length) {
+                stunnedUntil = Arrays.copyOf(stunnedUntil, entity + 1);
+            }
+            stunnedUntil[entity] = tick + beats(STUN_BEATS);
+            return tile;
+        }
+        return -1;
+    }
+
+    /**
+     * Fires the timers due on the given tick, which must be one past the last call.
+     * Players stop water and collapses only by standing where they would land: floods
+     * wait for a free cell, and a floor collapsing under a player takes the player
+     * with it. Returns the entity of a player who fell, or -1.
+     *
+     * @param players player entities, -1 for empty slots
+     * @param sight lit by glowstones when fog of war is on; may be null
+     */
+    int advance(long tick, EntityTable entities, int[] players, FieldOfView sight) {
+        this.tick = tick;
+        this.entities = entities;
+        this.players = players;
+        int slot = (int) (tick & MASK);
+        int count = 0;
+        int previous = -1;
+        for (int t = head[slot]; t >= 0; ) {
+            int following = next[t];
+            if (due[t] == tick) {
+                if (previous < 0) {
+                    head[slot] = following;
+                } else {
+                    next[previous] = following;
+                }
+                if (tail[slot] == t) {
+                    tail[slot] = previous;
+                }
+                if (count == firing.length) {
+                    firing = Arrays.copyOf(firing, count * 2);
+                }
+                firing[count++] = t;
+            } else {
+                previous = t;
+            }
+            t = following;
+        }
+        int fell = -1;
+        for (int f = 0; f < count; f++) {
+            int t = firing[f];
+            int victim = fire(kind[t], cell[t], reach[t], sight);
+            if (victim >= 0 && fell < 0) {
+                fell = victim;
+            }
+            next[t] = free;
+            free = t;
+            pending--;
+        }
+        this.entities = null;
+        this.players = null;
+        return fell;
+    }
+
+    private int fire(byte timer, int i, int range, FieldOfView sight) {
+        byte tile = grid.get(i);
+        switch (timer) {
+            case TIDE:
+                if (tile == MazeGrid.SPRING) {
+                    flood(i, range);
+                    schedule(beats(TIDE_BEATS), TIDE, i, TIDE_REACH);
+                }
+                break;
+            case SPREAD:
+                if (tile == MazeGrid.FLOOD) {
+                    flood(i, range);
+                }
+                break;
+            case RECEDE:
+                if (tile == MazeGrid.FLOOD) {
+                    grid.set(i / grid.cols(), i % grid.cols(), MazeGrid.FLOOR);
+                }
+                break;
+            case COLLAPSE:
+                if (tile != MazeGrid.CRACKED) {
+                    setBit(collapsing, i, false);
+                } else if (grid.isOccupied(i)) {
+                    // A monster holds the floor up until it walks off.
+                    schedule(1, COLLAPSE, i, 0);
+                } else {
+                    setBit(collapsing, i, false);
+                    grid.set(i / grid.cols(), i % grid.cols(), MazeGrid.PIT);
+                    schedule(beats(PIT_BEATS), REFILL, i, 0);
+                    return playerOn(i);
+                }
+                break;
+            case REFILL:
+                if (tile == MazeGrid.PIT) {
+                    grid.set(i / grid.cols(), i % grid.cols(), MazeGrid.CRACKED);
+                }
+                break;
+            case REARM:
+                setBit(sprung, i, false);
+                break;
+            case PULSE:
+                if (tile == MazeGrid.GLOWSTONE) {
+                    if (sight != null) {
+                        sight.reveal(grid, i / grid.cols(), i % grid.cols(), GLOW_RADIUS);
+                    }
+                    schedule(beats(GLOW_BEATS), PULSE, i, 0);
+                }
+                break;
+            default:
+                break;
+        }
+        return -1;
+    }
+
+    /** Floods the free floor next to cell i and sends the tide on from there while it has reach. */
+    private void flood(int i, int range) {
+        int cols = grid.cols();
+        int x = i / cols;
+        int y = i % cols;
+        for (int[] direction : DIRECTIONS) {
+            int nx = x + direction[0];
+            int ny = y + direction[1];
+            if (!grid.inBounds(nx, ny)) {
+                continue;
+            }
+            int n = grid.index(nx, ny);
+            if (grid.get(n) != MazeGrid.FLOOR || grid.isOccupied(n) || playerOn(n) >= 0) {
+                continue;
+            }
+            grid.set(nx, ny, MazeGrid.FLOOD);
+            schedule(beats(FLOOD_BEATS), RECEDE, n, 0);
+            if (range > 1) {
+                schedule(beats(SPREAD_BEATS), SPREAD, n, range - 1);
+            }
+        }
+    }
+
+    /** The player entity standing on cell i, or -1. */
+    private int playerOn(int i) {
+        for (int entity : players) {
+            if (entity >= 0 && grid.index(entities.x(entity), entities.y(entity)) == i) {
+                return entity;
+            }
+        }
+        return -1;
+    }
+
+    private void schedule(long delay, byte timer, int i, int range) {
+        int t = free;
+        if (t >= 0) {
+            free = next[t];
+        } else {
+            if (used == due.length) {
+                int size = used * 2;
+                due = Arrays.copyOf(due, size);
+                cell = Arrays.copyOf(cell, size);
+                kind = Arrays.copyOf(kind, size);
+                reach = Arrays.copyOf(reach, size);
+                next = Arrays.copyOf(next, size);
+            }
+            t = used++;
+        }
+        due[t] = tick + Math.max(1, delay);
+        cell[t] = i;
+        kind[t] = timer;
+        reach[t] = range;
+        next[t] = -1;
+        int slot = (int) (due[t] & MASK);
+        if (head[slot] < 0) {
+            head[slot] = t;
+        } else {
+            next[tail[slot]] = t;
+        }
+        tail[slot] = t;
+        pending++;
+    }
+
+    private int beats(int count) {
+        return count * ticksPerBeat;
+    }
+
+    /**
+     * Hash of the pending timers, sprung traps and stuns, for the simulation's state
+     * hash; 0 when there are none, so hazard-free games hash as before.
+     */
+    long hash() {
+        if (pending == 0 && stunnedUntil.length == 0) {
+            return 0;
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+            for (int t = head[slot]; t >= 0; t = next[t]) {
+                h = (h ^ (due[t] * 31 + cell[t]) ^ ((long) kind[t] << 56) ^ ((long) reach[t] << 48)) * 0x100000001B3L;
+            }
+        }
+        for (long until : stunnedUntil) {
+            h = (h ^ Math.max(0, until - tick)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static boolean testBit(long[] words, int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] words, int i, boolean value) {
+        if (value) {
+            words[i >>> 6] |= 1L << i;
+        } else {
+            words[i >>> 6] &= ~(1L << i);
+        }
+    }
+}
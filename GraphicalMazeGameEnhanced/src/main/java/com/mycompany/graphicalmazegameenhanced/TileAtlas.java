@@ -0,0 +1,401 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered tiles for one level theme.
+ *
+ * Every static tile (ground, walls, decorations, hazards, objectives, exit frame) and every
+ * sprite pose (player, sage, monsters per facing) is rasterized once into a
+ * compatible image, so painting a cell is a plain image blit instead of a fresh
+ * batch of GradientPaint/Color objects with antialiasing. Compatible images are
+ * managed by Java2D and get cached in video memory where the pipeline supports it.
+ * Tiles are drawn in a SIZE x SIZE design space and rasterized at the device pixel
+ * size they will be shown at, so zoomed and HiDPI views stay sharp and still blit 1:1.
+ *
+ * Animation is cached the same way: each walking sprite has WALK_FRAMES poses per
+ * facing, the objective halo one image per GLOW_STEPS brightness and sparks one per
+ * SPARK_STEPS fade, so an animated frame is still nothing but blits.
+ */
+final class TileAtlas {
+
+    /** Edge of a tile in design units. */
+    static final int SIZE = 50;
+    /** Walk cycle: standing, left stride, passing, right stride. */
+    static final int WALK_FRAMES = 4;
+    static final int GLOW_STEPS = 8;
+    static final int SPARK_STEPS = 4;
+    /** Edge of a spark image in design units. */
+    static final int SPARK_SIZE = 5;
+    /** Edge of a halo image in design units; it is centred on its cell. */
+    static final int HALO_SIZE = SIZE + 2 * MazeRenderer.GLOW_BLEED;
+    private static final float MIN_GLOW = 0.3f;
+    private static final float MAX_GLOW = 0.9f;
+
+    private final int level;
+    private final int pixels;
+    private final GraphicsConfiguration config;
+
+    private final BufferedImage ground;
+    private final BufferedImage wallVine;
+    private final BufferedImage wallBuilding;
+    private final BufferedImage decoration;
+    private final BufferedImage crystal;
+    private final BufferedImage altar;
+    private final BufferedImage spire;
+    private final BufferedImage exitFrame;
+    private final BufferedImage sage;
+    // Hazard tiles by terrain code; null for the other codes.
+    private final BufferedImage[] hazard = new BufferedImage[MazeGrid.TILE_COUNT];
+    private final BufferedImage[][] player = new BufferedImage[4][WALK_FRAMES];
+    private final BufferedImage[][] monster = new BufferedImage[4][WALK_FRAMES];
+    private final BufferedImage[] halo = new BufferedImage[GLOW_STEPS];
+    private final BufferedImage[] spark = new BufferedImage[SPARK_STEPS];
+
+    /** @param pixels device pixels per tile edge */
+    TileAtlas(GraphicsConfiguration config, int level, int pixels) {
+        this.config = config;
+        this.level = level;
+        this.pixels = pixels;
+
+        ground = newTile(Transparency.OPAQUE);
+        Graphics2D g = begin(ground);
+        drawGround(g);
+        g.dispose();
+
+        wallVine = rasterizeWall(false);
+        wallBuilding = rasterizeWall(true);
+
+        decoration = newTile(Transparency.TRANSLUCENT);
+        g = begin(decoration);
+        drawDecoration(g);
+        g.dispose();
+
+        crystal = rasterizeObjective(MazeGrid.CRYSTAL);
+        altar = rasterizeObjective(MazeGrid.ALTAR);
+        spire = rasterizeObjective(MazeGrid.SPIRE);
+
+        exitFrame = newTile(Transparency.TRANSLUCENT);
+        g = begin(exitFrame);
+        drawExitFrame(g);
+        g.dispose();
+
+        for (byte tile = MazeGrid.SPRING; tile <= MazeGrid.GLOWSTONE; tile++) {
+            hazard[tile] = newTile(Transparency.TRANSLUCENT);
+            g = begin(hazard[tile]);
+            drawHazard(g, tile);
+            g.dispose();
+        }
+
+        sage = rasterizePerson(Color.MAGENTA, 2, 0, true, false);
+        Color monsterColor = level == 1 ? Color.RED : level == 2 ? new Color(0, 100, 0) : new Color(0, 150, 255);
+        for (int facing = 0; facing < 4; facing++) {
+            for (int pose = 0; pose < WALK_FRAMES; pose++) {
+                player[facing][pose] = rasterizePerson(Color.BLUE, facing, pose, false, false);
+                monster[facing][pose] = rasterizePerson(monsterColor, facing, pose, false, true);
+            }
+        }
+
+        for (int step = 0; step < GLOW_STEPS; step++) {
+            float glow = MIN_GLOW + (MAX_GLOW - MIN_GLOW) * step / (GLOW_STEPS - 1);
+            halo[step] = newImage(HALO_SIZE, Transparency.TRANSLUCENT);
+            g = begin(halo[step]);
+            g.setColor(new Color(1.0f, 1.0f, 0.0f, glow * 0.5f));
+            g.fillOval(0, 0, HALO_SIZE, HALO_SIZE);
+            g.setColor(new Color(1.0f, 1.0f, 0.0f, glow));
+            g.fillOval(5, 5, HALO_SIZE - 10, HALO_SIZE - 10);
+            g.dispose();
+        }
+        for (int step = 0; step < SPARK_STEPS; step++) {
+            spark[step] = newImage(SPARK_SIZE, Transparency.TRANSLUCENT);
+            g = begin(spark[step]);
+            g.setColor(new Color(1.0f, 1.0f, 0.0f, 0.5f * (step + 1) / SPARK_STEPS));
+            g.fillOval(0, 0, SPARK_SIZE, SPARK_SIZE);
+            g.dispose();
+        }
+    }
+
+    /** Halo step for a glow alpha between 0.3 and 0.9. */
+    static int glowStep(float glow) {
+        int step = Math.round((glow - MIN_GLOW) / (MAX_GLOW - MIN_GLOW) * (GLOW_STEPS - 1));
+        return Math.max(0, Math.min(GLOW_STEPS - 1, step));
+    }
+
+    boolean matches(int level, GraphicsConfiguration config, int pixels) {
+        return this.level == level && this.config == config && this.pixels == pixels;
+    }
+
+    BufferedImage ground() {
+        return ground;
+    }
+
+    BufferedImage wall(boolean isBuilding) {
+        return isBuilding ? wallBuilding : wallVine;
+    }
+
+    BufferedImage decoration() {
+        return decoration;
+    }
+
+    /** Objective tile for a MazeGrid terrain code (CRYSTAL, ALTAR or SPIRE). */
+    BufferedImage objective(byte tile) {
+        return tile == MazeGrid.CRYSTAL ? crystal : tile == MazeGrid.ALTAR ? altar : spire;
+    }
+
+    BufferedImage exitFrame() {
+        return exitFrame;
+    }
+
+    /** Tile for a hazard terrain code, SPRING to GLOWSTONE; drawn over the ground. */
+    BufferedImage hazard(byte tile) {
+        return hazard[tile];
+    }
+
+    BufferedImage sage() {
+        return sage;
+    }
+
+    BufferedImage player(int facing, int pose) {
+        return player[facing][pose];
+    }
+
+    BufferedImage monster(int facing, int pose) {
+        return monster[facing][pose];
+    }
+
+    /** Objective halo for a {@link #glowStep} brightness. */
+    BufferedImage halo(int step) {
+        return halo[step];
+    }
+
+    /** Spark from faintest (0) to brightest (SPARK_STEPS - 1). */
+    BufferedImage spark(int step) {
+        return spark[step];
+    }
+
+    private BufferedImage newTile(int transparency) {
+        return newImage(SIZE, transparency);
+    }
+
+    /** Image for an edge of the given design units at this atlas's device scale. */
+    private BufferedImage newImage(int designSize, int transparency) {
+        int edge = Math.max(1, (int) Math.round(designSize * pixels / (double) SIZE));
+        if (config != null) {
+            return config.createCompatibleImage(edge, edge, transparency);
+        }
+        return new BufferedImage(edge, edge,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private Graphics2D begin(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(pixels / (double) SIZE, pixels / (double) SIZE);
+        return g;
+    }
+
+    private BufferedImage rasterizeWall(boolean isBuilding) {
+        BufferedImage tile = newTile(Transparency.TRANSLUCENT);
+        Graphics2D g = begin(tile);
+        drawWall(g, isBuilding);
+        g.dispose();
+        return tile;
+    }
+
+    private BufferedImage rasterizeObjective(byte type) {
+        BufferedImage tile = newTile(Transparency.TRANSLUCENT);
+        Graphics2D g = begin(tile);
+        drawObjectiveItem(g, type);
+        g.dispose();
+        return tile;
+    }
+
+    private BufferedImage rasterizePerson(Color color, int facing, int pose, boolean isSage, boolean isMonster) {
+        BufferedImage tile = newTile(Transparency.TRANSLUCENT);
+        Graphics2D g = begin(tile);
+        drawPerson(g, color, facing, pose, isSage, isMonster);
+        g.dispose();
+        return tile;
+    }
+
+    private void drawGround(Graphics2D g) {
+        int x = 0;
+        int y = 0;
+        if (level == 1) {
+            g.setPaint(new GradientPaint(x, y, new Color(144, 238, 144), x + SIZE, y + SIZE, new Color(100, 200, 100)));
+            g.fillRect(x, y, SIZE, SIZE);
+            g.setColor(new Color(80, 160, 80, 100));
+            g.fillOval(x + 10, y + 10, 5, 5);
+        } else if (level == 2) {
+            g.setPaint(new GradientPaint(x, y, new Color(50, 150, 50), x + SIZE, y + SIZE, new Color(30, 100, 30)));
+            g.fillRect(x, y, SIZE, SIZE);
+            g.setColor(new Color(100, 80, 60, 100));
+            g.fillRect(x + 15, y + 15, 5, 5);
+        } else {
+            g.setPaint(new GradientPaint(x, y, new Color(0, 50, 100), x + SIZE, y + SIZE, new Color(0, 20, 50)));
+            g.fillRect(x, y, SIZE, SIZE);
+            g.setColor(new Color(255, 255, 255, 100));
+            g.fillOval(x + 20, y + 20, 3, 3);
+        }
+    }
+
+    private void drawWall(Graphics2D g, boolean isBuilding) {
+        int x = 0;
+        int y = 0;
+        if (level == 2 || !isBuilding) {
+            g.setPaint(new GradientPaint(x, y, new Color(60, 160, 60), x + SIZE, y + SIZE, new Color(30, 100, 30)));
+            g.fillOval(x, y, SIZE, SIZE);
+            g.setColor(new Color(0, 120, 0, 150));
+            g.fillOval(x + 10, y + 10, SIZE - 20, SIZE - 20);
+            g.setColor(new Color(0, 80, 0, 100));
+            g.drawLine(x + 15, y + 15, x + 35, y + 35);
+        } else if (level == 3) {
+            g.setPaint(new GradientPaint(x, y, new Color(120, 120, 180), x + SIZE, y + SIZE, new Color(70, 70, 120)));
+            g.fillRect(x, y, SIZE, SIZE);
+            g.setColor(new Color(200, 200, 255, 150));
+            g.fillOval(x + 5, y + 5, 10, 10);
+            g.fillOval(x + 35, y + 35, 10, 10);
+            g.setColor(new Color(255, 255, 255, 50));
+            g.drawRect(x + 2, y + 2, SIZE - 4, SIZE - 4);
+        } else {
+            g.setPaint(new GradientPaint(x, y, new Color(139, 69, 19), x + SIZE, y + SIZE, new Color(100, 50, 10)));
+            g.fillRect(x, y, SIZE, SIZE);
+            g.setColor(new Color(80, 40, 0));
+            g.drawLine(x + 2, y + 2, x + SIZE - 2, y + 2);
+            g.drawLine(x + 2, y + 2, x + 2, y + SIZE - 2);
+            g.setColor(Color.YELLOW);
+            g.fillRect(x + 10, y + 10, 10, 10);
+            g.fillRect(x + 30, y + 30, 10, 10);
+        }
+    }
+
+    private void drawDecoration(Graphics2D g) {
+        int x = 0;
+        int y = 0;
+        if (level == 3) {
+            g.setColor(new Color(0, 200, 255, 150));
+            g.fillOval(x + 15, y + 15, 20, 20);
+            g.setColor(new Color(255, 255, 255, 100));
+            g.fillOval(x + 20, y + 20, 10, 10);
+        } else {
+            g.setColor(new Color(139, 69, 19));
+            g.fillRect(x + 20, y + 30, 10, 20);
+            g.setColor(Color.GREEN);
+            g.fillOval(x + 5, y + 5, 40, 40);
+        }
+    }
+
+    private void drawObjectiveItem(Graphics2D g, byte type) {
+        int x = 0;
+        int y = 0;
+        g.setColor(type == MazeGrid.CRYSTAL ? Color.YELLOW : type == MazeGrid.ALTAR ? Color.WHITE : new Color(255, 200, 0));
+        int[] xp = {x + 25, x + 10, x + 40};
+        int[] yp = {y + 10, y + 40, y + 40};
+        g.fillPolygon(xp, yp, 3);
+    }
+
+    private void drawExitFrame(Graphics2D g) {
+        int x = 0;
+        int y = 0;
+        g.setPaint(new GradientPaint(x, y, new Color(0, 100, 0), x + 40, y + 40, new Color(0, 150, 0)));
+        g.fillRect(x + 10, y + 10, 30, 40);
+        g.setColor(new Color(255, 215, 0));
+        g.drawRect(x + 8, y + 8, 34, 44);
+    }
+
+    private void drawHazard(Graphics2D g, byte tile) {
+        switch (tile) {
+            case MazeGrid.SPRING:
+                g.setPaint(new GradientPaint(0, 0, new Color(40, 110, 210), SIZE, SIZE, new Color(10, 50, 140)));
+                g.fillOval(2, 2, SIZE - 4, SIZE - 4);
+                g.setColor(new Color(255, 255, 255, 140));
+                g.drawOval(15, 15, 20, 20);
+                g.drawOval(21, 21, 8, 8);
+                break;
+            case MazeGrid.FLOOD:
+                g.setColor(new Color(30, 100, 210, 170));
+                g.fillRect(0, 0, SIZE, SIZE);
+                g.setColor(new Color(255, 255, 255, 90));
+                g.drawArc(8, 14, 14, 8, 0, 180);
+                g.drawArc(26, 30, 14, 8, 0, 180);
+                break;
+            case MazeGrid.CRACKED:
+                g.setColor(new Color(40, 30, 20, 170));
+                g.drawPolyline(new int[]{6, 18, 24, 33, 44}, new int[]{12, 20, 30, 27, 40}, 5);
+                g.drawPolyline(new int[]{24, 20, 26}, new int[]{30, 42, 47}, 3);
+                g.drawLine(18, 20, 22, 8);
+                break;
+            case MazeGrid.PIT:
+                g.setColor(new Color(60, 45, 30));
+                g.fillOval(3, 3, SIZE - 6, SIZE - 6);
+                g.setColor(Color.BLACK);
+                g.fillOval(9, 9, SIZE - 18, SIZE - 18);
+                break;
+            case MazeGrid.TRAP:
+                g.setColor(new Color(90, 90, 90, 200));
+                g.drawOval(10, 10, 30, 30);
+                g.setColor(new Color(170, 170, 170));
+                for (int k = 0; k < 4; k++) {
+                    int x = 14 + k * 6;
+                    g.fillPolygon(new int[]{x, x + 3, x + 6}, new int[]{30, 20, 30}, 3);
+                }
+                break;
+            case MazeGrid.GLOWSTONE:
+                g.setColor(new Color(255, 240, 150, 90));
+                g.fillOval(5, 5, SIZE - 10, SIZE - 10);
+                g.setColor(new Color(120, 120, 130));
+                g.fillOval(14, 18, 22, 18);
+                g.setColor(new Color(255, 250, 200));
+                g.fillOval(20, 22, 10, 8);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Pose 0 stands; 1 and 3 stride with the left or right foot forward, 2 passes between them. */
+    private void drawPerson(Graphics2D g, Color color, int facing, int pose, boolean isSage, boolean isMonster) {
+        int x = 0;
+        // Strides dip the body a unit.
+        int y = pose == 1 || pose == 3 ? 1 : 0;
+        // Legs and the opposite arms swing by this much.
+        int swing = pose == 1 ? 4 : pose == 3 ? -4 : 0;
+        int legSpread = pose == 2 ? 1 : 5;
+        g.setColor(color);
+        g.fillOval(x + 15, y + 5, 20, 20);
+        g.setColor(new Color(255, 220, 200));
+        g.fillOval(x + 18, y + 8, 14, 14);
+        g.setColor(color);
+        g.fillRect(x + 22, y + 25, 6, 15);
+        g.drawLine(x + 25, y + 28, x + 15, y + 23 - swing);
+        g.drawLine(x + 25, y + 28, x + 35, y + 23 + swing);
+        g.drawLine(x + 24, y + 40, x + 25 - legSpread - swing, y + 45 - Math.abs(swing) / 2);
+        g.drawLine(x + 26, y + 40, x + 25 + legSpread - swing, y + 45 - Math.abs(swing) / 2);
+        if (isSage) {
+            g.setColor(new Color(200, 0, 200, 150));
+            g.fillPolygon(new int[]{x + 15, x + 25, x + 35}, new int[]{y + 25, y + 40, y + 25}, 3);
+            g.setColor(Color.GRAY);
+            g.fillRect(x + 23, y + 10, 4, 10);
+        } else {
+            g.setColor(new Color(150, 150, 150, 150));
+            g.fillRect(x + 20, y + 25, 10, 10);
+            g.setColor(Color.BLACK);
+            g.fillRect(x + 22, y + 30, 6, 2);
+        }
+        if (level == 3 && isMonster) {
+            g.setColor(new Color(0, 255, 255, 100));
+            g.fillOval(x + 10, y, 30, 30);
+            g.setColor(Color.WHITE);
+            g.fillOval(x + 20, y + 10, 4, 4);
+            g.fillOval(x + 26, y + 10, 4, 4);
+        }
+        g.setColor(Color.BLACK);
+        switch (facing) {
+            case 0: g.drawLine(x + 25, y + 15, x + 25, y + 5); break;
+            case 1: g.drawLine(x + 25, y + 15, x + 35, y + 15); break;
+            case 2: g.drawLine(x + 25, y + 15, x + 25, y + 25); break;
+            case 3: g.drawLine(x + 25, y + 15, x + 15, y + 15); break;
+        }
+    }
+}